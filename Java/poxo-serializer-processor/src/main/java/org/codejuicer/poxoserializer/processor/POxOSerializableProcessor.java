@@ -0,0 +1,460 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a POxOCodec for every class annotated with @POxOSerializable and registers them in
+ * META-INF/services. The fields are written in the order of ObjectSerializer (all the non static fields of
+ * the class and of its superclasses, sorted by name ignoring case) and with the encoding of the runtime field
+ * serializers. Primitives, boxed primitives and strings are encoded inline, the other fields are delegated to
+ * the serializer returned by POxOSerializerUtil.getFieldSerializer().
+ * <p>
+ * Fields are read and written directly when visible from the package of the class, otherwise through their
+ * JavaBean getter and setter, otherwise through a runtime FieldAccessor. A field hidden by a field with the
+ * same name in a subclass is accessed on its declaring class, never through the JavaBean methods, which a
+ * subclass may override.
+ */
+@SupportedAnnotationTypes(POxOSerializableProcessor.ANNOTATION)
+public class POxOSerializableProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "org.codejuicer.poxoserializer.annotation.POxOSerializable";
+
+    private static final String SERIALIZERS_PACKAGE = "org.codejuicer.poxoserializer.serializers.";
+
+    private static final String CODEC_INTERFACE = SERIALIZERS_PACKAGE + "POxOCodec";
+
+    private static final String EXCEPTION = "org.codejuicer.poxoserializer.exception.POxOSerializerException";
+
+    private static final String CODEC_SUFFIX = "POxOCodec";
+
+    private final Set<String> generatedCodecs = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        if (annotation == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.PRIVATE)
+                || element.getModifiers().contains(Modifier.ABSTRACT)) {
+                error(element, "@POxOSerializable can be used only on concrete and non private classes.");
+                continue;
+            }
+            try {
+                generatedCodecs.add(generateCodec((TypeElement)element));
+            } catch (IOException e) {
+                error(element, "Error during codec generation: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private String generateCodec(TypeElement type) throws IOException {
+        String packageName = getPackage(type).getQualifiedName().toString();
+        String typeName = processingEnv.getTypeUtils().erasure(type.asType()).toString();
+        String localName = packageName.isEmpty() ? typeName : typeName.substring(packageName.length() + 1);
+        String codecName = localName.replace('.', '_') + CODEC_SUFFIX;
+        String qualifiedCodecName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+
+        List<CodecField> fields = retrieveOrderedFields(type, packageName);
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedCodecName, type);
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/** Generated by " + getClass().getName() + " for {@link " + typeName + "}. */");
+            out.println("public final class " + codecName + " implements " + CODEC_INTERFACE + " {");
+            out.println();
+            out.println("    private " + SERIALIZERS_PACKAGE + "GenericClassSerializer[] serializers;");
+            out.println();
+            out.println("    private " + SERIALIZERS_PACKAGE + "FieldAccessor[] accessors;");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<?> getType() {");
+            out.println("        return " + typeName + ".class;");
+            out.println("    }");
+            out.println();
+            writeInitialize(out, fields);
+            writeWrite(out, typeName, fields);
+            writeRead(out, typeName, fields);
+            out.println("}");
+        }
+        return qualifiedCodecName;
+    }
+
+    private void writeInitialize(PrintWriter out, List<CodecField> fields) {
+        out.println("    @Override");
+        out.println("    public void initialize(org.codejuicer.poxoserializer.POxOSerializerUtil util)");
+        out.println("        throws " + EXCEPTION + " {");
+        int size = fields.size();
+        out.println("        serializers = new " + SERIALIZERS_PACKAGE + "GenericClassSerializer[" + size
+                    + "];");
+        out.println("        accessors = new " + SERIALIZERS_PACKAGE + "FieldAccessor[" + size + "];");
+        // javac refuses a catch of NoSuchFieldException without any getDeclaredField call in the try block
+        boolean reflective = false;
+        for (CodecField field : fields) {
+            reflective |= field.encoding == null || field.needsAccessor();
+        }
+        if (!reflective) {
+            out.println("    }");
+            out.println();
+            return;
+        }
+        out.println("        try {");
+        for (CodecField field : fields) {
+            String reflectField = field.ownerName + ".class.getDeclaredField(\"" + field.name + "\")";
+            if (field.encoding == null) {
+                out.println("            serializers[" + field.index + "] = util.getFieldSerializer("
+                            + reflectField + ");");
+            }
+            if (field.needsAccessor()) {
+                out.println("            accessors[" + field.index + "] = util.getFieldAccessorFactory()"
+                            + ".createAccessor(" + reflectField + ");");
+            }
+        }
+        out.println("        } catch (NoSuchFieldException e) {");
+        out.println("            throw new " + EXCEPTION + "(\"Codec does not match its class.\", e);");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+    }
+
+    private void writeWrite(PrintWriter out, String typeName, List<CodecField> fields) {
+        out.println("    @Override");
+        out.println("    public void write(org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder encoder,");
+        out.println("                      Object value) throws " + EXCEPTION + " {");
+        out.println("        " + typeName + " obj = (" + typeName + ")value;");
+        for (CodecField field : fields) {
+            String local = "v" + field.index;
+            out.println("        " + field.typeName + " " + local + " = " + field.getter() + ";");
+            if (field.encoding == null) {
+                out.println("        serializers[" + field.index + "].write(encoder, " + local + ");");
+            } else if (field.nullable) {
+                out.println("        if (" + local + " == null) {");
+                out.println("            encoder.write(0x00);");
+                out.println("        } else {");
+                out.println("            encoder.write(0x01);");
+                out.println("            " + String.format(field.encoding.write, local) + ";");
+                out.println("        }");
+            } else {
+                out.println("        " + String.format(field.encoding.write, local) + ";");
+            }
+        }
+        out.println("    }");
+        out.println();
+    }
+
+    private void writeRead(PrintWriter out, String typeName, List<CodecField> fields) {
+        out.println("    @Override");
+        out.println("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        out.println("    public void read(org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder decoder,");
+        out.println("                     Object value) throws " + EXCEPTION + " {");
+        out.println("        " + typeName + " obj = (" + typeName + ")value;");
+        for (CodecField field : fields) {
+            String read;
+            if (field.encoding == null) {
+                read = "(" + field.typeName + ")serializers[" + field.index + "].read(decoder)";
+            } else if (field.encoding == Encoding.STRING) {
+                read = "decoder.readByte() == 0x00 ? null : " + field.encoding.read;
+            } else if (field.nullable) {
+                read = "decoder.readByte() == 0x00 ? null : " + field.typeName + ".valueOf("
+                       + field.encoding.read + ")";
+            } else {
+                read = field.encoding.read;
+            }
+            out.println("        " + field.setter(read));
+        }
+        out.println("    }");
+    }
+
+    private List<CodecField> retrieveOrderedFields(TypeElement type, String packageName) {
+        List<CodecField> fields = new ArrayList<CodecField>();
+        // the names met in the subclasses, walked first: a superclass field with one of them is hidden
+        Set<String> names = new HashSet<String>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            for (Element member : current.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.FIELD
+                    && !member.getModifiers().contains(Modifier.STATIC)) {
+                    boolean hidden = !names.add(member.getSimpleName().toString());
+                    fields.add(new CodecField((VariableElement)member, current, packageName, hidden));
+                }
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement)processingEnv.getTypeUtils()
+                .asElement(superclass) : null;
+        }
+
+        // stable sort, like Collections.sort in ObjectSerializer
+        Collections.sort(fields, new Comparator<CodecField>() {
+
+            @Override
+            public int compare(CodecField field1, CodecField field2) {
+                return field1.name.compareToIgnoreCase(field2.name);
+            }
+        });
+        for (int i = 0; i < fields.size(); i++) {
+            fields.get(i).index = i;
+        }
+        return fields;
+    }
+
+    private void writeServiceFile() {
+        if (generatedCodecs.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                                                                      "META-INF/services/" + CODEC_INTERFACE);
+            try (Writer out = file.openWriter()) {
+                for (String codec : generatedCodecs) {
+                    out.write(codec);
+                    out.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                                     "Error during codec service file writing: "
+                                                         + e.getMessage());
+        }
+    }
+
+    private PackageElement getPackage(Element element) {
+        Element current = element;
+        while (current.getKind() != ElementKind.PACKAGE) {
+            current = current.getEnclosingElement();
+        }
+        return (PackageElement)current;
+    }
+
+    private boolean isVisible(Element member, String packageName) {
+        Element current = member;
+        while (current.getKind() != ElementKind.PACKAGE) {
+            Set<Modifier> modifiers = current.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (!modifiers.contains(Modifier.PUBLIC)
+                && !getPackage(current).getQualifiedName().contentEquals(packageName)) {
+                return false;
+            }
+            current = current.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private enum Encoding {
+        INT("encoder.writeInt(%s, true)", "decoder.readInt(true)"),
+        LONG("encoder.writeLong(%s, true)", "decoder.readLong(true)"),
+        SHORT("encoder.writeShort(%s)", "decoder.readShort()"),
+        BYTE("encoder.writeByte(%s)", "decoder.readByte()"),
+        CHAR("encoder.writeChar(%s)", "decoder.readChar()"),
+        BOOLEAN("encoder.writeBoolean(%s)", "decoder.readBoolean()"),
+        FLOAT("encoder.writeFloat(%s)", "decoder.readFloat()"),
+        DOUBLE("encoder.writeDouble(%s)", "decoder.readDouble()"),
+        STRING("encoder.writeString(%s)", "decoder.readString()");
+
+        private final String write;
+
+        private final String read;
+
+        Encoding(String write, String read) {
+            this.write = write;
+            this.read = read;
+        }
+    }
+
+    private class CodecField {
+        private final String name;
+
+        private final String ownerName;
+
+        private final String typeName;
+
+        private final Encoding encoding;
+
+        private final boolean nullable;
+
+        private final boolean primitive;
+
+        private final String directAccess;
+
+        private final ExecutableElement getter;
+
+        private final ExecutableElement setter;
+
+        private final boolean finalField;
+
+        private int index;
+
+        CodecField(VariableElement field, TypeElement owner, String packageName, boolean hidden) {
+            TypeMirror type = field.asType();
+            name = field.getSimpleName().toString();
+            ownerName = processingEnv.getTypeUtils().erasure(owner.asType()).toString();
+            typeName = processingEnv.getTypeUtils().erasure(type).toString();
+            finalField = field.getModifiers().contains(Modifier.FINAL);
+            if (!isVisible(field, packageName)) {
+                directAccess = null;
+            } else if (hidden) {
+                // obj.name would be the field of the subclass
+                directAccess = "((" + ownerName + ")obj)." + name;
+            } else {
+                directAccess = "obj." + name;
+            }
+            getter = hidden ? null : findAccessor(owner, type, packageName, false);
+            setter = hidden ? null : findAccessor(owner, type, packageName, true);
+
+            primitive = type.getKind().isPrimitive();
+            if (primitive) {
+                encoding = Encoding.valueOf(type.getKind().name());
+                nullable = false;
+            } else {
+                encoding = boxedEncoding(typeName);
+                nullable = encoding != null;
+            }
+        }
+
+        boolean needsAccessor() {
+            return (directAccess == null && getter == null)
+                   || ((directAccess == null || finalField) && setter == null);
+        }
+
+        String getter() {
+            if (directAccess != null) {
+                return directAccess;
+            } else if (getter != null) {
+                return "obj." + getter.getSimpleName() + "()";
+            }
+            if (primitive) {
+                return "accessors[" + index + "].get" + typeSuffix() + "(obj)";
+            }
+            return "(" + typeName + ")accessors[" + index + "].get(obj)";
+        }
+
+        String setter(String value) {
+            if (directAccess != null && !finalField) {
+                return directAccess + " = " + value + ";";
+            } else if (setter != null) {
+                return "obj." + setter.getSimpleName() + "(" + value + ");";
+            }
+            return "accessors[" + index + "].set" + (primitive ? typeSuffix() : "") + "(obj, " + value + ");";
+        }
+
+        private String typeSuffix() {
+            String lower = encoding.name().toLowerCase();
+            return Character.toUpperCase(lower.charAt(0)) + lower.substring(1);
+        }
+
+        private Encoding boxedEncoding(String boxedType) {
+            switch (boxedType) {
+            case "java.lang.Integer":
+                return Encoding.INT;
+            case "java.lang.Long":
+                return Encoding.LONG;
+            case "java.lang.Short":
+                return Encoding.SHORT;
+            case "java.lang.Byte":
+                return Encoding.BYTE;
+            case "java.lang.Character":
+                return Encoding.CHAR;
+            case "java.lang.Boolean":
+                return Encoding.BOOLEAN;
+            case "java.lang.Float":
+                return Encoding.FLOAT;
+            case "java.lang.Double":
+                return Encoding.DOUBLE;
+            case "java.lang.String":
+                return Encoding.STRING;
+            default:
+                return null;
+            }
+        }
+
+        private ExecutableElement findAccessor(TypeElement owner, TypeMirror type, String packageName,
+                                               boolean setterMethod) {
+            String prefix = setterMethod ? "set" : type.getKind() == TypeKind.BOOLEAN ? "is" : "get";
+            String capitalized = prefix + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for (Element member : owner.getEnclosedElements()) {
+                if (member.getKind() != ElementKind.METHOD || member.getModifiers().contains(Modifier.STATIC)
+                    || !isVisible(member, packageName)) {
+                    continue;
+                }
+                String methodName = member.getSimpleName().toString();
+                if (!methodName.equals(capitalized) && !methodName.equals(prefix + name)) {
+                    continue;
+                }
+                ExecutableElement method = (ExecutableElement)member;
+                if (setterMethod && method.getParameters().size() == 1
+                    && method.getReturnType().getKind() == TypeKind.VOID
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(),
+                                                               type)) {
+                    return method;
+                }
+                if (!setterMethod && method.getParameters().isEmpty()
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), type)) {
+                    return method;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -1,80 +1,340 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer;
-
-import java.io.IOException;
-
-import org.codejuicer.poxoserializer.exception.POxOSerializerException;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
-import org.codejuicer.poxoserializer.serializers.ObjectSerializer;
-
-public class POxOSerializer {
-    private static final int DEFAULT_BUFFER_SIZE = 2048;
-
-    private int customBufferSize;
-
-    private POxOSerializerUtil serializerUtil;
-
-    public POxOSerializer() {
-        this(DEFAULT_BUFFER_SIZE);
-    }
-
-    public POxOSerializer(int customBufferSize) {
-        this.customBufferSize = customBufferSize;
-        serializerUtil = new POxOSerializerUtil();
-    }
-
-    public Object deserialize(byte[] bytes) throws POxOSerializerException {
-        POxOPrimitiveDecoder input = new POxOPrimitiveDecoder(bytes);
-
-        ObjectSerializer objSerializer = new ObjectSerializer(serializerUtil);
-        Object ret = objSerializer.read(input);
-
-        try {
-            input.close();
-        } catch (IOException e) {
-            throw new POxOSerializerException("Error during decoder stream closing.", e);
-        }
-        return ret;
-    }
-
-    public byte[] serialize(Object obj) throws POxOSerializerException {
-
-        if (obj == null) {
-            throw new IllegalArgumentException("It is not possible serialize null object");
-        }
-
-        POxOPrimitiveEncoder output = new POxOPrimitiveEncoder(customBufferSize);
-
-        ObjectSerializer objSerializer = new ObjectSerializer(serializerUtil);
-        objSerializer.write(output, obj);
-        byte[] ret = output.toByteArray();
-
-        try {
-            output.close();
-        } catch (IOException e) {
-            throw new POxOSerializerException("Error during encoder stream closing.", e);
-        }
-
-        return ret;
-    }
-
-    public void setClassLoader(ClassLoader classLoader) {
-        serializerUtil.setClassLoader(classLoader);
-    }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitivePool;
+import org.codejuicer.poxoserializer.io.POxOSharedPool;
+import org.codejuicer.poxoserializer.serializers.FieldAccessorFactory;
+import org.codejuicer.poxoserializer.serializers.ObjectSerializer;
+
+public class POxOSerializer {
+    private static final int DEFAULT_BUFFER_SIZE = 2048;
+
+    private final POxOPrimitivePool pool;
+
+    private final POxOSerializerUtil serializerUtil;
+
+    private final ObjectSerializer objSerializer;
+
+    public POxOSerializer() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public POxOSerializer(int customBufferSize) {
+        this(new POxOSharedPool(customBufferSize));
+    }
+
+    /**
+     * Creates a serializer that takes its encoders and decoders from the given pool, e.g. a
+     * {@link org.codejuicer.poxoserializer.io.POxOThreadLocalPool} for threads that serialize continuously.
+     */
+    public POxOSerializer(POxOPrimitivePool pool) {
+        this.pool = pool;
+        serializerUtil = new POxOSerializerUtil();
+        objSerializer = new ObjectSerializer(serializerUtil);
+    }
+
+    public Object deserialize(byte[] bytes) throws POxOSerializerException {
+        return deserialize(bytes, 0, bytes.length);
+    }
+
+    /** Reads one object from the length bytes of the array starting at offset, without copying them. */
+    public Object deserialize(byte[] bytes, int offset, int length) throws POxOSerializerException {
+        POxOPrimitiveDecoder input = pool.obtainDecoder(bytes, offset, length);
+        input.setStringReferenceThreshold(serializerUtil.getStringReferenceThreshold());
+        try {
+            return objSerializer.read(input);
+        } catch (BufferUnderflowException e) {
+            throw new POxOSerializerException("Buffer underflow: the message is truncated or corrupted.", e);
+        } finally {
+            pool.releaseDecoder(input);
+        }
+    }
+
+    public byte[] serialize(Object obj) throws POxOSerializerException {
+
+        if (obj == null) {
+            throw new IllegalArgumentException("It is not possible serialize null object");
+        }
+
+        POxOPrimitiveEncoder output = pool.obtainEncoder();
+        output.setStringReferenceThreshold(serializerUtil.getStringReferenceThreshold());
+        try {
+            objSerializer.write(output, obj);
+            return output.toByteArray();
+        } finally {
+            pool.releaseEncoder(output);
+        }
+    }
+
+    /**
+     * Writes the object into the array starting at offset, without the copy of {@link #serialize(Object)},
+     * and returns the number of bytes written.
+     * 
+     * @throws POxOSerializerException if the message does not fit in the array; the bytes after offset may
+     *             have been overwritten.
+     */
+    public int serialize(Object obj, byte[] bytes, int offset) throws POxOSerializerException {
+
+        if (obj == null) {
+            throw new IllegalArgumentException("It is not possible serialize null object");
+        }
+
+        POxOPrimitiveEncoder output = pool.obtainEncoder();
+        output.setStringReferenceThreshold(serializerUtil.getStringReferenceThreshold());
+        try {
+            output.setBuffer(bytes, offset);
+            objSerializer.write(output, obj);
+            return output.position() - offset;
+        } catch (BufferOverflowException e) {
+            throw new POxOSerializerException("Buffer overflow: the message does not fit in the buffer.", e);
+        } finally {
+            pool.releaseEncoder(output);
+        }
+    }
+
+    /**
+     * Reads one object from the stream. The stream is read in chunks of the pool buffer size, so the bytes
+     * following the message may be consumed as well.
+     */
+    public Object deserialize(InputStream in) throws POxOSerializerException {
+        POxOPrimitiveDecoder input = pool.obtainDecoder(null, 0, 0);
+        input.setStringReferenceThreshold(serializerUtil.getStringReferenceThreshold());
+        try {
+            input.setInputStream(in, pool.getBufferSize());
+            return objSerializer.read(input);
+        } catch (BufferUnderflowException e) {
+            throw new POxOSerializerException("Buffer underflow: the message is truncated or corrupted.", e);
+        } catch (UncheckedIOException e) {
+            throw new POxOSerializerException("Error during reading from the stream.", e.getCause());
+        } finally {
+            pool.releaseDecoder(input);
+        }
+    }
+
+    /**
+     * Writes the object to the stream, flushing the encoder buffer each time it fills up instead of growing
+     * it. The stream is flushed but not closed.
+     */
+    public void serialize(Object obj, OutputStream out) throws POxOSerializerException {
+
+        if (obj == null) {
+            throw new IllegalArgumentException("It is not possible serialize null object");
+        }
+
+        POxOPrimitiveEncoder output = pool.obtainEncoder();
+        output.setStringReferenceThreshold(serializerUtil.getStringReferenceThreshold());
+        try {
+            output.setOutputStream(out);
+            objSerializer.write(output, obj);
+            output.flush();
+        } catch (UncheckedIOException e) {
+            throw new POxOSerializerException("Error during writing to the stream.", e.getCause());
+        } finally {
+            pool.releaseEncoder(output);
+        }
+    }
+
+    /**
+     * Reads one object from the byte buffer, starting at its position, and moves the position after the
+     * message. A heap buffer is read in place, a direct one is copied in chunks of the pool buffer size. If
+     * the message cannot be read, the position is left unchanged.
+     */
+    public Object deserialize(ByteBuffer in) throws POxOSerializerException {
+        int start = in.position();
+        POxOPrimitiveDecoder input = pool.obtainDecoder(null, 0, 0);
+        input.setStringReferenceThreshold(serializerUtil.getStringReferenceThreshold());
+        try {
+            input.setByteBuffer(in, pool.getBufferSize());
+            Object obj = objSerializer.read(input);
+            input.updateByteBuffer();
+            return obj;
+        } catch (BufferUnderflowException e) {
+            ((Buffer)in).position(start);
+            throw new POxOSerializerException("Buffer underflow: the message is truncated or corrupted.", e);
+        } catch (POxOSerializerException e) {
+            ((Buffer)in).position(start);
+            throw e;
+        } finally {
+            pool.releaseDecoder(input);
+        }
+    }
+
+    /**
+     * Writes the object into the byte buffer, starting at its position, and moves the position after the
+     * message. If the message does not fit, the position is left unchanged.
+     */
+    public void serialize(Object obj, ByteBuffer out) throws POxOSerializerException {
+
+        if (obj == null) {
+            throw new IllegalArgumentException("It is not possible serialize null object");
+        }
+
+        int start = out.position();
+        POxOPrimitiveEncoder output = pool.obtainEncoder();
+        output.setStringReferenceThreshold(serializerUtil.getStringReferenceThreshold());
+        try {
+            output.setByteBuffer(out);
+            objSerializer.write(output, obj);
+            output.flush();
+        } catch (BufferOverflowException e) {
+            ((Buffer)out).position(start);
+            throw new POxOSerializerException("Buffer overflow: the message does not fit in the buffer.", e);
+        } finally {
+            pool.releaseEncoder(output);
+        }
+    }
+
+    /**
+     * Registers the ID written in place of the class name for the instances of the class. The deserializing
+     * side must register the same class with the same ID; classes that are not registered are written by
+     * name.
+     */
+    public void register(Class<?> type, int id) {
+        serializerUtil.registerClass(type, id);
+    }
+
+    /**
+     * Registers the known subtypes of the fields, elements and array items declared with the base type, like
+     * the alternatives of an abstract class or interface. An instance of one of them is written with a single
+     * byte index in the list in place of the class name; other subtypes are written by name. The
+     * deserializing side must register the same list in the same order. The same table can be declared on a
+     * single field, or on the base type, with the
+     * {@link org.codejuicer.poxoserializer.annotation.POxOSubtypes} annotation.
+     */
+    public void registerSubtypes(Class<?> baseType, Class<?>... subtypes) {
+        serializerUtil.registerSubtypes(baseType, subtypes);
+    }
+
+    public void setClassLoader(ClassLoader classLoader) {
+        serializerUtil.setClassLoader(classLoader);
+    }
+
+    /**
+     * Enables or disables the compile time generated codecs, enabled by default.
+     */
+    public void setCodecsEnabled(boolean codecsEnabled) {
+        serializerUtil.setCodecsEnabled(codecsEnabled);
+    }
+
+    /**
+     * Enables or disables the codecs generated at runtime, disabled by default. When enabled a class without
+     * a compile time generated codec gets a codec class, defined at the first use, that reads and writes its
+     * fields directly. The bytes are the same of the reflective serializer, so the deserializer needs no
+     * setting. The codecs are not used while the field bitmaps or the sparse fields are enabled.
+     */
+    public void setGeneratedCodecsEnabled(boolean generatedCodecsEnabled) {
+        serializerUtil.setGeneratedCodecsEnabled(generatedCodecsEnabled);
+    }
+
+    /**
+     * Enables or disables the class back-references, disabled by default. When enabled a class name is
+     * written once per message and then referred to by its index. The deserializer reads both forms without
+     * any setting.
+     */
+    public void setClassReferencesEnabled(boolean classReferencesEnabled) {
+        serializerUtil.setClassReferencesEnabled(classReferencesEnabled);
+    }
+
+    /**
+     * Enables or disables the object references, disabled by default. When enabled a POJO referenced from
+     * many places of a message is written once and then referred to by its index, so shared and cyclic
+     * graphs are restored with the same shape. The deserializer reads both forms without any setting.
+     */
+    public void setObjectReferencesEnabled(boolean objectReferencesEnabled) {
+        serializerUtil.setObjectReferencesEnabled(objectReferencesEnabled);
+    }
+
+    /**
+     * Enables or disables the packed integer collections, disabled by default. When enabled the List and Set
+     * fields declared with Short, Integer or Long elements are written in blocks of 128 values, each one as
+     * its minimum and the bit-packed differences from it. The deserializer reads both forms without any
+     * setting.
+     */
+    public void setPackedIntegersEnabled(boolean packedIntegersEnabled) {
+        serializerUtil.setPackedIntegersEnabled(packedIntegersEnabled);
+    }
+
+    /**
+     * Enables or disables the type tags, disabled by default. When enabled the boxed primitives, strings,
+     * dates, primitive arrays and usual collections held in Object typed positions, like the values of a
+     * {@code Map<String, Object>}, are written with a single byte in place of their type alias. The
+     * deserializer reads both forms without any setting.
+     */
+    public void setTypeTagsEnabled(boolean typeTagsEnabled) {
+        serializerUtil.setTypeTagsEnabled(typeTagsEnabled);
+    }
+
+    /**
+     * Enables or disables the declared types, disabled by default. When enabled a POJO field holding an
+     * instance of exactly its declared class is written without the class name; null and the instances of
+     * subclasses keep it. The deserializer reads both forms without any setting.
+     */
+    public void setDeclaredTypesEnabled(boolean declaredTypesEnabled) {
+        serializerUtil.setDeclaredTypesEnabled(declaredTypesEnabled);
+    }
+
+    /**
+     * Enables or disables the field bitmaps, disabled by default. When enabled the null markers of the
+     * nullable fields and the values of the boolean fields of an object are packed in a bitmap of one byte
+     * every eight fields, written ahead of the other fields. The codecs are not used while it is enabled,
+     * since they write the plain layout. The deserializer must be configured with the same setting.
+     */
+    public void setFieldBitmapsEnabled(boolean fieldBitmapsEnabled) {
+        serializerUtil.setFieldBitmapsEnabled(fieldBitmapsEnabled);
+    }
+
+    /**
+     * Enables or disables the sparse fields, disabled by default. When enabled every object starts with a
+     * bitmap of one bit per field, set for the fields that are not null, zero or false, and only these fields
+     * follow. The fields left out are not touched on the new instance, unless its constructor gives them
+     * another value. This form replaces the field bitmaps, and the codecs are not used while it is enabled.
+     * The deserializer must be configured with the same setting.
+     */
+    public void setSparseFieldsEnabled(boolean sparseFieldsEnabled) {
+        serializerUtil.setSparseFieldsEnabled(sparseFieldsEnabled);
+    }
+
+    /**
+     * Enables the string back-references for the strings at least minLength characters long, or disables them
+     * with 0 (the default). A repeated string is then written once per message and referred to by its index.
+     * Unlike the class references this changes how strings are read, so the deserializing side must set the
+     * same threshold.
+     */
+    public void setStringReferenceThreshold(int minLength) {
+        serializerUtil.setStringReferenceThreshold(minLength);
+    }
+
+    /**
+     * Sets the field access back end, METHOD_HANDLE of
+     * {@link org.codejuicer.poxoserializer.serializers.FieldAccessorType} by default.
+     */
+    public void setFieldAccessorFactory(FieldAccessorFactory fieldAccessorFactory) {
+        serializerUtil.setFieldAccessorFactory(fieldAccessorFactory);
+    }
+}
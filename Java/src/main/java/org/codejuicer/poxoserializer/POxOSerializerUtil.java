@@ -1,419 +1,857 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer;
-
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.GenericArrayType;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
-
-import org.codejuicer.poxoserializer.exception.POxOSerializerException;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
-import org.codejuicer.poxoserializer.serializers.BooleanSerializer;
-import org.codejuicer.poxoserializer.serializers.ByteSerializer;
-import org.codejuicer.poxoserializer.serializers.CharSerializer;
-import org.codejuicer.poxoserializer.serializers.DateSerializer;
-import org.codejuicer.poxoserializer.serializers.DoubleSerializer;
-import org.codejuicer.poxoserializer.serializers.EnumSerializer;
-import org.codejuicer.poxoserializer.serializers.FloatSerializer;
-import org.codejuicer.poxoserializer.serializers.GenericClassSerializer;
-import org.codejuicer.poxoserializer.serializers.IntegerSerializer;
-import org.codejuicer.poxoserializer.serializers.ListSerializer;
-import org.codejuicer.poxoserializer.serializers.LocalDateSerializer;
-import org.codejuicer.poxoserializer.serializers.LocalDateTimeSerializer;
-import org.codejuicer.poxoserializer.serializers.LocalTimeSerializer;
-import org.codejuicer.poxoserializer.serializers.LongSerializer;
-import org.codejuicer.poxoserializer.serializers.MapSerializer;
-import org.codejuicer.poxoserializer.serializers.ObjectSerializer;
-import org.codejuicer.poxoserializer.serializers.SetSerializer;
-import org.codejuicer.poxoserializer.serializers.ShortSerializer;
-import org.codejuicer.poxoserializer.serializers.StringSerializer;
-import org.codejuicer.poxoserializer.serializers.ZonedDateTimeSerializer;
-
-public class POxOSerializerUtil {
-    private Map<String, Constructor<?>> constructrForClass;
-
-    private Map<String, Class<?>> classForName;
-    private Map<Class<?>, String> nameForClass;
-
-    private Map<Class<?>, GenericClassSerializer> serializerForClass;
-
-    private ClassLoader classLoader;
-
-    public POxOSerializerUtil() {
-        constructrForClass = new TreeMap<String, Constructor<?>>();
-        classForName = new TreeMap<String, Class<?>>();
-        nameForClass = new HashMap<Class<?>, String>();
-        serializerForClass = new HashMap<Class<?>, GenericClassSerializer>();
-        classLoader = this.getClass().getClassLoader();
-        initializePrimitiveType();
-    }
-
-    @SuppressWarnings("unchecked")
-    public <T> T createNewInstance(Class<? extends T> genericClass) throws InstantiationException,
-        IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-
-        Constructor<?> ctor = constructrForClass.get(genericClass.getName());
-        if (ctor == null) {
-            Constructor<?>[] ctors = genericClass.getDeclaredConstructors();
-            for (int i = 0; i < ctors.length; i++) {
-                ctor = ctors[i];
-                if (ctor.getGenericParameterTypes().length == 0) {
-                    break;
-                }
-            }
-
-            ctor.setAccessible(true);
-            constructrForClass.put(genericClass.getName(), ctor);
-        }
-        T ret = (T)ctor.newInstance();
-
-        return ret;
-    }
-
-    public Class<?> getClassFromName(String className) throws POxOSerializerException {
-        Class<?> type = classForName.get(className);
-        if (type == null) {
-            try {
-                type = classLoader.loadClass(className);
-            } catch (ClassNotFoundException e) {
-                throw new POxOSerializerException("Error during loading class " + className);
-            }
-            classForName.put(className, type);
-            nameForClass.put(type, className);
-        }
-
-        return type;
-    }
-
-    public GenericClassSerializer getFieldSerializer(Field field) throws POxOSerializerException {
-        GenericClassSerializer ret = null;
-        Class<?> fieldType = field.getType();
-        if (List.class.isAssignableFrom(fieldType) || Set.class.isAssignableFrom(fieldType)
-            || Map.class.isAssignableFrom(fieldType)) {
-            POxOSerializerClassPair pair = new POxOSerializerClassPair();
-            recursiveFindSerializer(field.getGenericType(), pair);
-            ret = pair.getSerializer();
-        } else {
-            ret = getTypeSerializer(fieldType);
-        }
-        return ret;
-    }
-
-    public String getNameFromClass(Class<?> type) {
-        String name;
-        if (List.class.isAssignableFrom(type)) {
-            name = "list";
-        } else if (Set.class.isAssignableFrom(type)) {
-            name = "set";
-        } else if (Map.class.isAssignableFrom(type)) {
-            name = "map";
-        } else {
-            name = nameForClass.get(type);
-            if (name == null) {
-                name = type.getName();
-                nameForClass.put(type, name);
-                classForName.put(name, type);
-            }
-        }
-        return name;
-    }
-
-    public GenericClassSerializer getTypeSerializer(Class<?> fieldType) throws POxOSerializerException {
-        GenericClassSerializer ret = serializerForClass.get(fieldType);
-        if (ret == null) {
-            if (Enum.class.isAssignableFrom(fieldType)) {
-                ret = new EnumSerializer(fieldType);
-                serializerForClass.put(fieldType, ret);
-            } else if (List.class.isAssignableFrom(fieldType)) {
-                POxOSerializerClassPair pair = new POxOSerializerClassPair();
-                pair.setGenericClass(Object.class);
-                pair.setSerializer(serializerForClass.get(Object.class));
-                ret = new ListSerializer(pair);
-                serializerForClass.put(fieldType, ret);
-            } else if (Set.class.isAssignableFrom(fieldType)) {
-                POxOSerializerClassPair pair = new POxOSerializerClassPair();
-                pair.setGenericClass(Object.class);
-                pair.setSerializer(serializerForClass.get(Object.class));
-                ret = new SetSerializer(pair);
-                serializerForClass.put(fieldType, ret);
-            } else if (Map.class.isAssignableFrom(fieldType)) {
-                POxOSerializerClassPair keyPair = new POxOSerializerClassPair();
-                keyPair.setGenericClass(Object.class);
-                keyPair.setSerializer(serializerForClass.get(Object.class));
-                POxOSerializerClassPair valuePair = new POxOSerializerClassPair();
-                valuePair.setGenericClass(Object.class);
-                valuePair.setSerializer(serializerForClass.get(Object.class));
-                ret = new MapSerializer(keyPair, valuePair);
-                serializerForClass.put(fieldType, ret);
-            } else {
-                ret = serializerForClass.get(Object.class);
-            }
-        }
-
-        return ret;
-    }
-
-    public List<Class<?>> readSubClassParameterType(Type genericType, POxOPrimitiveDecoder decoder) {
-        List<Class<?>> ret = new ArrayList<Class<?>>();
-        if (genericType instanceof ParameterizedType) {
-            ParameterizedType type = (ParameterizedType)genericType;
-            Type[] typeArguments = type.getActualTypeArguments();
-
-            for (Type typeArgument : typeArguments) {
-                if (typeArgument instanceof Class<?>) {
-                    ret.add((Class<?>)typeArgument);
-                    decoder.readString();
-                } else {
-                    ret.addAll(readSubClassParameterType(typeArgument, decoder));
-                }
-            }
-        } else {
-            ret.add(genericType.getClass());
-            // decoder.readString();
-        }
-        return ret;
-    }
-
-    public void setClassLoader(ClassLoader classLoader) {
-        this.classLoader = classLoader;
-    }
-
-    public List<Class<?>> writeSubClassParameterType(Type genericType, POxOPrimitiveEncoder encoder) {
-        List<Class<?>> ret = new ArrayList<Class<?>>();
-        if (genericType instanceof ParameterizedType) {
-            ParameterizedType type = (ParameterizedType)genericType;
-            Type[] typeArguments = type.getActualTypeArguments();
-
-            for (Type typeArgument : typeArguments) {
-                if (typeArgument instanceof Class<?>) {
-                    ret.add((Class<?>)typeArgument);
-                    encoder.writeString(getNameFromClass((Class<?>)typeArgument));
-                } else {
-                    ret.addAll(writeSubClassParameterType(typeArgument, encoder));
-                }
-            }
-        } else {
-            ret.add(genericType.getClass());
-            // encoder.writeString("object");
-        }
-        return ret;
-    }
-
-    private void initializePrimitiveType() {
-        serializerForClass.put(Object.class, new ObjectSerializer(this));
-
-        nameForClass.put(Integer.class, "int");
-        serializerForClass.put(Integer.class, new IntegerSerializer(Integer.class));
-
-        nameForClass.put(int.class, "int");
-        serializerForClass.put(int.class, new IntegerSerializer(int.class));
-
-        nameForClass.put(Long.class, "long");
-        serializerForClass.put(Long.class, new LongSerializer(Long.class));
-
-        nameForClass.put(long.class, "long");
-        serializerForClass.put(long.class, new LongSerializer(long.class));
-
-        nameForClass.put(Short.class, "short");
-        serializerForClass.put(Short.class, new ShortSerializer(Short.class));
-
-        nameForClass.put(short.class, "short");
-        serializerForClass.put(short.class, new ShortSerializer(short.class));
-
-        nameForClass.put(Double.class, "double");
-        serializerForClass.put(Double.class, new DoubleSerializer(Double.class));
-
-        nameForClass.put(double.class, "double");
-        serializerForClass.put(double.class, new DoubleSerializer(double.class));
-
-        nameForClass.put(Float.class, "float");
-        serializerForClass.put(Float.class, new FloatSerializer(Float.class));
-
-        nameForClass.put(float.class, "float");
-        serializerForClass.put(float.class, new FloatSerializer(float.class));
-
-        nameForClass.put(Boolean.class, "bool");
-        serializerForClass.put(Boolean.class, new BooleanSerializer(Boolean.class));
-
-        nameForClass.put(boolean.class, "bool");
-        serializerForClass.put(boolean.class, new BooleanSerializer(boolean.class));
-
-        nameForClass.put(Byte.class, "byte");
-        serializerForClass.put(Byte.class, new ByteSerializer(Byte.class));
-
-        nameForClass.put(byte.class, "byte");
-        serializerForClass.put(byte.class, new ByteSerializer(byte.class));
-
-        nameForClass.put(Character.class, "char");
-        serializerForClass.put(Character.class, new CharSerializer(Character.class));
-
-        nameForClass.put(char.class, "char");
-        serializerForClass.put(char.class, new CharSerializer(char.class));
-
-        nameForClass.put(String.class, "string");
-        serializerForClass.put(String.class, new StringSerializer());
-
-        nameForClass.put(Date.class, "date");
-        serializerForClass.put(Date.class, new DateSerializer());
-
-        nameForClass.put(ZonedDateTime.class, "zdt");
-        serializerForClass.put(ZonedDateTime.class, new ZonedDateTimeSerializer());
-
-        nameForClass.put(LocalDateTime.class, "ldt");
-        serializerForClass.put(LocalDateTime.class, new LocalDateTimeSerializer());
-
-        nameForClass.put(LocalDateTime.class, "ld");
-        serializerForClass.put(LocalDate.class, new LocalDateSerializer());
-
-        nameForClass.put(LocalDateTime.class, "lt");
-        serializerForClass.put(LocalTime.class, new LocalTimeSerializer());
-
-        nameForClass.put(Enum.class, "enum");
-        serializerForClass.put(Enum.class, new EnumSerializer(Enum.class));
-
-        classForName.put("int", Integer.class);
-        classForName.put("long", Long.class);
-        classForName.put("short", Short.class);
-        classForName.put("double", Double.class);
-        classForName.put("float", Float.class);
-        classForName.put("bool", Boolean.class);
-        classForName.put("byte", Byte.class);
-        classForName.put("char", Character.class);
-        classForName.put("string", String.class);
-        classForName.put("date", Date.class);
-        classForName.put("zdt", ZonedDateTime.class);
-        classForName.put("ldt", LocalDateTime.class);
-        classForName.put("ld", LocalDate.class);
-        classForName.put("lt", LocalTime.class);
-        classForName.put("enum", Enum.class);
-        classForName.put("list", List.class);
-        classForName.put("set", Set.class);
-        classForName.put("map", Map.class);
-    }
-
-    private void recursiveFindSerializer(Type genericType, POxOSerializerClassPair pair)
-        throws POxOSerializerException {
-        if (genericType instanceof GenericArrayType) {
-            Type componentType = ((GenericArrayType)genericType).getGenericComponentType();
-            if (componentType instanceof Class<?>) {
-                pair.setGenericClass((Class<?>)componentType);
-                pair.setSerializer(new ListSerializer(pair));
-            } else {
-                POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
-                recursiveFindSerializer(componentType, nestedPair);
-                pair.setGenericClass(nestedPair.getGenericClass());
-                pair.setSerializer(new ListSerializer(nestedPair));
-            }
-        } else if (genericType instanceof ParameterizedType) {
-            Type[] actualTypes = ((ParameterizedType)genericType).getActualTypeArguments();
-            Class<?> genericClass = (Class<?>)((ParameterizedType)genericType).getRawType();
-            if (Map.class.isAssignableFrom(genericClass)) {
-                POxOSerializerClassPair[] serializers = new POxOSerializerClassPair[actualTypes.length];
-                for (int i = 0, n = actualTypes.length; i < n; i++) {
-                    Type actualType = actualTypes[i];
-
-                    if (actualType instanceof Class<?>) {
-                        POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
-                        nestedPair.setGenericClass((Class<?>)actualType);
-                        nestedPair.setSerializer(getTypeSerializer((Class<?>)actualType));
-                        serializers[i] = nestedPair;
-                    } else if (actualType instanceof ParameterizedType) {
-                        POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
-                        recursiveFindSerializer(actualType, nestedPair);
-                        serializers[i] = nestedPair;
-                    } else {
-                        continue;
-                    }
-                }
-                pair.setGenericClass(genericClass);
-                pair.setSerializer(new MapSerializer(serializers[0], serializers[1]));
-            } else if (List.class.isAssignableFrom(genericClass)) {
-                for (int i = 0, n = actualTypes.length; i < n; i++) {
-                    Type actualType = actualTypes[i];
-                    POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
-                    recursiveFindSerializer(actualType, nestedPair);
-
-                    if (actualType instanceof Class<?>) {
-                        pair.setGenericClass(genericClass);
-                        pair.setSerializer(new ListSerializer(nestedPair));
-                    } else if (actualType instanceof ParameterizedType) {
-                        nestedPair = new POxOSerializerClassPair();
-                        recursiveFindSerializer(actualType, nestedPair);
-                        pair.setGenericClass((Class<?>)((ParameterizedType)genericType).getRawType());
-                        pair.setSerializer(new ListSerializer(nestedPair));
-                    } else {
-                        continue;
-                    }
-                }
-            } else if (Set.class.isAssignableFrom(genericClass)) {
-                for (int i = 0, n = actualTypes.length; i < n; i++) {
-                    Type actualType = actualTypes[i];
-                    POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
-                    recursiveFindSerializer(actualType, nestedPair);
-
-                    if (actualType instanceof Class<?>) {
-                        pair.setGenericClass(genericClass);
-                        pair.setSerializer(new SetSerializer(nestedPair));
-                    } else if (actualType instanceof ParameterizedType) {
-                        nestedPair = new POxOSerializerClassPair();
-                        recursiveFindSerializer(actualType, nestedPair);
-                        pair.setGenericClass((Class<?>)((ParameterizedType)genericType).getRawType());
-                        pair.setSerializer(new SetSerializer(nestedPair));
-                    } else {
-                        continue;
-                    }
-                }
-            }
-        } else {
-            pair.setGenericClass((Class<?>)genericType);
-            pair.setSerializer(getTypeSerializer((Class<?>)genericType));
-        }
-    }
-
-    // public Type WriteGenericMethodRecursive(Class<?> nestedGenericType, POxOPrimitiveEncoder encoder)
-    // {
-    // Class<?> ret = nestedGenericType;
-    // Class<?> currentType = ret;
-    //
-    // Type t = currentType.getGenericSuperclass();
-    //
-    // for (int i = 0; i < ; i++)
-    // {
-    // encoder.writeString(getNameFromClass(currentType.GetGenericArguments()[i]));
-    // }
-    // foreach (Type t in currentType.GetGenericArguments())
-    // {
-    // WriteGenericMethodRecursive(t, encoder);
-    // }
-    // return ret;
-    // }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codejuicer.poxoserializer.annotation.POxOSubtypes;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+import org.codejuicer.poxoserializer.serializers.BooleanSerializer;
+import org.codejuicer.poxoserializer.serializers.ByteSerializer;
+import org.codejuicer.poxoserializer.serializers.CharSerializer;
+import org.codejuicer.poxoserializer.serializers.CodecFieldsSerializer;
+import org.codejuicer.poxoserializer.serializers.DateSerializer;
+import org.codejuicer.poxoserializer.serializers.DeclaredTypeSerializer;
+import org.codejuicer.poxoserializer.serializers.DoubleSerializer;
+import org.codejuicer.poxoserializer.serializers.EnumSerializer;
+import org.codejuicer.poxoserializer.serializers.FieldAccessorFactory;
+import org.codejuicer.poxoserializer.serializers.FieldAccessorType;
+import org.codejuicer.poxoserializer.serializers.FieldSerializerUtil;
+import org.codejuicer.poxoserializer.serializers.FieldsSerializer;
+import org.codejuicer.poxoserializer.serializers.FloatSerializer;
+import org.codejuicer.poxoserializer.serializers.GenericClassSerializer;
+import org.codejuicer.poxoserializer.serializers.IntegerSerializer;
+import org.codejuicer.poxoserializer.serializers.ListSerializer;
+import org.codejuicer.poxoserializer.serializers.LocalDateSerializer;
+import org.codejuicer.poxoserializer.serializers.LocalDateTimeSerializer;
+import org.codejuicer.poxoserializer.serializers.LocalTimeSerializer;
+import org.codejuicer.poxoserializer.serializers.LongSerializer;
+import org.codejuicer.poxoserializer.serializers.MapSerializer;
+import org.codejuicer.poxoserializer.serializers.ObjectArraySerializer;
+import org.codejuicer.poxoserializer.serializers.ObjectSerializer;
+import org.codejuicer.poxoserializer.serializers.POxOCodec;
+import org.codejuicer.poxoserializer.serializers.PrimitiveArraySerializer;
+import org.codejuicer.poxoserializer.serializers.RuntimeCodecGenerator;
+import org.codejuicer.poxoserializer.serializers.SetSerializer;
+import org.codejuicer.poxoserializer.serializers.ShortSerializer;
+import org.codejuicer.poxoserializer.serializers.StringSerializer;
+import org.codejuicer.poxoserializer.serializers.SubtypeSerializer;
+import org.codejuicer.poxoserializer.serializers.ZonedDateTimeSerializer;
+
+/**
+ * Type registries shared by all the serializers of a {@link POxOSerializer}. Every registry is a concurrent
+ * map filled lazily with immutable entries, so lookups never lock and concurrent calls can share one
+ * instance.
+ */
+public class POxOSerializerUtil {
+    private Map<Class<?>, Constructor<?>> constructrForClass;
+
+    private Map<String, Class<?>> classForName;
+    private Map<Class<?>, String> nameForClass;
+
+    private Map<Integer, Class<?>> classForId;
+    private Map<Class<?>, Integer> idForClass;
+
+    private Map<Class<?>, Class<?>[]> subtypesForClass;
+
+    private Map<Class<?>, GenericClassSerializer> serializerForClass;
+
+    // the serializers of the built-in types, kept when the serializers built from the settings are discarded
+    private Set<Class<?>> builtInTypes;
+
+    private Map<Class<?>, FieldsSerializer> fieldsSerializerForClass;
+
+    private volatile ClassLoader classLoader;
+
+    private volatile FieldAccessorFactory fieldAccessorFactory = FieldAccessorType.METHOD_HANDLE;
+
+    private volatile Map<Class<?>, POxOCodec> codecForClass;
+
+    private volatile boolean codecsEnabled = true;
+
+    private volatile boolean generatedCodecsEnabled;
+
+    private volatile boolean classReferencesEnabled;
+
+    private volatile int stringReferenceThreshold;
+
+    private volatile boolean objectReferencesEnabled;
+
+    private volatile boolean packedIntegersEnabled;
+
+    private volatile boolean typeTagsEnabled;
+
+    private volatile boolean declaredTypesEnabled;
+
+    private volatile boolean fieldBitmapsEnabled;
+
+    private volatile boolean sparseFieldsEnabled;
+
+    public POxOSerializerUtil() {
+        constructrForClass = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+        classForName = new ConcurrentHashMap<String, Class<?>>();
+        nameForClass = new ConcurrentHashMap<Class<?>, String>();
+        classForId = new ConcurrentHashMap<Integer, Class<?>>();
+        idForClass = new ConcurrentHashMap<Class<?>, Integer>();
+        subtypesForClass = new ConcurrentHashMap<Class<?>, Class<?>[]>();
+        serializerForClass = new ConcurrentHashMap<Class<?>, GenericClassSerializer>();
+        fieldsSerializerForClass = new ConcurrentHashMap<Class<?>, FieldsSerializer>();
+        classLoader = this.getClass().getClassLoader();
+        initializePrimitiveType();
+        builtInTypes = new HashSet<Class<?>>(serializerForClass.keySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T createNewInstance(Class<? extends T> genericClass) throws InstantiationException,
+        IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+
+        Constructor<?> ctor = constructrForClass.get(genericClass);
+        if (ctor == null) {
+            Constructor<?>[] ctors = genericClass.getDeclaredConstructors();
+            for (int i = 0; i < ctors.length; i++) {
+                ctor = ctors[i];
+                if (ctor.getGenericParameterTypes().length == 0) {
+                    break;
+                }
+            }
+
+            ctor.setAccessible(true);
+            constructrForClass.put(genericClass, ctor);
+        }
+        T ret = (T)ctor.newInstance();
+
+        return ret;
+    }
+
+    public Class<?> getClassFromName(String className) throws POxOSerializerException {
+        Class<?> type = classForName.get(className);
+        if (type == null) {
+            try {
+                if (className.startsWith("[")) {
+                    // array names are resolved by Class.forName only
+                    type = Class.forName(className, false, classLoader);
+                } else {
+                    type = classLoader.loadClass(className);
+                }
+            } catch (ClassNotFoundException e) {
+                throw new POxOSerializerException("Error during loading class " + className);
+            }
+            classForName.putIfAbsent(className, type);
+            nameForClass.putIfAbsent(type, className);
+        }
+
+        return type;
+    }
+
+    /**
+     * Registers the ID written in place of the class name for the instances of the class. The reader must
+     * register the same IDs; the classes that are not registered are still written by name.
+     */
+    public void registerClass(Class<?> type, int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Class id cannot be negative: " + id);
+        }
+        Class<?> registeredType = classForId.putIfAbsent(id, type);
+        if (registeredType != null && registeredType != type) {
+            throw new IllegalArgumentException("Class id " + id + " is already registered for "
+                                               + registeredType.getName() + ".");
+        }
+        Integer registeredId = idForClass.putIfAbsent(type, id);
+        if (registeredId != null && registeredId != id) {
+            if (registeredType == null) {
+                classForId.remove(id, type);
+            }
+            throw new IllegalArgumentException("Class " + type.getName() + " is already registered with id "
+                                               + registeredId + ".");
+        }
+    }
+
+    /** Returns the registered ID of the class, or -1 if it is not registered. */
+    public int getClassId(Class<?> type) {
+        Integer id = idForClass.get(type);
+        return id == null ? -1 : id;
+    }
+
+    public Class<?> getClassFromId(int id) throws POxOSerializerException {
+        Class<?> type = classForId.get(id);
+        if (type == null) {
+            throw new POxOSerializerException("Class id " + id + " is not registered.");
+        }
+        return type;
+    }
+
+    /**
+     * Registers the known subtypes of the fields declared with the base type, written with their index in the
+     * list in place of the class name. The deserializing side must register the same list in the same order,
+     * before the first message holding the base type. The field plans and the serializers built from them
+     * are discarded.
+     */
+    public void registerSubtypes(Class<?> baseType, Class<?>... subtypes) {
+        checkSubtypes(baseType, subtypes);
+        subtypesForClass.put(baseType, subtypes.clone());
+        discardSerializers();
+    }
+
+    /**
+     * Returns the known subtypes of the values declared with the type, registered or given by a
+     * {@link POxOSubtypes} annotation on the type, or null if there are none.
+     */
+    public Class<?>[] getSubtypes(Class<?> type) {
+        Class<?>[] ret = subtypesForClass.get(type);
+        if (ret == null) {
+            POxOSubtypes subtypes = type.getAnnotation(POxOSubtypes.class);
+            if (subtypes != null) {
+                ret = subtypes.value();
+                checkSubtypes(type, ret);
+            }
+        }
+        return ret;
+    }
+
+    public GenericClassSerializer getFieldSerializer(Field field) throws POxOSerializerException {
+        GenericClassSerializer ret = null;
+        Class<?> fieldType = field.getType();
+        if (List.class.isAssignableFrom(fieldType) || Set.class.isAssignableFrom(fieldType)
+            || Map.class.isAssignableFrom(fieldType) || field.getGenericType() instanceof GenericArrayType) {
+            POxOSerializerClassPair pair = new POxOSerializerClassPair();
+            recursiveFindSerializer(field.getGenericType(), pair);
+            ret = pair.getSerializer();
+        } else {
+            POxOSubtypes subtypes = field.getAnnotation(POxOSubtypes.class);
+            if (subtypes != null) {
+                checkSubtypes(fieldType, subtypes.value());
+                ret = getDeclaredTypeSerializer(fieldType, subtypes.value());
+            } else {
+                ret = getDeclaredTypeSerializer(fieldType);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the serializer of the values declared with the type, that is the one of
+     * {@link #getTypeSerializer(Class)}, a {@link SubtypeSerializer} for a type with known subtypes or, for a
+     * concrete POJO class, a {@link DeclaredTypeSerializer} that can leave the class implicit.
+     */
+    public GenericClassSerializer getDeclaredTypeSerializer(Class<?> type) throws POxOSerializerException {
+        return getDeclaredTypeSerializer(type, getSubtypes(type));
+    }
+
+    private GenericClassSerializer getDeclaredTypeSerializer(Class<?> type, Class<?>[] subtypes)
+        throws POxOSerializerException {
+        GenericClassSerializer ret = getTypeSerializer(type);
+        if (ret instanceof ObjectSerializer) {
+            if (subtypes != null) {
+                for (Class<?> subtype : subtypes) {
+                    if (!(getTypeSerializer(subtype) instanceof ObjectSerializer)) {
+                        throw new POxOSerializerException("Subtype " + subtype.getName()
+                                                          + " is not a POJO class.");
+                    }
+                }
+                ret = new SubtypeSerializer(subtypes, this, (ObjectSerializer)ret);
+            } else if (type != Object.class && !type.isInterface()
+                       && !Modifier.isAbstract(type.getModifiers())) {
+                ret = new DeclaredTypeSerializer(type, this, (ObjectSerializer)ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the compiled fields plan of a POJO class. The plan (ordered fields and their serializers) is
+     * built the first time the class is met and then reused by every serialize/deserialize call. A
+     * {@link POxOCodec} registered for the class is preferred to the reflective plan, then a codec generated
+     * at runtime from the plan when enabled, unless the field bitmaps or the sparse fields are enabled: the
+     * codecs write the plain layout only.
+     */
+    public FieldsSerializer getFieldsSerializer(Class<?> type) throws POxOSerializerException {
+        FieldsSerializer ret = fieldsSerializerForClass.get(type);
+        if (ret == null) {
+            boolean plainLayout = !fieldBitmapsEnabled && !sparseFieldsEnabled;
+            POxOCodec codec = plainLayout ? getCodec(type) : null;
+            FieldsSerializer plan;
+            if (codec != null) {
+                synchronized (codec) {
+                    codec.initialize(this);
+                }
+                plan = new CodecFieldsSerializer(codec);
+            } else {
+                FieldSerializerUtil[] fields = retrieveOrderedFieldsList(type);
+                codec = plainLayout && generatedCodecsEnabled ? RuntimeCodecGenerator.generate(type, fields)
+                    : null;
+                if (codec != null) {
+                    plan = new CodecFieldsSerializer(codec);
+                } else {
+                    plan = new FieldsSerializer(type, fields, this);
+                }
+            }
+            ret = fieldsSerializerForClass.putIfAbsent(type, plan);
+            if (ret == null) {
+                ret = plan;
+            }
+        }
+        return ret;
+    }
+
+    public String getNameFromClass(Class<?> type) {
+        String name;
+        if (List.class.isAssignableFrom(type)) {
+            name = "list";
+        } else if (Set.class.isAssignableFrom(type)) {
+            name = "set";
+        } else if (Map.class.isAssignableFrom(type)) {
+            name = "map";
+        } else {
+            name = nameForClass.get(type);
+            if (name == null) {
+                name = type.getName();
+                nameForClass.putIfAbsent(type, name);
+                classForName.putIfAbsent(name, type);
+            }
+        }
+        return name;
+    }
+
+    public GenericClassSerializer getTypeSerializer(Class<?> fieldType) throws POxOSerializerException {
+        GenericClassSerializer ret = serializerForClass.get(fieldType);
+        if (ret == null) {
+            if (fieldType.isArray()) {
+                Class<?> componentType = fieldType.getComponentType();
+                if (componentType.isPrimitive()) {
+                    ret = new PrimitiveArraySerializer(fieldType);
+                } else {
+                    POxOSerializerClassPair pair = new POxOSerializerClassPair();
+                    pair.setGenericClass(componentType);
+                    pair.setSerializer(getDeclaredTypeSerializer(componentType));
+                    ret = new ObjectArraySerializer(pair);
+                }
+            } else if (Enum.class.isAssignableFrom(fieldType)) {
+                ret = new EnumSerializer(fieldType);
+            } else if (List.class.isAssignableFrom(fieldType)) {
+                POxOSerializerClassPair pair = new POxOSerializerClassPair();
+                pair.setGenericClass(Object.class);
+                pair.setSerializer(serializerForClass.get(Object.class));
+                ret = new ListSerializer(pair);
+            } else if (Set.class.isAssignableFrom(fieldType)) {
+                POxOSerializerClassPair pair = new POxOSerializerClassPair();
+                pair.setGenericClass(Object.class);
+                pair.setSerializer(serializerForClass.get(Object.class));
+                ret = new SetSerializer(pair);
+            } else if (Map.class.isAssignableFrom(fieldType)) {
+                POxOSerializerClassPair keyPair = new POxOSerializerClassPair();
+                keyPair.setGenericClass(Object.class);
+                keyPair.setSerializer(serializerForClass.get(Object.class));
+                POxOSerializerClassPair valuePair = new POxOSerializerClassPair();
+                valuePair.setGenericClass(Object.class);
+                valuePair.setSerializer(serializerForClass.get(Object.class));
+                ret = new MapSerializer(keyPair, valuePair);
+            } else {
+                return serializerForClass.get(Object.class);
+            }
+            GenericClassSerializer existing = serializerForClass.putIfAbsent(fieldType, ret);
+            if (existing != null) {
+                ret = existing;
+            }
+        }
+
+        return ret;
+    }
+
+    public List<Class<?>> readSubClassParameterType(Type genericType, POxOPrimitiveDecoder decoder)
+        throws POxOSerializerException {
+        List<Class<?>> ret = new ArrayList<Class<?>>();
+        if (genericType instanceof ParameterizedType) {
+            ParameterizedType type = (ParameterizedType)genericType;
+            Type[] typeArguments = type.getActualTypeArguments();
+
+            for (Type typeArgument : typeArguments) {
+                if (typeArgument instanceof Class<?>) {
+                    ret.add((Class<?>)typeArgument);
+                    decoder.readString();
+                } else {
+                    ret.addAll(readSubClassParameterType(typeArgument, decoder));
+                }
+            }
+        } else {
+            ret.add(genericType.getClass());
+            // decoder.readString();
+        }
+        return ret;
+    }
+
+    public void setClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        codecForClass = null;
+        discardSerializers();
+    }
+
+    public boolean isCodecsEnabled() {
+        return codecsEnabled;
+    }
+
+    /**
+     * Enables or disables the {@link POxOCodec} found through the ServiceLoader. The field plans and the
+     * serializers built from them are discarded.
+     */
+    public void setCodecsEnabled(boolean codecsEnabled) {
+        this.codecsEnabled = codecsEnabled;
+        discardSerializers();
+    }
+
+    public boolean isGeneratedCodecsEnabled() {
+        return generatedCodecsEnabled;
+    }
+
+    /**
+     * Enables or disables the codecs generated at runtime, see {@link RuntimeCodecGenerator}, for the classes
+     * without a {@link POxOCodec} found through the ServiceLoader. The field plans and the serializers built
+     * from them are discarded.
+     */
+    public void setGeneratedCodecsEnabled(boolean generatedCodecsEnabled) {
+        this.generatedCodecsEnabled = generatedCodecsEnabled;
+        discardSerializers();
+    }
+
+    public boolean isClassReferencesEnabled() {
+        return classReferencesEnabled;
+    }
+
+    /**
+     * Enables or disables the per-message class table: the first occurrence of a class in a message writes
+     * its name, the next ones only its index in the table.
+     */
+    public void setClassReferencesEnabled(boolean classReferencesEnabled) {
+        this.classReferencesEnabled = classReferencesEnabled;
+    }
+
+    public boolean isObjectReferencesEnabled() {
+        return objectReferencesEnabled;
+    }
+
+    /**
+     * Enables or disables the per-message object table: a POJO already written in the message, compared by
+     * identity, is written again as its index in the table.
+     */
+    public void setObjectReferencesEnabled(boolean objectReferencesEnabled) {
+        this.objectReferencesEnabled = objectReferencesEnabled;
+    }
+
+    public boolean isPackedIntegersEnabled() {
+        return packedIntegersEnabled;
+    }
+
+    /**
+     * Enables or disables the packed encoding of the List and Set fields declared with Short, Integer or Long
+     * elements. The field plans and the serializers built from them are discarded.
+     */
+    public void setPackedIntegersEnabled(boolean packedIntegersEnabled) {
+        this.packedIntegersEnabled = packedIntegersEnabled;
+        discardSerializers();
+    }
+
+    public boolean isTypeTagsEnabled() {
+        return typeTagsEnabled;
+    }
+
+    /**
+     * Enables or disables the one byte tags written in place of the object marker and the class of the
+     * built-in types in the Object typed positions.
+     */
+    public void setTypeTagsEnabled(boolean typeTagsEnabled) {
+        this.typeTagsEnabled = typeTagsEnabled;
+    }
+
+    public boolean isDeclaredTypesEnabled() {
+        return declaredTypesEnabled;
+    }
+
+    /**
+     * Enables or disables the POJO fields written without the class name when the value is exactly of the
+     * declared class of the field.
+     */
+    public void setDeclaredTypesEnabled(boolean declaredTypesEnabled) {
+        this.declaredTypesEnabled = declaredTypesEnabled;
+    }
+
+    public boolean isFieldBitmapsEnabled() {
+        return fieldBitmapsEnabled;
+    }
+
+    /**
+     * Enables or disables the bitmap of the null markers and boolean values written ahead of the fields. The
+     * codecs are not used while it is enabled, so the field plans and the serializers built from them are
+     * discarded. The reader must use the same setting.
+     */
+    public void setFieldBitmapsEnabled(boolean fieldBitmapsEnabled) {
+        this.fieldBitmapsEnabled = fieldBitmapsEnabled;
+        discardSerializers();
+    }
+
+    public boolean isSparseFieldsEnabled() {
+        return sparseFieldsEnabled;
+    }
+
+    /**
+     * Enables or disables the sparse form of the objects, where the fields at the default of their type are
+     * left out. The codecs are not used while it is enabled, so the field plans and the serializers built
+     * from them are discarded. The reader must use the same setting.
+     */
+    public void setSparseFieldsEnabled(boolean sparseFieldsEnabled) {
+        this.sparseFieldsEnabled = sparseFieldsEnabled;
+        discardSerializers();
+    }
+
+    public int getStringReferenceThreshold() {
+        return stringReferenceThreshold;
+    }
+
+    /**
+     * Sets the minimum length of the strings written once per message and then referred to by index, or 0
+     * to disable the string references.
+     */
+    public void setStringReferenceThreshold(int stringReferenceThreshold) {
+        if (stringReferenceThreshold < 0) {
+            throw new IllegalArgumentException("String reference threshold cannot be negative: "
+                                               + stringReferenceThreshold);
+        }
+        this.stringReferenceThreshold = stringReferenceThreshold;
+    }
+
+    public FieldAccessorFactory getFieldAccessorFactory() {
+        return fieldAccessorFactory;
+    }
+
+    /**
+     * Sets the back end used to read and write the POJO fields. The field plans and the serializers built
+     * from them are discarded, so it should be called before the serializer is shared.
+     */
+    public void setFieldAccessorFactory(FieldAccessorFactory fieldAccessorFactory) {
+        this.fieldAccessorFactory = fieldAccessorFactory;
+        discardSerializers();
+    }
+
+    public List<Class<?>> writeSubClassParameterType(Type genericType, POxOPrimitiveEncoder encoder) {
+        List<Class<?>> ret = new ArrayList<Class<?>>();
+        if (genericType instanceof ParameterizedType) {
+            ParameterizedType type = (ParameterizedType)genericType;
+            Type[] typeArguments = type.getActualTypeArguments();
+
+            for (Type typeArgument : typeArguments) {
+                if (typeArgument instanceof Class<?>) {
+                    ret.add((Class<?>)typeArgument);
+                    encoder.writeString(getNameFromClass((Class<?>)typeArgument));
+                } else {
+                    ret.addAll(writeSubClassParameterType(typeArgument, encoder));
+                }
+            }
+        } else {
+            ret.add(genericType.getClass());
+            // encoder.writeString("object");
+        }
+        return ret;
+    }
+
+    /**
+     * Discards the field plans and the serializers of the arrays, collections and fields with subtypes,
+     * which hold the plans and the settings they were built with.
+     */
+    private void discardSerializers() {
+        fieldsSerializerForClass.clear();
+        serializerForClass.keySet().retainAll(builtInTypes);
+    }
+
+    private void initializePrimitiveType() {
+        serializerForClass.put(Object.class, new ObjectSerializer(this));
+
+        nameForClass.put(Integer.class, "int");
+        serializerForClass.put(Integer.class, new IntegerSerializer(Integer.class));
+
+        nameForClass.put(int.class, "int");
+        serializerForClass.put(int.class, new IntegerSerializer(int.class));
+
+        nameForClass.put(Long.class, "long");
+        serializerForClass.put(Long.class, new LongSerializer(Long.class));
+
+        nameForClass.put(long.class, "long");
+        serializerForClass.put(long.class, new LongSerializer(long.class));
+
+        nameForClass.put(Short.class, "short");
+        serializerForClass.put(Short.class, new ShortSerializer(Short.class));
+
+        nameForClass.put(short.class, "short");
+        serializerForClass.put(short.class, new ShortSerializer(short.class));
+
+        nameForClass.put(Double.class, "double");
+        serializerForClass.put(Double.class, new DoubleSerializer(Double.class));
+
+        nameForClass.put(double.class, "double");
+        serializerForClass.put(double.class, new DoubleSerializer(double.class));
+
+        nameForClass.put(Float.class, "float");
+        serializerForClass.put(Float.class, new FloatSerializer(Float.class));
+
+        nameForClass.put(float.class, "float");
+        serializerForClass.put(float.class, new FloatSerializer(float.class));
+
+        nameForClass.put(Boolean.class, "bool");
+        serializerForClass.put(Boolean.class, new BooleanSerializer(Boolean.class));
+
+        nameForClass.put(boolean.class, "bool");
+        serializerForClass.put(boolean.class, new BooleanSerializer(boolean.class));
+
+        nameForClass.put(Byte.class, "byte");
+        serializerForClass.put(Byte.class, new ByteSerializer(Byte.class));
+
+        nameForClass.put(byte.class, "byte");
+        serializerForClass.put(byte.class, new ByteSerializer(byte.class));
+
+        nameForClass.put(Character.class, "char");
+        serializerForClass.put(Character.class, new CharSerializer(Character.class));
+
+        nameForClass.put(char.class, "char");
+        serializerForClass.put(char.class, new CharSerializer(char.class));
+
+        nameForClass.put(String.class, "string");
+        serializerForClass.put(String.class, new StringSerializer());
+
+        nameForClass.put(Date.class, "date");
+        serializerForClass.put(Date.class, new DateSerializer());
+
+        nameForClass.put(ZonedDateTime.class, "zdt");
+        serializerForClass.put(ZonedDateTime.class, new ZonedDateTimeSerializer());
+
+        nameForClass.put(LocalDateTime.class, "ldt");
+        serializerForClass.put(LocalDateTime.class, new LocalDateTimeSerializer());
+
+        nameForClass.put(LocalDate.class, "ld");
+        serializerForClass.put(LocalDate.class, new LocalDateSerializer());
+
+        nameForClass.put(LocalTime.class, "lt");
+        serializerForClass.put(LocalTime.class, new LocalTimeSerializer());
+
+        nameForClass.put(Enum.class, "enum");
+        serializerForClass.put(Enum.class, new EnumSerializer(Enum.class));
+
+        classForName.put("int", Integer.class);
+        classForName.put("long", Long.class);
+        classForName.put("short", Short.class);
+        classForName.put("double", Double.class);
+        classForName.put("float", Float.class);
+        classForName.put("bool", Boolean.class);
+        classForName.put("byte", Byte.class);
+        classForName.put("char", Character.class);
+        classForName.put("string", String.class);
+        classForName.put("date", Date.class);
+        classForName.put("zdt", ZonedDateTime.class);
+        classForName.put("ldt", LocalDateTime.class);
+        classForName.put("ld", LocalDate.class);
+        classForName.put("lt", LocalTime.class);
+        classForName.put("enum", Enum.class);
+        classForName.put("list", List.class);
+        classForName.put("set", Set.class);
+        classForName.put("map", Map.class);
+    }
+
+    private POxOCodec getCodec(Class<?> type) {
+        if (!codecsEnabled) {
+            return null;
+        }
+        Map<Class<?>, POxOCodec> codecs = codecForClass;
+        if (codecs == null) {
+            codecs = loadCodecs();
+            codecForClass = codecs;
+        }
+        return codecs.get(type);
+    }
+
+    private Map<Class<?>, POxOCodec> loadCodecs() {
+        Map<Class<?>, POxOCodec> ret = new HashMap<Class<?>, POxOCodec>();
+        Iterator<POxOCodec> codecs = ServiceLoader.load(POxOCodec.class, classLoader).iterator();
+        while (true) {
+            try {
+                if (!codecs.hasNext()) {
+                    break;
+                }
+                POxOCodec codec = codecs.next();
+                ret.put(codec.getType(), codec);
+            } catch (ServiceConfigurationError e) {
+                // a codec that cannot be loaded leaves its class to the reflective serializer
+                continue;
+            }
+        }
+        return ret;
+    }
+
+    private void checkSubtypes(Class<?> baseType, Class<?>[] subtypes) {
+        if (subtypes.length > 256) {
+            throw new IllegalArgumentException("Too many subtypes for " + baseType.getName() + ": "
+                                               + subtypes.length + ", at most 256 are allowed.");
+        }
+        for (Class<?> subtype : subtypes) {
+            if (!baseType.isAssignableFrom(subtype) || subtype.isInterface()
+                || Modifier.isAbstract(subtype.getModifiers())) {
+                throw new IllegalArgumentException(subtype.getName() + " is not a concrete subtype of "
+                                                   + baseType.getName() + ".");
+            }
+        }
+    }
+
+    private FieldSerializerUtil[] retrieveOrderedFieldsList(Class<?> type) throws POxOSerializerException {
+        List<FieldSerializerUtil> allFieldsSerializer = new ArrayList<FieldSerializerUtil>();
+        Class<?> nextClass = type;
+        while (nextClass != Object.class) {
+            Field[] declaredFields = nextClass.getDeclaredFields();
+            if (declaredFields != null) {
+                for (Field f : declaredFields) {
+                    if (Modifier.isStatic(f.getModifiers()))
+                        continue;
+                    allFieldsSerializer.add(new FieldSerializerUtil(f, getFieldSerializer(f),
+                                                                    fieldAccessorFactory.createAccessor(f)));
+                }
+            }
+            nextClass = nextClass.getSuperclass();
+        }
+
+        Collections.sort(allFieldsSerializer, new Comparator<FieldSerializerUtil>() {
+
+            @Override
+            public int compare(FieldSerializerUtil object1, FieldSerializerUtil object2) {
+                return object1.getField().getName().compareToIgnoreCase(object2.getField().getName());
+            }
+        });
+
+        return allFieldsSerializer.toArray(new FieldSerializerUtil[0]);
+    }
+
+    private void recursiveFindSerializer(Type genericType, POxOSerializerClassPair pair)
+        throws POxOSerializerException {
+        if (genericType instanceof GenericArrayType) {
+            Type componentType = ((GenericArrayType)genericType).getGenericComponentType();
+            POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
+            recursiveFindSerializer(componentType, nestedPair);
+            pair.setGenericClass(Array.newInstance(nestedPair.getGenericClass(), 0).getClass());
+            pair.setSerializer(new ObjectArraySerializer(nestedPair));
+        } else if (genericType instanceof ParameterizedType) {
+            Type[] actualTypes = ((ParameterizedType)genericType).getActualTypeArguments();
+            Class<?> genericClass = (Class<?>)((ParameterizedType)genericType).getRawType();
+            if (Map.class.isAssignableFrom(genericClass)) {
+                POxOSerializerClassPair[] serializers = new POxOSerializerClassPair[actualTypes.length];
+                for (int i = 0, n = actualTypes.length; i < n; i++) {
+                    Type actualType = actualTypes[i];
+
+                    if (actualType instanceof Class<?>) {
+                        POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
+                        nestedPair.setGenericClass((Class<?>)actualType);
+                        nestedPair.setSerializer(getDeclaredTypeSerializer((Class<?>)actualType));
+                        serializers[i] = nestedPair;
+                    } else if (actualType instanceof ParameterizedType) {
+                        POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
+                        recursiveFindSerializer(actualType, nestedPair);
+                        serializers[i] = nestedPair;
+                    } else {
+                        continue;
+                    }
+                }
+                pair.setGenericClass(genericClass);
+                pair.setSerializer(new MapSerializer(serializers[0], serializers[1]));
+            } else if (List.class.isAssignableFrom(genericClass)) {
+                for (int i = 0, n = actualTypes.length; i < n; i++) {
+                    Type actualType = actualTypes[i];
+                    POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
+                    recursiveFindSerializer(actualType, nestedPair);
+
+                    if (actualType instanceof Class<?>) {
+                        pair.setGenericClass(genericClass);
+                        pair.setSerializer(new ListSerializer(nestedPair, packedIntegersEnabled));
+                    } else if (actualType instanceof ParameterizedType) {
+                        nestedPair = new POxOSerializerClassPair();
+                        recursiveFindSerializer(actualType, nestedPair);
+                        pair.setGenericClass((Class<?>)((ParameterizedType)genericType).getRawType());
+                        pair.setSerializer(new ListSerializer(nestedPair, packedIntegersEnabled));
+                    } else {
+                        continue;
+                    }
+                }
+            } else if (Set.class.isAssignableFrom(genericClass)) {
+                for (int i = 0, n = actualTypes.length; i < n; i++) {
+                    Type actualType = actualTypes[i];
+                    POxOSerializerClassPair nestedPair = new POxOSerializerClassPair();
+                    recursiveFindSerializer(actualType, nestedPair);
+
+                    if (actualType instanceof Class<?>) {
+                        pair.setGenericClass(genericClass);
+                        pair.setSerializer(new SetSerializer(nestedPair, packedIntegersEnabled));
+                    } else if (actualType instanceof ParameterizedType) {
+                        nestedPair = new POxOSerializerClassPair();
+                        recursiveFindSerializer(actualType, nestedPair);
+                        pair.setGenericClass((Class<?>)((ParameterizedType)genericType).getRawType());
+                        pair.setSerializer(new SetSerializer(nestedPair, packedIntegersEnabled));
+                    } else {
+                        continue;
+                    }
+                }
+            }
+        } else {
+            pair.setGenericClass((Class<?>)genericType);
+            pair.setSerializer(getDeclaredTypeSerializer((Class<?>)genericType));
+        }
+    }
+
+    // public Type WriteGenericMethodRecursive(Class<?> nestedGenericType, POxOPrimitiveEncoder encoder)
+    // {
+    // Class<?> ret = nestedGenericType;
+    // Class<?> currentType = ret;
+    //
+    // Type t = currentType.getGenericSuperclass();
+    //
+    // for (int i = 0; i < ; i++)
+    // {
+    // encoder.writeString(getNameFromClass(currentType.GetGenericArguments()[i]));
+    // }
+    // foreach (Type t in currentType.GetGenericArguments())
+    // {
+    // WriteGenericMethodRecursive(t, encoder);
+    // }
+    // return ret;
+    // }
+}
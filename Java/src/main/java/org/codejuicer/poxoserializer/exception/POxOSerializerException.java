@@ -1,41 +1,41 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer.exception;
-
-public class POxOSerializerException extends Exception {
-
-    private static final long serialVersionUID = 3722815252995740009L;
-
-    /**
-     * Instantiates a new event exception.
-     * 
-     * @param message message of the exception
-     */
-    public POxOSerializerException(String message) {
-        super(message);
-    }
-
-    /**
-     * Instantiates a new event exception.
-     * 
-     * @param message message of the exception
-     * @param e original exception
-     */
-    public POxOSerializerException(String message, Exception e) {
-        super(message, e);
-    }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.exception;
+
+public class POxOSerializerException extends Exception {
+
+    private static final long serialVersionUID = 3722815252995740009L;
+
+    /**
+     * Instantiates a new event exception.
+     * 
+     * @param message message of the exception
+     */
+    public POxOSerializerException(String message) {
+        super(message);
+    }
+
+    /**
+     * Instantiates a new event exception.
+     * 
+     * @param message message of the exception
+     * @param e original exception
+     */
+    public POxOSerializerException(String message, Exception e) {
+        super(message, e);
+    }
+}
@@ -1,314 +1,784 @@
-/* Copyright (c) 2008, Nathan Sweet
- * All rights reserved.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
- * conditions are met:
- * 
- * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
- * disclaimer in the documentation and/or other materials provided with the distribution.
- * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
- * from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
- * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
- * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
- * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
- * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
- * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
-
-package org.codejuicer.poxoserializer.io;
-
-import java.io.ByteArrayInputStream;
-
-public class POxOPrimitiveDecoder extends ByteArrayInputStream {
-
-    protected char[] chars = new char[32];
-
-    /**
-     * Creates a new Input for reading from a byte array.
-     * 
-     * @param buffer An exception is thrown if more bytes than this are read.
-     */
-    public POxOPrimitiveDecoder(byte[] buffer) {
-        super(buffer);
-    }
-
-    /**
-     * Creates a new Input for reading from a byte array.
-     * 
-     * @param buffer An exception is thrown if more bytes than this are read.
-     */
-    public POxOPrimitiveDecoder(byte[] buffer, int offset, int count) {
-        super(buffer, offset, count);
-    }
-
-    // byte
-
-    /** Reads a single byte. */
-    public byte readByte() {
-        return (byte)read();
-    }
-
-    /**
-     * Reads bytes.length bytes and writes them to the specified byte[], starting at index 0.
-     */
-    public void readBytes(byte[] bytes) {
-        readBytes(bytes, 0, bytes.length);
-    }
-
-    /**
-     * Reads count bytes and writes them to the specified byte[], starting at offset.
-     */
-    public void readBytes(byte[] bytes, int offset, int count) {
-        read(bytes, offset, count);
-    }
-
-    // int
-
-    /**
-     * Reads a 1-5 byte int. This stream may consider such a variable length encoding request as a hint. It is
-     * not guaranteed that a variable length encoding will be really used. The stream may decide to use
-     * native-sized integer representation for efficiency reasons.
-     **/
-    public int readInt(boolean optimizePositive) {
-        return readVarInt(optimizePositive);
-    }
-
-    /**
-     * Reads a 1-5 byte int. It is guaranteed that a varible length encoding will be used.
-     */
-    public int readVarInt(boolean optimizePositive) {
-        int b = read();
-        int result = b & 0x7F;
-        if ((b & 0x80) != 0) {
-            b = read();
-            result |= (b & 0x7F) << 7;
-            if ((b & 0x80) != 0) {
-                b = read();
-                result |= (b & 0x7F) << 14;
-                if ((b & 0x80) != 0) {
-                    b = read();
-                    result |= (b & 0x7F) << 21;
-                    if ((b & 0x80) != 0) {
-                        b = read();
-                        result |= (b & 0x7F) << 28;
-                    }
-                }
-            }
-        }
-        return optimizePositive ? result : ((result >>> 1) ^ -(result & 1));
-    }
-
-    // string
-
-    /**
-     * Reads the length and string of UTF8 characters, or null. This can read strings written by
-     * {@link Output#writeString(String)} , {@link Output#writeString(CharSequence)}, and
-     * {@link Output#writeAscii(String)}.
-     * 
-     * @return May be null.
-     */
-    public String readString() {
-        int b = read();
-        if ((b & 0x80) == 0)
-            return readAscii(); // ASCII.
-        // Null, empty, or UTF8.
-        int charCount = readUtf8Length(b);
-        switch (charCount) {
-        case 0:
-            return null;
-        case 1:
-            return "";
-        }
-        charCount--;
-        if (chars.length < charCount)
-            chars = new char[charCount];
-        readUtf8(charCount);
-        return new String(chars, 0, charCount);
-    }
-
-    private int readUtf8Length(int b) {
-        int result = b & 0x3F; // Mask all but first 6 bits.
-        if ((b & 0x40) != 0) { // Bit 7 means another byte, bit 8 means UTF8.
-            b = read();
-            result |= (b & 0x7F) << 6;
-            if ((b & 0x80) != 0) {
-                b = read();
-                result |= (b & 0x7F) << 13;
-                if ((b & 0x80) != 0) {
-                    b = read();
-                    result |= (b & 0x7F) << 20;
-                    if ((b & 0x80) != 0) {
-                        b = read();
-                        result |= (b & 0x7F) << 27;
-                    }
-                }
-            }
-        }
-        return result;
-    }
-
-    private void readUtf8(int charCount) {
-        char[] chars = this.chars;
-        // Try to read 7 bit ASCII chars.
-        int charIndex = 0;
-        int count = Math.min(this.count - this.pos, charCount);
-
-        int b;
-        while (charIndex < count) {
-            b = (byte)read();
-            if (b < 0) {
-                pos--;
-                break;
-            }
-            chars[charIndex++] = (char)b;
-        }
-
-        // If buffer didn't hold all chars or any were not ASCII, use slow path for
-        // remainder.
-        if (charIndex < charCount)
-            readUtf8_slow(charCount, charIndex);
-    }
-
-    private void readUtf8_slow(int charCount, int charIndex) {
-        char[] chars = this.chars;
-
-        while (charIndex < charCount) {
-            int b = read() & 0xFF;
-            switch (b >> 4) {
-            case 0:
-            case 1:
-            case 2:
-            case 3:
-            case 4:
-            case 5:
-            case 6:
-            case 7:
-                chars[charIndex] = (char)b;
-                break;
-            case 12:
-            case 13:
-                chars[charIndex] = (char)((b & 0x1F) << 6 | read() & 0x3F);
-                break;
-            case 14:
-                chars[charIndex] = (char)((b & 0x0F) << 12 | (read() & 0x3F) << 6 | read() & 0x3F);
-                break;
-            }
-            charIndex++;
-        }
-    }
-
-    private String readAscii() {
-        int start = this.pos - 1;
-        this.reset();
-        this.skip(start);
-        
-        int index = 0;
-        int b;
-        do {
-            b = read();
-            index++;
-        } while ((b & 0x80) == 0);
-        byte[] buffer = new byte[index];
-        start = this.pos - index;
-        this.reset();
-        this.skip(start);
-        
-        readBytes(buffer);
-        buffer[index - 1] &= 0x7F; // Mask end of ascii bit.
-        String value = new String(buffer, 0, 0, index);
-        buffer[index - 1] |= 0x80;
-
-        return value;
-    }
-
-    // float
-
-    /** Reads a 4 byte float. */
-    public float readFloat() {
-        return Float.intBitsToFloat(readInt(true));
-    }
-
-    // short
-
-    /** Reads a 2 byte short. */
-    public short readShort() {
-        return (short)(((read() & 0xFF) << 8) | (read() & 0xFF));
-    }
-
-    // long
-
-    /**
-     * Reads a 1-9 byte long. This stream may consider such a variable length encoding request as a hint. It
-     * is not guaranteed that a variable length encoding will be really used. The stream may decide to use
-     * native-sized integer representation for efficiency reasons.
-     */
-    public long readLong(boolean optimizePositive) {
-        return readVarLong(optimizePositive);
-    }
-
-    /**
-     * Reads a 1-9 byte long. It is guaranteed that a varible length encoding will be used.
-     */
-    public long readVarLong(boolean optimizePositive) {
-        int b = read();
-        long result = b & 0x7F;
-        if ((b & 0x80) != 0) {
-            b = read();
-            result |= (b & 0x7F) << 7;
-            if ((b & 0x80) != 0) {
-                b = read();
-                result |= (b & 0x7F) << 14;
-                if ((b & 0x80) != 0) {
-                    b = read();
-                    result |= (b & 0x7F) << 21;
-                    if ((b & 0x80) != 0) {
-                        b = read();
-                        result |= (long)(b & 0x7F) << 28;
-                        if ((b & 0x80) != 0) {
-                            b = read();
-                            result |= (long)(b & 0x7F) << 35;
-                            if ((b & 0x80) != 0) {
-                                b = read();
-                                result |= (long)(b & 0x7F) << 42;
-                                if ((b & 0x80) != 0) {
-                                    b = read();
-                                    result |= (long)(b & 0x7F) << 49;
-                                    if ((b & 0x80) != 0) {
-                                        b = read();
-                                        result |= (long)b << 56;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        if (!optimizePositive)
-            result = (result >>> 1) ^ -(result & 1);
-        return result;
-    }
-
-    // boolean
-
-    /** Reads a 1 byte boolean. */
-    public boolean readBoolean() {
-        return read() == 1;
-    }
-
-    // char
-
-    /** Reads a 2 byte char. */
-    public char readChar() {
-        return (char)(((read() & 0xFF) << 8) | (read() & 0xFF));
-    }
-
-    // double
-
-    /** Reads an 8 bytes double. */
-    public double readDouble() {
-        return Double.longBitsToDouble(readLong(true));
-    }
-}
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package org.codejuicer.poxoserializer.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+
+/**
+ * Decoder reading directly from a byte array with a position and a limit. Unlike ByteArrayInputStream no
+ * method is synchronized, and every value is bounds checked once before its bytes are read. Reading past the
+ * limit throws a {@link BufferUnderflowException}.
+ * <p>
+ * With an {@link InputStream} set, the buffer is refilled from the stream each time a value needs more bytes
+ * than the ones left, so the stream can be read ahead of the values decoded. Errors of the stream are thrown
+ * as {@link UncheckedIOException}.
+ * <p>
+ * A heap {@link ByteBuffer} is read in place through its backing array, while a direct one is copied in
+ * chunks with bulk gets, as a stream.
+ */
+public class POxOPrimitiveDecoder extends InputStream {
+
+    /**
+     * Strings longer than this are decoded into a temporary array, so that the scratch arrays of a pooled
+     * decoder never grow past it.
+     */
+    private static final int MAX_SCRATCH_SIZE = 8192;
+
+    /**
+     * Reference tables that held more entries than this are dropped when a new buffer is set instead of
+     * cleared, so that a pooled decoder does not keep the capacity reached by its largest message.
+     */
+    private static final int MAX_RETAINED_REFERENCES = 1024;
+
+    protected byte[] buffer;
+
+    protected int position;
+
+    protected int limit;
+
+    protected InputStream inputStream;
+
+    private byte[] streamBuffer;
+
+    private ByteBuffer byteBuffer;
+
+    private ByteBufferInputStream byteBufferStream;
+
+    protected char[] chars = new char[32];
+
+    private byte[] asciiBytes = new byte[32];
+
+    private List<Class<?>> classReferences;
+
+    private List<Object> objectReferences;
+
+    private int stringReferenceThreshold;
+
+    private List<String> stringReferences;
+
+    /**
+     * Creates a new Input for reading from a byte array.
+     * 
+     * @param buffer An exception is thrown if more bytes than this are read.
+     */
+    public POxOPrimitiveDecoder(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Creates a new Input for reading from a byte array.
+     * 
+     * @param buffer An exception is thrown if more bytes than this are read.
+     */
+    public POxOPrimitiveDecoder(byte[] buffer, int offset, int count) {
+        setBuffer(buffer, offset, count);
+    }
+
+    /**
+     * Sets a new buffer to read from, so that the same Input can be reused for another message.
+     * 
+     * @param buffer May be null to release the previous buffer.
+     */
+    public void setBuffer(byte[] buffer, int offset, int count) {
+        this.inputStream = null;
+        this.byteBuffer = null;
+        if (byteBufferStream != null)
+            byteBufferStream.byteBuffer = null;
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = buffer == null ? 0 : Math.min(offset + count, buffer.length);
+        classReferences = clearReferences(classReferences);
+        stringReferences = clearReferences(stringReferences);
+        objectReferences = clearReferences(objectReferences);
+    }
+
+    private static <T> List<T> clearReferences(List<T> references) {
+        if (references == null || references.size() > MAX_RETAINED_REFERENCES)
+            return null;
+        references.clear();
+        return references;
+    }
+
+    /**
+     * Sets the minimum length of the strings kept in the string table of the message, or 0 to read messages
+     * written without string references. It must match the threshold of the encoder.
+     */
+    public void setStringReferenceThreshold(int stringReferenceThreshold) {
+        this.stringReferenceThreshold = stringReferenceThreshold;
+    }
+
+    /**
+     * Sets the stream to read from, so that the same Input can be reused for another message. The stream is
+     * read in chunks of bufferSize bytes into a buffer owned by this Input.
+     */
+    public void setInputStream(InputStream inputStream, int bufferSize) {
+        if (streamBuffer == null || streamBuffer.length < bufferSize)
+            streamBuffer = new byte[bufferSize];
+        setBuffer(streamBuffer, 0, 0);
+        this.inputStream = inputStream;
+    }
+
+    /** Returns the size of the buffer owned for reading streams, 0 if there is none. */
+    public int streamBufferCapacity() {
+        return streamBuffer == null ? 0 : streamBuffer.length;
+    }
+
+    /** Drops the buffer owned for reading streams; the next stream set allocates a new one. */
+    public void releaseStreamBuffer() {
+        if (buffer == streamBuffer)
+            setBuffer(null, 0, 0);
+        streamBuffer = null;
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Sets the byte buffer to read from, starting at its position. The position of the byte buffer is moved
+     * after the bytes decoded only by {@link #updateByteBuffer()}.
+     * 
+     * @param bufferSize The size of the chunks copied from a direct byte buffer.
+     */
+    public void setByteBuffer(ByteBuffer byteBuffer, int bufferSize) {
+        if (byteBuffer.hasArray()) {
+            setBuffer(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(),
+                      byteBuffer.remaining());
+        } else {
+            if (byteBufferStream == null)
+                byteBufferStream = new ByteBufferInputStream();
+            setInputStream(byteBufferStream, bufferSize);
+            byteBufferStream.byteBuffer = byteBuffer;
+        }
+        this.byteBuffer = byteBuffer;
+    }
+
+    public ByteBuffer getByteBuffer() {
+        return byteBuffer;
+    }
+
+    /** Moves the position of the byte buffer, if any, after the bytes decoded so far. */
+    public void updateByteBuffer() {
+        if (byteBuffer == null)
+            return;
+        if (inputStream == null) {
+            ((Buffer)byteBuffer).position(position - byteBuffer.arrayOffset());
+        } else {
+            // the bytes copied but not decoded yet go back to the byte buffer
+            ((Buffer)byteBuffer).position(byteBuffer.position() - (limit - position));
+        }
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /** Returns the index of the next byte to read. */
+    public int position() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    /** Returns the index after the last byte that can be read. */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Returns the class at the index of the class table of the current message, or null if there is none.
+     */
+    public Class<?> getClassReference(int index) {
+        if (classReferences == null || index < 0 || index >= classReferences.size())
+            return null;
+        return classReferences.get(index);
+    }
+
+    /** Adds the class to the class table of the current message. */
+    public void addClassReference(Class<?> type) {
+        if (classReferences == null)
+            classReferences = new ArrayList<Class<?>>();
+        classReferences.add(type);
+    }
+
+    /**
+     * Returns the object at the index of the object table of the current message, or null if there is none.
+     */
+    public Object getObjectReference(int index) {
+        if (objectReferences == null || index < 0 || index >= objectReferences.size())
+            return null;
+        return objectReferences.get(index);
+    }
+
+    /** Adds the object to the object table of the current message. */
+    public void addObjectReference(Object obj) {
+        if (objectReferences == null)
+            objectReferences = new ArrayList<Object>();
+        objectReferences.add(obj);
+    }
+
+    /**
+     * Checks that at least count bytes can be read and returns the number of bytes available.
+     * 
+     * @throws BufferUnderflowException if less than count bytes remain.
+     */
+    protected int require(int count) {
+        int remaining = limit - position;
+        if (remaining >= count)
+            return remaining;
+        if (inputStream == null)
+            throw new BufferUnderflowException();
+        return fill(count);
+    }
+
+    /** Moves the remaining bytes to the start of the buffer and reads the stream until count are ready. */
+    private int fill(int count) {
+        int remaining = limit - position;
+        if (count > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(count, buffer.length << 1)];
+            System.arraycopy(buffer, position, newBuffer, 0, remaining);
+            buffer = newBuffer;
+            streamBuffer = newBuffer;
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+        try {
+            while (limit < count) {
+                int read = inputStream.read(buffer, limit, buffer.length - limit);
+                if (read == -1)
+                    throw new BufferUnderflowException();
+                limit += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return limit;
+    }
+
+    /** Returns true if at least count bytes can be read, refilling the buffer from the stream if needed. */
+    private boolean optional(int count) {
+        try {
+            require(count);
+            return true;
+        } catch (BufferUnderflowException e) {
+            return false;
+        }
+    }
+
+    // InputStream
+
+    @Override
+    public int read() {
+        if (position < limit || inputStream != null && optional(1))
+            return buffer[position++] & 0xFF;
+        return -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int count) {
+        if (bytes == null)
+            throw new NullPointerException("bytes cannot be null.");
+        if (count == 0)
+            return 0;
+        if (position == limit && (inputStream == null || !optional(1)))
+            return -1;
+        int remaining = limit - position;
+        count = Math.min(count, remaining);
+        System.arraycopy(buffer, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long count) {
+        long skipped = Math.max(0, Math.min(count, limit - position));
+        position += (int)skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    // byte
+
+    /** Reads a single byte. */
+    public byte readByte() {
+        require(1);
+        return buffer[position++];
+    }
+
+    /** Returns the next byte without consuming it. */
+    public byte peekByte() {
+        require(1);
+        return buffer[position];
+    }
+
+    /**
+     * Reads bytes.length bytes and writes them to the specified byte[], starting at index 0.
+     */
+    public void readBytes(byte[] bytes) {
+        readBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads count bytes and writes them to the specified byte[], starting at offset.
+     */
+    public void readBytes(byte[] bytes, int offset, int count) {
+        if (inputStream != null && count > buffer.length) {
+            readStreamBytes(bytes, offset, count);
+            return;
+        }
+        require(count);
+        System.arraycopy(buffer, position, bytes, offset, count);
+        position += count;
+    }
+
+    /** Copies the bytes left in the buffer and reads the rest straight from the stream, without growing. */
+    private void readStreamBytes(byte[] bytes, int offset, int count) {
+        int copied = limit - position;
+        System.arraycopy(buffer, position, bytes, offset, copied);
+        position = limit;
+        try {
+            while (copied < count) {
+                int read = inputStream.read(bytes, offset + copied, count - copied);
+                if (read == -1)
+                    throw new BufferUnderflowException();
+                copied += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // int
+
+    /**
+     * Reads a 1-5 byte int. This stream may consider such a variable length encoding request as a hint. It is
+     * not guaranteed that a variable length encoding will be really used. The stream may decide to use
+     * native-sized integer representation for efficiency reasons.
+     **/
+    public int readInt(boolean optimizePositive) {
+        return readVarInt(optimizePositive);
+    }
+
+    /**
+     * Reads a 1-5 byte int. It is guaranteed that a varible length encoding will be used.
+     */
+    public int readVarInt(boolean optimizePositive) {
+        if (limit - position < 5)
+            return readVarIntSlow(optimizePositive);
+        byte[] buffer = this.buffer;
+        int p = position;
+        int b = buffer[p++];
+        int result = b & 0x7F;
+        if ((b & 0x80) != 0) {
+            b = buffer[p++];
+            result |= (b & 0x7F) << 7;
+            if ((b & 0x80) != 0) {
+                b = buffer[p++];
+                result |= (b & 0x7F) << 14;
+                if ((b & 0x80) != 0) {
+                    b = buffer[p++];
+                    result |= (b & 0x7F) << 21;
+                    if ((b & 0x80) != 0) {
+                        b = buffer[p++];
+                        result |= (b & 0x7F) << 28;
+                    }
+                }
+            }
+        }
+        position = p;
+        return optimizePositive ? result : ((result >>> 1) ^ -(result & 1));
+    }
+
+    private int readVarIntSlow(boolean optimizePositive) {
+        int b = readByte();
+        int result = b & 0x7F;
+        if ((b & 0x80) != 0) {
+            b = readByte();
+            result |= (b & 0x7F) << 7;
+            if ((b & 0x80) != 0) {
+                b = readByte();
+                result |= (b & 0x7F) << 14;
+                if ((b & 0x80) != 0) {
+                    b = readByte();
+                    result |= (b & 0x7F) << 21;
+                    if ((b & 0x80) != 0) {
+                        b = readByte();
+                        result |= (b & 0x7F) << 28;
+                    }
+                }
+            }
+        }
+        return optimizePositive ? result : ((result >>> 1) ^ -(result & 1));
+    }
+
+    // string
+
+    /**
+     * Reads the length and string of UTF8 characters, or null. This can read strings written by
+     * {@link POxOPrimitiveEncoder#writeString(String)} and {@link POxOPrimitiveEncoder#writeAscii(String)}.
+     * 
+     * @return May be null.
+     * @throws POxOSerializerException if the string is a reference to a string not read yet.
+     */
+    public String readString() throws POxOSerializerException {
+        if (stringReferenceThreshold <= 0)
+            return readStringValue();
+        require(1);
+        if (buffer[position] == (byte)0x80) {
+            // With string references 0x80 is followed by 0 for null or by the index + 1 of a previous string.
+            position++;
+            int reference = readVarInt(true);
+            if (reference == 0)
+                return null;
+            if (stringReferences == null || reference > stringReferences.size())
+                throw new POxOSerializerException("String reference " + reference + " is not defined.");
+            return stringReferences.get(reference - 1);
+        }
+        String value = readStringValue();
+        if (value.length() >= stringReferenceThreshold) {
+            if (stringReferences == null)
+                stringReferences = new ArrayList<String>();
+            stringReferences.add(value);
+        }
+        return value;
+    }
+
+    private String readStringValue() {
+        require(1);
+        int b = buffer[position];
+        if ((b & 0x80) == 0)
+            return readAscii(); // ASCII.
+        position++;
+        // Null, empty, or UTF8.
+        int charCount = readUtf8Length(b);
+        switch (charCount) {
+        case 0:
+            return null;
+        case 1:
+            return "";
+        }
+        charCount--;
+        char[] chars = this.chars;
+        if (chars.length < charCount) {
+            chars = new char[charCount];
+            if (charCount <= MAX_SCRATCH_SIZE)
+                this.chars = chars;
+        }
+        readUtf8(chars, charCount);
+        return new String(chars, 0, charCount);
+    }
+
+    private int readUtf8Length(int b) {
+        int result = b & 0x3F; // Mask all but first 6 bits.
+        if ((b & 0x40) != 0) { // Bit 7 means another byte, bit 8 means UTF8.
+            b = readByte();
+            result |= (b & 0x7F) << 6;
+            if ((b & 0x80) != 0) {
+                b = readByte();
+                result |= (b & 0x7F) << 13;
+                if ((b & 0x80) != 0) {
+                    b = readByte();
+                    result |= (b & 0x7F) << 20;
+                    if ((b & 0x80) != 0) {
+                        b = readByte();
+                        result |= (b & 0x7F) << 27;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the chars in chunks: while the buffer holds 3 bytes for each of them, the worst case, they are
+     * decoded without any bounds check. Invalid bytes become U+FFFD.
+     */
+    private void readUtf8(char[] chars, int charCount) {
+        int charIndex = 0;
+        while (charIndex < charCount) {
+            int count = Math.min(charCount - charIndex, (limit - position) / 3);
+            if (count == 0) {
+                chars[charIndex++] = readUtf8Char();
+                continue;
+            }
+            byte[] buffer = this.buffer;
+            int p = position;
+            for (int end = charIndex + count; charIndex < end; charIndex++) {
+                int b = buffer[p++];
+                if (b >= 0) {
+                    chars[charIndex] = (char)b;
+                } else if ((b & 0xE0) == 0xC0) {
+                    chars[charIndex] = (char)((b & 0x1F) << 6 | buffer[p++] & 0x3F);
+                } else if ((b & 0xF0) == 0xE0) {
+                    chars[charIndex] = (char)((b & 0x0F) << 12 | (buffer[p] & 0x3F) << 6
+                                              | buffer[p + 1] & 0x3F);
+                    p += 2;
+                } else {
+                    chars[charIndex] = '\uFFFD';
+                }
+            }
+            position = p;
+        }
+    }
+
+    /** Decodes a char requiring only its own bytes, for the end of the buffer. */
+    private char readUtf8Char() {
+        require(1);
+        int b = buffer[position++];
+        if (b >= 0)
+            return (char)b;
+        if ((b & 0xE0) == 0xC0) {
+            require(1);
+            return (char)((b & 0x1F) << 6 | buffer[position++] & 0x3F);
+        }
+        if ((b & 0xF0) == 0xE0) {
+            require(2);
+            char c = (char)((b & 0x0F) << 12 | (buffer[position] & 0x3F) << 6 | buffer[position + 1] & 0x3F);
+            position += 2;
+            return c;
+        }
+        return '\uFFFD';
+    }
+
+    private String readAscii() {
+        // the bytes are scanned relative to the position, which moves to 0 when the buffer is refilled
+        int index = 0;
+        while (true) {
+            int available = require(index + 1);
+            byte[] buffer = this.buffer;
+            int start = position;
+            // 8 bytes or-ed together are negative only if one of them has the end bit
+            for (int i = start + index, end = start + available - 8; i <= end; i += 8) {
+                if ((buffer[i] | buffer[i + 1] | buffer[i + 2] | buffer[i + 3] | buffer[i + 4] | buffer[i + 5]
+                     | buffer[i + 6] | buffer[i + 7]) < 0)
+                    break;
+                index += 8;
+            }
+            while (index < available) {
+                if (buffer[start + index] < 0)
+                    return readAsciiChars(index + 1);
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Builds the string from the ASCII bytes and clears the end bit of the last one. The stream buffer is
+     * owned by the decoder, so the end bit is cleared in place and the string is built from the buffer
+     * range; the array of the caller is never written, so its bytes are copied to the scratch array first.
+     */
+    private String readAsciiChars(int charCount) {
+        int start = position;
+        position += charCount;
+        if (buffer == streamBuffer) {
+            buffer[start + charCount - 1] &= 0x7F; // Mask end of ascii bit.
+            return new String(buffer, start, charCount, StandardCharsets.ISO_8859_1);
+        }
+        byte[] bytes = asciiBytes;
+        if (bytes.length < charCount) {
+            bytes = new byte[charCount];
+            if (charCount <= MAX_SCRATCH_SIZE)
+                asciiBytes = bytes;
+        }
+        System.arraycopy(buffer, start, bytes, 0, charCount);
+        bytes[charCount - 1] &= 0x7F; // Mask end of ascii bit.
+        return new String(bytes, 0, charCount, StandardCharsets.ISO_8859_1);
+    }
+
+    // float
+
+    /** Reads a 4 byte float. */
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt(true));
+    }
+
+    // short
+
+    /** Reads a 2 byte short. */
+    public short readShort() {
+        require(2);
+        byte[] buffer = this.buffer;
+        int p = position;
+        position = p + 2;
+        return (short)(((buffer[p] & 0xFF) << 8) | (buffer[p + 1] & 0xFF));
+    }
+
+    // long
+
+    /**
+     * Reads a 1-9 byte long. This stream may consider such a variable length encoding request as a hint. It
+     * is not guaranteed that a variable length encoding will be really used. The stream may decide to use
+     * native-sized integer representation for efficiency reasons.
+     */
+    public long readLong(boolean optimizePositive) {
+        return readVarLong(optimizePositive);
+    }
+
+    /**
+     * Reads a 1-9 byte long. It is guaranteed that a varible length encoding will be used.
+     */
+    public long readVarLong(boolean optimizePositive) {
+        if (limit - position < 9)
+            return readVarLongSlow(optimizePositive);
+        byte[] buffer = this.buffer;
+        int p = position;
+        int b = buffer[p++];
+        long result = b & 0x7F;
+        if ((b & 0x80) != 0) {
+            b = buffer[p++];
+            result |= (b & 0x7F) << 7;
+            if ((b & 0x80) != 0) {
+                b = buffer[p++];
+                result |= (b & 0x7F) << 14;
+                if ((b & 0x80) != 0) {
+                    b = buffer[p++];
+                    result |= (b & 0x7F) << 21;
+                    if ((b & 0x80) != 0) {
+                        b = buffer[p++];
+                        result |= (long)(b & 0x7F) << 28;
+                        if ((b & 0x80) != 0) {
+                            b = buffer[p++];
+                            result |= (long)(b & 0x7F) << 35;
+                            if ((b & 0x80) != 0) {
+                                b = buffer[p++];
+                                result |= (long)(b & 0x7F) << 42;
+                                if ((b & 0x80) != 0) {
+                                    b = buffer[p++];
+                                    result |= (long)(b & 0x7F) << 49;
+                                    if ((b & 0x80) != 0) {
+                                        b = buffer[p++];
+                                        result |= (long)(b & 0xFF) << 56;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        position = p;
+        if (!optimizePositive)
+            result = (result >>> 1) ^ -(result & 1);
+        return result;
+    }
+
+    private long readVarLongSlow(boolean optimizePositive) {
+        int b = readByte();
+        long result = b & 0x7F;
+        if ((b & 0x80) != 0) {
+            b = readByte();
+            result |= (b & 0x7F) << 7;
+            if ((b & 0x80) != 0) {
+                b = readByte();
+                result |= (b & 0x7F) << 14;
+                if ((b & 0x80) != 0) {
+                    b = readByte();
+                    result |= (b & 0x7F) << 21;
+                    if ((b & 0x80) != 0) {
+                        b = readByte();
+                        result |= (long)(b & 0x7F) << 28;
+                        if ((b & 0x80) != 0) {
+                            b = readByte();
+                            result |= (long)(b & 0x7F) << 35;
+                            if ((b & 0x80) != 0) {
+                                b = readByte();
+                                result |= (long)(b & 0x7F) << 42;
+                                if ((b & 0x80) != 0) {
+                                    b = readByte();
+                                    result |= (long)(b & 0x7F) << 49;
+                                    if ((b & 0x80) != 0) {
+                                        b = readByte();
+                                        result |= (long)(b & 0xFF) << 56;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (!optimizePositive)
+            result = (result >>> 1) ^ -(result & 1);
+        return result;
+    }
+
+    // boolean
+
+    /** Reads a 1 byte boolean. */
+    public boolean readBoolean() {
+        return readByte() == 1;
+    }
+
+    // char
+
+    /** Reads a 2 byte char. */
+    public char readChar() {
+        require(2);
+        byte[] buffer = this.buffer;
+        int p = position;
+        position = p + 2;
+        return (char)(((buffer[p] & 0xFF) << 8) | (buffer[p + 1] & 0xFF));
+    }
+
+    // double
+
+    /** Reads an 8 bytes double. */
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong(true));
+    }
+
+    /** Stream getting the bytes from a byte buffer. */
+    private static final class ByteBufferInputStream extends InputStream {
+        private ByteBuffer byteBuffer;
+
+        @Override
+        public int read() {
+            return byteBuffer.hasRemaining() ? byteBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) {
+            int remaining = byteBuffer.remaining();
+            if (remaining == 0)
+                return count == 0 ? 0 : -1;
+            count = Math.min(count, remaining);
+            byteBuffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -1,371 +1,773 @@
-/* Copyright (c) 2008, Nathan Sweet
- * All rights reserved.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
- * conditions are met:
- * 
- * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
- * disclaimer in the documentation and/or other materials provided with the distribution.
- * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
- * from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
- * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
- * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
- * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
- * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
- * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
-
-package org.codejuicer.poxoserializer.io;
-
-import java.io.ByteArrayOutputStream;
-
-public class POxOPrimitiveEncoder extends ByteArrayOutputStream {
-
-    /**
-     * Creates an uninitialized Output. {@link #setBuffer(byte[], int)} must be called before the Output is
-     * used.
-     */
-    public POxOPrimitiveEncoder() {
-    }
-
-    /**
-     * Creates a new Output for writing to a byte array.
-     * 
-     * @param bufferSize The initial and maximum size of the buffer. An exception is thrown if this size is
-     *            exceeded.
-     */
-    public POxOPrimitiveEncoder(int bufferSize) {
-        super(bufferSize);
-    }
-
-    // byte
-
-    public void writeByte(byte value) {
-        write((byte)value);
-    }
-
-    /** Writes the bytes. Note the byte[] length is not written. */
-    public void writeBytes(byte[] bytes) {
-        if (bytes == null)
-            throw new IllegalArgumentException("bytes cannot be null.");
-        write(bytes, 0, bytes.length);
-    }
-
-    /** Writes the bytes. Note the byte[] length is not written. */
-    public void writeBytes(byte[] bytes, int offset, int count) {
-        if (bytes == null)
-            throw new IllegalArgumentException("bytes cannot be null.");
-        write(bytes, offset, count);
-    }
-
-    // int
-
-    /**
-     * Writes a 1-5 byte int. This stream may consider such a variable length encoding request as a hint. It
-     * is not guaranteed that a variable length encoding will be really used. The stream may decide to use
-     * native-sized integer representation for efficiency reasons.
-     * 
-     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small
-     *            negative numbers will be inefficient (5 bytes).
-     */
-    public int writeInt(int value, boolean optimizePositive) {
-        return writeVarInt(value, optimizePositive);
-    }
-
-    /**
-     * Writes a 1-5 byte int. It is guaranteed that a varible length encoding will be used.
-     * 
-     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small
-     *            negative numbers will be inefficient (5 bytes).
-     */
-    public int writeVarInt(int value, boolean optimizePositive) {
-        if (!optimizePositive)
-            value = (value << 1) ^ (value >> 31);
-        if (value >>> 7 == 0) {
-            writeByte((byte)value);
-            return 1;
-        }
-        if (value >>> 14 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7));
-            return 2;
-        }
-        if (value >>> 21 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7 | 0x80));
-            writeByte((byte)(value >>> 14));
-            return 3;
-        }
-        if (value >>> 28 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7 | 0x80));
-            writeByte((byte)(value >>> 14 | 0x80));
-            writeByte((byte)(value >>> 21));
-            return 4;
-        }
-        writeByte((byte)((value & 0x7F) | 0x80));
-        writeByte((byte)(value >>> 7 | 0x80));
-        writeByte((byte)(value >>> 14 | 0x80));
-        writeByte((byte)(value >>> 21 | 0x80));
-        writeByte((byte)(value >>> 28));
-        return 5;
-    }
-
-    // string
-
-    /**
-     * Writes the length and string, or null. Short strings are checked and if ASCII they are written more
-     * efficiently, else they are written as UTF8. If a string is known to be ASCII,
-     * {@link #writeAscii(String)} may be used. The string can be read using {@link Input#readString()} or
-     * {@link Input#readStringBuilder()}.
-     * 
-     * @param value May be null.
-     */
-    public void writeString(String value) {
-        if (value == null) {
-            write(0x80); // 0 means null, bit 8 means UTF8.
-            return;
-        }
-        int charCount = value.length();
-        if (charCount == 0) {
-            write(1 | 0x80); // 1 means empty string, bit 8 means UTF8.
-            return;
-        }
-        // Detect ASCII.
-        boolean ascii = false;
-        if (charCount > 1 && charCount < 64) {
-            ascii = true;
-            for (int i = 0; i < charCount; i++) {
-                int c = value.charAt(i);
-                if (c > 127) {
-                    ascii = false;
-                    break;
-                }
-            }
-        }
-        if (ascii) {
-            byte[] buffer = value.getBytes();
-            buffer[charCount - 1] |= 0x80;
-            writeBytes(buffer);
-        } else {
-            writeUtf8Length(charCount + 1);
-            int charIndex = 0;
-
-            for (; charIndex < charCount; charIndex++) {
-                int c = value.charAt(charIndex);
-                if (c > 127)
-                    break;
-                writeByte((byte)c);
-            }
-
-            if (charIndex < charCount)
-                writeString_slow(value, charCount, charIndex);
-        }
-    }
-
-    /**
-     * Writes a string that is known to contain only ASCII characters. Non-ASCII strings passed to this method
-     * will be corrupted. Each byte is a 7 bit character with the remaining byte denoting if another character
-     * is available. This is slightly more efficient than {@link #writeString(String)}. The string can be read
-     * using {@link Input#readString()} or {@link Input#readStringBuilder()}.
-     * 
-     * @param value May be null.
-     */
-    public void writeAscii(String value) {
-        if (value == null) {
-            write(0x80); // 0 means null, bit 8 means UTF8.
-            return;
-        }
-        int charCount = value.length();
-        switch (charCount) {
-        case 0:
-            write(1 | 0x80); // 1 is string length + 1, bit 8 means UTF8.
-            return;
-        case 1:
-            write(2 | 0x80); // 2 is string length + 1, bit 8 means UTF8.
-            write(value.charAt(0));
-            return;
-        }
-        byte[] buffer = value.getBytes();
-        buffer[charCount - 1] |= 0x80; // Bit 8 means end of ASCII.
-        writeBytes(buffer);
-    }
-
-    /**
-     * Writes the length of a string, which is a variable length encoded int except the first byte uses bit 8
-     * to denote UTF8 and bit 7 to denote if another byte is present.
-     */
-    private void writeUtf8Length(int value) {
-        if (value >>> 6 == 0) {
-            writeByte((byte)(value | 0x80)); // Set bit 8.
-        } else if (value >>> 13 == 0) {
-            writeByte((byte)(value | 0x40 | 0x80)); // Set bit 7 and 8.
-            writeByte((byte)(value >>> 6));
-        } else if (value >>> 20 == 0) {
-            writeByte((byte)(value | 0x40 | 0x80)); // Set bit 7 and 8.
-            writeByte((byte)((value >>> 6) | 0x80)); // Set bit 8.
-            writeByte((byte)(value >>> 13));
-        } else if (value >>> 27 == 0) {
-            writeByte((byte)(value | 0x40 | 0x80)); // Set bit 7 and 8.
-            writeByte((byte)((value >>> 6) | 0x80)); // Set bit 8.
-            writeByte((byte)((value >>> 13) | 0x80)); // Set bit 8.
-            writeByte((byte)(value >>> 20));
-        } else {
-            writeByte((byte)(value | 0x40 | 0x80)); // Set bit 7 and 8.
-            writeByte((byte)((value >>> 6) | 0x80)); // Set bit 8.
-            writeByte((byte)((value >>> 13) | 0x80)); // Set bit 8.
-            writeByte((byte)((value >>> 20) | 0x80)); // Set bit 8.
-            writeByte((byte)(value >>> 27));
-        }
-    }
-
-    private void writeString_slow(CharSequence value, int charCount, int charIndex) {
-        for (; charIndex < charCount; charIndex++) {
-            int c = value.charAt(charIndex);
-            if (c <= 0x007F) {
-                writeByte((byte)c);
-            } else if (c > 0x07FF) {
-                writeByte((byte)(0xE0 | c >> 12 & 0x0F));
-                writeByte((byte)(0x80 | c >> 6 & 0x3F));
-                writeByte((byte)(0x80 | c & 0x3F));
-            } else {
-                writeByte((byte)(0xC0 | c >> 6 & 0x1F));
-                writeByte((byte)(0x80 | c & 0x3F));
-            }
-        }
-    }
-
-    // float
-
-    /** Writes a 4 byte float. */
-    public void writeFloat(float value) {
-        writeInt(Float.floatToIntBits(value), true);
-    }
-
-    // short
-
-    /** Writes a 2 byte short. Uses BIG_ENDIAN byte order. */
-    public void writeShort(int value) {
-        writeByte((byte)(value >>> 8));
-        writeByte((byte)value);
-    }
-
-    // long
-
-    /**
-     * Writes a 1-9 byte long. This stream may consider such a variable length encoding request as a hint. It
-     * is not guaranteed that a variable length encoding will be really used. The stream may decide to use
-     * native-sized integer representation for efficiency reasons.
-     * 
-     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small
-     *            negative numbers will be inefficient (9 bytes).
-     */
-    public int writeLong(long value, boolean optimizePositive) {
-        return writeVarLong(value, optimizePositive);
-    }
-
-    /**
-     * Writes a 1-9 byte long. It is guaranteed that a varible length encoding will be used.
-     * 
-     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small
-     *            negative numbers will be inefficient (9 bytes).
-     */
-    public int writeVarLong(long value, boolean optimizePositive) {
-        if (!optimizePositive)
-            value = (value << 1) ^ (value >> 63);
-        if (value >>> 7 == 0) {
-            writeByte((byte)value);
-            return 1;
-        }
-        if (value >>> 14 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7));
-            return 2;
-        }
-        if (value >>> 21 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7 | 0x80));
-            writeByte((byte)(value >>> 14));
-            return 3;
-        }
-        if (value >>> 28 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7 | 0x80));
-            writeByte((byte)(value >>> 14 | 0x80));
-            writeByte((byte)(value >>> 21));
-            return 4;
-        }
-        if (value >>> 35 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7 | 0x80));
-            writeByte((byte)(value >>> 14 | 0x80));
-            writeByte((byte)(value >>> 21 | 0x80));
-            writeByte((byte)(value >>> 28));
-            return 5;
-        }
-        if (value >>> 42 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7 | 0x80));
-            writeByte((byte)(value >>> 14 | 0x80));
-            writeByte((byte)(value >>> 21 | 0x80));
-            writeByte((byte)(value >>> 28 | 0x80));
-            writeByte((byte)(value >>> 35));
-            return 6;
-        }
-        if (value >>> 49 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7 | 0x80));
-            writeByte((byte)(value >>> 14 | 0x80));
-            writeByte((byte)(value >>> 21 | 0x80));
-            writeByte((byte)(value >>> 28 | 0x80));
-            writeByte((byte)(value >>> 35 | 0x80));
-            writeByte((byte)(value >>> 42));
-            return 7;
-        }
-        if (value >>> 56 == 0) {
-            writeByte((byte)((value & 0x7F) | 0x80));
-            writeByte((byte)(value >>> 7 | 0x80));
-            writeByte((byte)(value >>> 14 | 0x80));
-            writeByte((byte)(value >>> 21 | 0x80));
-            writeByte((byte)(value >>> 28 | 0x80));
-            writeByte((byte)(value >>> 35 | 0x80));
-            writeByte((byte)(value >>> 42 | 0x80));
-            writeByte((byte)(value >>> 49));
-            return 8;
-        }
-        writeByte((byte)((value & 0x7F) | 0x80));
-        writeByte((byte)(value >>> 7 | 0x80));
-        writeByte((byte)(value >>> 14 | 0x80));
-        writeByte((byte)(value >>> 21 | 0x80));
-        writeByte((byte)(value >>> 28 | 0x80));
-        writeByte((byte)(value >>> 35 | 0x80));
-        writeByte((byte)(value >>> 42 | 0x80));
-        writeByte((byte)(value >>> 49 | 0x80));
-        writeByte((byte)(value >>> 56));
-        return 9;
-    }
-
-    // boolean
-
-    /** Writes a 1 byte boolean. */
-    public void writeBoolean(boolean value) {
-        writeByte((byte)(value ? 1 : 0));
-    }
-
-    // char
-
-    /** Writes a 2 byte char. Uses BIG_ENDIAN byte order. */
-    public void writeChar(char value) {
-        writeByte((byte)(value >>> 8));
-        writeByte((byte)value);
-    }
-
-    // double
-
-    /** Writes an 8 byte double. */
-    public void writeDouble(double value) {
-        writeLong(Double.doubleToLongBits(value), true);
-    }
-}
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package org.codejuicer.poxoserializer.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Encoder writing directly into a growable byte array. Unlike ByteArrayOutputStream no method is
+ * synchronized, and every value reserves its maximum size once before its bytes are written. The buffer
+ * doubles when it is full, and {@link #getBuffer()} and {@link #position()} give access to the written bytes
+ * without the copy of {@link #toByteArray()}.
+ * <p>
+ * With an {@link OutputStream} set, the buffer is written to the stream each time it is full instead of
+ * growing; it grows only for a single value larger than the buffer. Errors of the stream are thrown as
+ * {@link UncheckedIOException}. A {@link ByteBuffer}, heap or direct, is filled in the same way with bulk
+ * puts.
+ * <p>
+ * With a caller array set by {@link #setBuffer(byte[], int)} the bytes are written in place and the buffer
+ * never grows: writing past its end throws a {@link BufferOverflowException}.
+ */
+public class POxOPrimitiveEncoder extends OutputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 32;
+
+    private static final int CHARS_CHUNK_SIZE = 256;
+
+    /**
+     * Reference tables that held more entries than this are dropped on {@link #reset()} instead of cleared,
+     * so that a pooled encoder does not keep the capacity reached by its largest message.
+     */
+    private static final int MAX_RETAINED_REFERENCES = 1024;
+
+    protected byte[] buffer;
+
+    protected int position;
+
+    protected OutputStream outputStream;
+
+    private byte[] ownBuffer;
+
+    private final char[] chars = new char[CHARS_CHUNK_SIZE];
+
+    private ByteBufferOutputStream byteBufferStream;
+
+    private Map<Class<?>, Integer> classReferences;
+
+    private Map<Object, Integer> objectReferences;
+
+    private int stringReferenceThreshold;
+
+    private Map<String, Integer> stringReferences;
+
+    /**
+     * Creates a new Output for writing to a byte array of the default initial size.
+     */
+    public POxOPrimitiveEncoder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new Output for writing to a byte array.
+     * 
+     * @param bufferSize The initial size of the buffer, which grows when it is exceeded.
+     */
+    public POxOPrimitiveEncoder(int bufferSize) {
+        if (bufferSize < 0)
+            throw new IllegalArgumentException("bufferSize cannot be negative: " + bufferSize);
+        buffer = new byte[bufferSize];
+    }
+
+    /** Returns the length of the current buffer, that is the number of bytes retained by this Output. */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Returns the internal buffer. The bytes written are the ones from 0 to {@link #position()}; the buffer
+     * is replaced when it grows.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Sets the array to write into from offset, in place of the buffer of this Output until the next
+     * {@link #reset()}. The array does not grow, and {@link #position()} counts from its start.
+     */
+    public void setBuffer(byte[] buffer, int offset) {
+        if (offset < 0 || offset > buffer.length)
+            throw new IndexOutOfBoundsException("offset out of the buffer: " + offset);
+        if (ownBuffer == null)
+            ownBuffer = this.buffer;
+        this.buffer = buffer;
+        this.position = offset;
+        this.outputStream = null;
+    }
+
+    /** Returns the index after the last byte written. */
+    public int position() {
+        return position;
+    }
+
+    /** Returns the number of bytes written. */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * Sets the stream the buffer is flushed to, or null to write only into the buffer. The bytes not yet
+     * flushed are discarded.
+     */
+    public void setOutputStream(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        position = 0;
+    }
+
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Sets the byte buffer the buffer is flushed to, starting at its position. Flushing more bytes than the
+     * ones remaining in the byte buffer throws a {@link BufferOverflowException}.
+     */
+    public void setByteBuffer(ByteBuffer byteBuffer) {
+        if (byteBufferStream == null)
+            byteBufferStream = new ByteBufferOutputStream();
+        byteBufferStream.byteBuffer = byteBuffer;
+        setOutputStream(byteBufferStream);
+    }
+
+    /**
+     * Discards the bytes written and the tables of the message, keeping the buffer. The output stream, if
+     * any, is released.
+     */
+    public void reset() {
+        position = 0;
+        if (ownBuffer != null) {
+            buffer = ownBuffer;
+            ownBuffer = null;
+        }
+        outputStream = null;
+        if (byteBufferStream != null)
+            byteBufferStream.byteBuffer = null;
+        classReferences = clearReferences(classReferences);
+        stringReferences = clearReferences(stringReferences);
+        objectReferences = clearReferences(objectReferences);
+    }
+
+    private static <K> Map<K, Integer> clearReferences(Map<K, Integer> references) {
+        if (references == null || references.size() > MAX_RETAINED_REFERENCES)
+            return null;
+        references.clear();
+        return references;
+    }
+
+    /**
+     * Sets the minimum length of the strings kept in the string table of the message, or 0 to disable the
+     * string references. A string of the table written again is replaced by 0x80 and its index + 1, while
+     * null becomes 0x80 0x00; the decoder must use the same threshold.
+     */
+    public void setStringReferenceThreshold(int stringReferenceThreshold) {
+        this.stringReferenceThreshold = stringReferenceThreshold;
+    }
+
+    /** Returns a copy of the bytes written. */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /** Writes the bytes written to the given stream. */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, position);
+    }
+
+    /**
+     * Returns the index of the class in the class table of the current message, or -1 if the class has not
+     * been added yet.
+     */
+    public int getClassReference(Class<?> type) {
+        if (classReferences == null)
+            return -1;
+        Integer index = classReferences.get(type);
+        return index == null ? -1 : index;
+    }
+
+    /** Adds the class to the class table of the current message and returns its index. */
+    public int addClassReference(Class<?> type) {
+        if (classReferences == null)
+            classReferences = new IdentityHashMap<Class<?>, Integer>();
+        int index = classReferences.size();
+        classReferences.put(type, index);
+        return index;
+    }
+
+    /**
+     * Returns the index of the object, compared by identity, in the object table of the current message, or
+     * -1 if the object has not been added yet.
+     */
+    public int getObjectReference(Object obj) {
+        if (objectReferences == null)
+            return -1;
+        Integer index = objectReferences.get(obj);
+        return index == null ? -1 : index;
+    }
+
+    /** Adds the object to the object table of the current message and returns its index. */
+    public int addObjectReference(Object obj) {
+        if (objectReferences == null)
+            objectReferences = new IdentityHashMap<Object, Integer>();
+        int index = objectReferences.size();
+        objectReferences.put(obj, index);
+        return index;
+    }
+
+    /**
+     * Makes room for count more bytes. The buffer is flushed to the output stream, if any, otherwise it grows
+     * geometrically.
+     * 
+     * @throws BufferOverflowException if the buffer is a caller array without room for count bytes.
+     */
+    protected void require(int count) {
+        if (count <= buffer.length - position)
+            return;
+        if (outputStream != null) {
+            flushBuffer();
+            if (count <= buffer.length)
+                return;
+        }
+        if (ownBuffer != null)
+            throw new BufferOverflowException();
+        int minCapacity = position + count;
+        if (minCapacity < 0)
+            throw new OutOfMemoryError("Buffer size exceeds the maximum array size.");
+        int newCapacity = buffer.length << 1;
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity < 0)
+            newCapacity = Integer.MAX_VALUE - 8;
+        buffer = Arrays.copyOf(buffer, newCapacity);
+    }
+
+    private void flushBuffer() {
+        if (position == 0)
+            return;
+        try {
+            outputStream.write(buffer, 0, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        position = 0;
+    }
+
+    // OutputStream
+
+    @Override
+    public void write(int value) {
+        require(1);
+        buffer[position++] = (byte)value;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int count) {
+        if (offset < 0 || count < 0 || count > bytes.length - offset)
+            throw new IndexOutOfBoundsException();
+        if (outputStream != null && count > buffer.length - position) {
+            flushBuffer();
+            if (count > buffer.length) {
+                // larger than the whole buffer, written straight to the stream
+                try {
+                    outputStream.write(bytes, offset, count);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+        }
+        require(count);
+        System.arraycopy(bytes, offset, buffer, position, count);
+        position += count;
+    }
+
+    /** Writes the buffered bytes to the output stream, if any, and flushes it. */
+    @Override
+    public void flush() {
+        if (outputStream == null)
+            return;
+        flushBuffer();
+        try {
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // byte
+
+    public void writeByte(byte value) {
+        require(1);
+        buffer[position++] = value;
+    }
+
+    /** Writes the bytes. Note the byte[] length is not written. */
+    public void writeBytes(byte[] bytes) {
+        if (bytes == null)
+            throw new IllegalArgumentException("bytes cannot be null.");
+        write(bytes, 0, bytes.length);
+    }
+
+    /** Writes the bytes. Note the byte[] length is not written. */
+    public void writeBytes(byte[] bytes, int offset, int count) {
+        if (bytes == null)
+            throw new IllegalArgumentException("bytes cannot be null.");
+        write(bytes, offset, count);
+    }
+
+    // int
+
+    /**
+     * Writes a 1-5 byte int. This stream may consider such a variable length encoding request as a hint. It
+     * is not guaranteed that a variable length encoding will be really used. The stream may decide to use
+     * native-sized integer representation for efficiency reasons.
+     * 
+     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small
+     *            negative numbers will be inefficient (5 bytes).
+     */
+    public int writeInt(int value, boolean optimizePositive) {
+        return writeVarInt(value, optimizePositive);
+    }
+
+    /**
+     * Writes a 1-5 byte int. It is guaranteed that a varible length encoding will be used.
+     * 
+     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small
+     *            negative numbers will be inefficient (5 bytes).
+     */
+    public int writeVarInt(int value, boolean optimizePositive) {
+        if (!optimizePositive)
+            value = (value << 1) ^ (value >> 31);
+        if (buffer.length - position < 5)
+            require(varIntLength(value));
+        byte[] buffer = this.buffer;
+        int p = position;
+        if (value >>> 7 == 0) {
+            buffer[p++] = (byte)value;
+            position = p;
+            return 1;
+        }
+        if (value >>> 14 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7);
+            position = p;
+            return 2;
+        }
+        if (value >>> 21 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7 | 0x80);
+            buffer[p++] = (byte)(value >>> 14);
+            position = p;
+            return 3;
+        }
+        if (value >>> 28 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7 | 0x80);
+            buffer[p++] = (byte)(value >>> 14 | 0x80);
+            buffer[p++] = (byte)(value >>> 21);
+            position = p;
+            return 4;
+        }
+        buffer[p++] = (byte)((value & 0x7F) | 0x80);
+        buffer[p++] = (byte)(value >>> 7 | 0x80);
+        buffer[p++] = (byte)(value >>> 14 | 0x80);
+        buffer[p++] = (byte)(value >>> 21 | 0x80);
+        buffer[p++] = (byte)(value >>> 28);
+        position = p;
+        return 5;
+    }
+
+    // string
+
+    /**
+     * Writes the length and string, or null. Short strings are checked and if ASCII they are written more
+     * efficiently, else they are written as UTF8. If a string is known to be ASCII,
+     * {@link #writeAscii(String)} may be used. The string can be read using
+     * {@link POxOPrimitiveDecoder#readString()}.
+     * 
+     * @param value May be null.
+     */
+    public void writeString(String value) {
+        if (stringReferenceThreshold > 0) {
+            if (value == null) {
+                require(2);
+                buffer[position++] = (byte)0x80;
+                buffer[position++] = 0;
+                return;
+            }
+            if (value.length() >= stringReferenceThreshold) {
+                if (stringReferences == null)
+                    stringReferences = new HashMap<String, Integer>();
+                Integer index = stringReferences.get(value);
+                if (index != null) {
+                    write(0x80);
+                    writeVarInt(index + 1, true);
+                    return;
+                }
+                stringReferences.put(value, stringReferences.size());
+            }
+        }
+        writeStringValue(value);
+    }
+
+    private void writeStringValue(String value) {
+        if (value == null) {
+            write(0x80); // 0 means null, bit 8 means UTF8.
+            return;
+        }
+        int charCount = value.length();
+        if (charCount == 0) {
+            write(1 | 0x80); // 1 means empty string, bit 8 means UTF8.
+            return;
+        }
+        char[] chars = this.chars;
+        if (charCount > 1 && charCount < 64) {
+            value.getChars(0, charCount, chars, 0);
+            // the chars or-ed together are ASCII only if all of them are
+            int bits = 0;
+            for (int i = 0; i < charCount; i++)
+                bits |= chars[i];
+            if (bits <= 127) {
+                require(charCount);
+                byte[] buffer = this.buffer;
+                int p = position;
+                for (int i = 0; i < charCount; i++)
+                    buffer[p++] = (byte)chars[i];
+                buffer[p - 1] |= 0x80; // Bit 8 means end of ASCII.
+                position = p;
+            } else {
+                writeUtf8Length(charCount + 1);
+                writeUtf8Chars(chars, charCount);
+            }
+            return;
+        }
+        writeUtf8Length(charCount + 1);
+        for (int charIndex = 0; charIndex < charCount; charIndex += CHARS_CHUNK_SIZE) {
+            int count = Math.min(CHARS_CHUNK_SIZE, charCount - charIndex);
+            value.getChars(charIndex, charIndex + count, chars, 0);
+            writeUtf8Chars(chars, count);
+        }
+    }
+
+    /**
+     * Writes a string that is known to contain only ASCII characters. Non-ASCII strings passed to this method
+     * will be corrupted. Each byte is a 7 bit character with the remaining byte denoting if another character
+     * is available. This is slightly more efficient than {@link #writeString(String)}. The string can be read
+     * using {@link POxOPrimitiveDecoder#readString()}.
+     * 
+     * @param value May be null.
+     */
+    public void writeAscii(String value) {
+        if (value == null) {
+            write(0x80); // 0 means null, bit 8 means UTF8.
+            return;
+        }
+        int charCount = value.length();
+        switch (charCount) {
+        case 0:
+            write(1 | 0x80); // 1 is string length + 1, bit 8 means UTF8.
+            return;
+        case 1:
+            write(2 | 0x80); // 2 is string length + 1, bit 8 means UTF8.
+            write(value.charAt(0));
+            return;
+        }
+        writeAsciiChars(value, charCount);
+    }
+
+    /** Writes the chars of an ASCII string with bit 8 set on the last one. */
+    private void writeAsciiChars(String value, int charCount) {
+        require(charCount);
+        byte[] buffer = this.buffer;
+        char[] chars = this.chars;
+        int p = position;
+        for (int charIndex = 0; charIndex < charCount; charIndex += CHARS_CHUNK_SIZE) {
+            int count = Math.min(CHARS_CHUNK_SIZE, charCount - charIndex);
+            value.getChars(charIndex, charIndex + count, chars, 0);
+            for (int i = 0; i < count; i++)
+                buffer[p++] = (byte)chars[i];
+        }
+        buffer[p - 1] |= 0x80; // Bit 8 means end of ASCII.
+        position = p;
+    }
+
+    /**
+     * Writes the length of a string, which is a variable length encoded int except the first byte uses bit 8
+     * to denote UTF8 and bit 7 to denote if another byte is present.
+     */
+    private void writeUtf8Length(int value) {
+        if (buffer.length - position < 5)
+            require(value >>> 6 == 0 ? 1 : 1 + varIntLength(value >>> 6));
+        byte[] buffer = this.buffer;
+        int p = position;
+        if (value >>> 6 == 0) {
+            buffer[p++] = (byte)(value | 0x80); // Set bit 8.
+        } else if (value >>> 13 == 0) {
+            buffer[p++] = (byte)(value | 0x40 | 0x80); // Set bit 7 and 8.
+            buffer[p++] = (byte)(value >>> 6);
+        } else if (value >>> 20 == 0) {
+            buffer[p++] = (byte)(value | 0x40 | 0x80); // Set bit 7 and 8.
+            buffer[p++] = (byte)((value >>> 6) | 0x80); // Set bit 8.
+            buffer[p++] = (byte)(value >>> 13);
+        } else if (value >>> 27 == 0) {
+            buffer[p++] = (byte)(value | 0x40 | 0x80); // Set bit 7 and 8.
+            buffer[p++] = (byte)((value >>> 6) | 0x80); // Set bit 8.
+            buffer[p++] = (byte)((value >>> 13) | 0x80); // Set bit 8.
+            buffer[p++] = (byte)(value >>> 20);
+        } else {
+            buffer[p++] = (byte)(value | 0x40 | 0x80); // Set bit 7 and 8.
+            buffer[p++] = (byte)((value >>> 6) | 0x80); // Set bit 8.
+            buffer[p++] = (byte)((value >>> 13) | 0x80); // Set bit 8.
+            buffer[p++] = (byte)((value >>> 20) | 0x80); // Set bit 8.
+            buffer[p++] = (byte)(value >>> 27);
+        }
+        position = p;
+    }
+
+    /**
+     * Writes the chars as UTF8, each char on its own like the original encoding, so surrogates take 3 bytes
+     * each. The worst case of 3 bytes per char is reserved once, except in a caller array that cannot grow.
+     */
+    private void writeUtf8Chars(char[] chars, int count) {
+        if (ownBuffer != null && count * 3 > buffer.length - position) {
+            writeUtf8Chars_slow(chars, count);
+            return;
+        }
+        require(count * 3);
+        byte[] buffer = this.buffer;
+        int p = position;
+        for (int i = 0; i < count; i++) {
+            int c = chars[i];
+            if (c <= 0x007F) {
+                buffer[p++] = (byte)c;
+            } else if (c > 0x07FF) {
+                buffer[p++] = (byte)(0xE0 | c >> 12 & 0x0F);
+                buffer[p++] = (byte)(0x80 | c >> 6 & 0x3F);
+                buffer[p++] = (byte)(0x80 | c & 0x3F);
+            } else {
+                buffer[p++] = (byte)(0xC0 | c >> 6 & 0x1F);
+                buffer[p++] = (byte)(0x80 | c & 0x3F);
+            }
+        }
+        position = p;
+    }
+
+    /** Writes the chars as UTF8 reserving the exact size of each one. */
+    private void writeUtf8Chars_slow(char[] chars, int count) {
+        for (int i = 0; i < count; i++) {
+            int c = chars[i];
+            if (c <= 0x007F) {
+                require(1);
+                buffer[position++] = (byte)c;
+            } else if (c > 0x07FF) {
+                require(3);
+                buffer[position++] = (byte)(0xE0 | c >> 12 & 0x0F);
+                buffer[position++] = (byte)(0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte)(0x80 | c & 0x3F);
+            } else {
+                require(2);
+                buffer[position++] = (byte)(0xC0 | c >> 6 & 0x1F);
+                buffer[position++] = (byte)(0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    /** Returns the number of bytes of the varint, so that the end of a caller array can be filled. */
+    private static int varIntLength(int value) {
+        return value >>> 7 == 0 ? 1 : value >>> 14 == 0 ? 2 : value >>> 21 == 0 ? 3
+            : value >>> 28 == 0 ? 4 : 5;
+    }
+
+    private static int varLongLength(long value) {
+        int length = 1;
+        while ((value >>>= 7) != 0 && length < 9)
+            length++;
+        return length;
+    }
+
+    // float
+
+    /** Writes a 4 byte float. */
+    public void writeFloat(float value) {
+        writeInt(Float.floatToIntBits(value), true);
+    }
+
+    // short
+
+    /** Writes a 2 byte short. Uses BIG_ENDIAN byte order. */
+    public void writeShort(int value) {
+        require(2);
+        buffer[position++] = (byte)(value >>> 8);
+        buffer[position++] = (byte)value;
+    }
+
+    // long
+
+    /**
+     * Writes a 1-9 byte long. This stream may consider such a variable length encoding request as a hint. It
+     * is not guaranteed that a variable length encoding will be really used. The stream may decide to use
+     * native-sized integer representation for efficiency reasons.
+     * 
+     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small
+     *            negative numbers will be inefficient (9 bytes).
+     */
+    public int writeLong(long value, boolean optimizePositive) {
+        return writeVarLong(value, optimizePositive);
+    }
+
+    /**
+     * Writes a 1-9 byte long. It is guaranteed that a varible length encoding will be used.
+     * 
+     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small
+     *            negative numbers will be inefficient (9 bytes).
+     */
+    public int writeVarLong(long value, boolean optimizePositive) {
+        if (!optimizePositive)
+            value = (value << 1) ^ (value >> 63);
+        if (buffer.length - position < 9)
+            require(varLongLength(value));
+        byte[] buffer = this.buffer;
+        int p = position;
+        if (value >>> 7 == 0) {
+            buffer[p++] = (byte)value;
+            position = p;
+            return 1;
+        }
+        if (value >>> 14 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7);
+            position = p;
+            return 2;
+        }
+        if (value >>> 21 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7 | 0x80);
+            buffer[p++] = (byte)(value >>> 14);
+            position = p;
+            return 3;
+        }
+        if (value >>> 28 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7 | 0x80);
+            buffer[p++] = (byte)(value >>> 14 | 0x80);
+            buffer[p++] = (byte)(value >>> 21);
+            position = p;
+            return 4;
+        }
+        if (value >>> 35 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7 | 0x80);
+            buffer[p++] = (byte)(value >>> 14 | 0x80);
+            buffer[p++] = (byte)(value >>> 21 | 0x80);
+            buffer[p++] = (byte)(value >>> 28);
+            position = p;
+            return 5;
+        }
+        if (value >>> 42 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7 | 0x80);
+            buffer[p++] = (byte)(value >>> 14 | 0x80);
+            buffer[p++] = (byte)(value >>> 21 | 0x80);
+            buffer[p++] = (byte)(value >>> 28 | 0x80);
+            buffer[p++] = (byte)(value >>> 35);
+            position = p;
+            return 6;
+        }
+        if (value >>> 49 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7 | 0x80);
+            buffer[p++] = (byte)(value >>> 14 | 0x80);
+            buffer[p++] = (byte)(value >>> 21 | 0x80);
+            buffer[p++] = (byte)(value >>> 28 | 0x80);
+            buffer[p++] = (byte)(value >>> 35 | 0x80);
+            buffer[p++] = (byte)(value >>> 42);
+            position = p;
+            return 7;
+        }
+        if (value >>> 56 == 0) {
+            buffer[p++] = (byte)((value & 0x7F) | 0x80);
+            buffer[p++] = (byte)(value >>> 7 | 0x80);
+            buffer[p++] = (byte)(value >>> 14 | 0x80);
+            buffer[p++] = (byte)(value >>> 21 | 0x80);
+            buffer[p++] = (byte)(value >>> 28 | 0x80);
+            buffer[p++] = (byte)(value >>> 35 | 0x80);
+            buffer[p++] = (byte)(value >>> 42 | 0x80);
+            buffer[p++] = (byte)(value >>> 49);
+            position = p;
+            return 8;
+        }
+        buffer[p++] = (byte)((value & 0x7F) | 0x80);
+        buffer[p++] = (byte)(value >>> 7 | 0x80);
+        buffer[p++] = (byte)(value >>> 14 | 0x80);
+        buffer[p++] = (byte)(value >>> 21 | 0x80);
+        buffer[p++] = (byte)(value >>> 28 | 0x80);
+        buffer[p++] = (byte)(value >>> 35 | 0x80);
+        buffer[p++] = (byte)(value >>> 42 | 0x80);
+        buffer[p++] = (byte)(value >>> 49 | 0x80);
+        buffer[p++] = (byte)(value >>> 56);
+        position = p;
+        return 9;
+    }
+
+    // boolean
+
+    /** Writes a 1 byte boolean. */
+    public void writeBoolean(boolean value) {
+        writeByte((byte)(value ? 1 : 0));
+    }
+
+    // char
+
+    /** Writes a 2 byte char. Uses BIG_ENDIAN byte order. */
+    public void writeChar(char value) {
+        require(2);
+        buffer[position++] = (byte)(value >>> 8);
+        buffer[position++] = (byte)value;
+    }
+
+    // double
+
+    /** Writes an 8 byte double. */
+    public void writeDouble(double value) {
+        writeLong(Double.doubleToLongBits(value), true);
+    }
+
+    /** Stream putting the bytes into a byte buffer. */
+    private static final class ByteBufferOutputStream extends OutputStream {
+        private ByteBuffer byteBuffer;
+
+        @Override
+        public void write(int value) {
+            byteBuffer.put((byte)value);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) {
+            byteBuffer.put(bytes, offset, count);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.io;
+
+/**
+ * Pool of encoders and decoders reused across serialize/deserialize calls. Encoders whose buffer grew beyond
+ * the maximum retained size are dropped on release instead of being kept in the pool, and decoders lose the
+ * stream buffer that grew beyond it.
+ */
+public abstract class POxOPrimitivePool {
+
+    public static final int DEFAULT_MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    protected final int bufferSize;
+
+    protected final int maxRetainedBufferSize;
+
+    protected POxOPrimitivePool(int bufferSize, int maxRetainedBufferSize) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("bufferSize must be positive.");
+        this.bufferSize = bufferSize;
+        this.maxRetainedBufferSize = Math.max(bufferSize, maxRetainedBufferSize);
+    }
+
+    public abstract POxOPrimitiveEncoder obtainEncoder();
+
+    public abstract void releaseEncoder(POxOPrimitiveEncoder encoder);
+
+    public abstract POxOPrimitiveDecoder obtainDecoder(byte[] buffer, int offset, int count);
+
+    public abstract void releaseDecoder(POxOPrimitiveDecoder decoder);
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaxRetainedBufferSize() {
+        return maxRetainedBufferSize;
+    }
+
+    protected POxOPrimitiveEncoder newEncoder() {
+        return new POxOPrimitiveEncoder(bufferSize);
+    }
+
+    protected POxOPrimitiveDecoder newDecoder(byte[] buffer, int offset, int count) {
+        return new POxOPrimitiveDecoder(buffer, offset, count);
+    }
+
+    /** Resets the encoder and returns true if it can go back to the pool. */
+    protected boolean recycle(POxOPrimitiveEncoder encoder) {
+        encoder.reset();
+        return encoder.capacity() <= maxRetainedBufferSize;
+    }
+
+    /**
+     * Releases the decoder buffer, so that a pooled decoder never holds on to a message, and its stream buffer
+     * if it grew beyond the maximum retained size.
+     */
+    protected boolean recycle(POxOPrimitiveDecoder decoder) {
+        decoder.setBuffer(null, 0, 0);
+        if (decoder.streamBufferCapacity() > maxRetainedBufferSize)
+            decoder.releaseStreamBuffer();
+        return true;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free pool shared by all the threads. At most maxPooled encoders and maxPooled decoders are kept, the
+ * others are left to the garbage collector.
+ */
+public class POxOSharedPool extends POxOPrimitivePool {
+
+    private final int maxPooled;
+
+    private final Queue<POxOPrimitiveEncoder> encoders = new ConcurrentLinkedQueue<POxOPrimitiveEncoder>();
+
+    private final AtomicInteger encodersCount = new AtomicInteger();
+
+    private final Queue<POxOPrimitiveDecoder> decoders = new ConcurrentLinkedQueue<POxOPrimitiveDecoder>();
+
+    private final AtomicInteger decodersCount = new AtomicInteger();
+
+    public POxOSharedPool(int bufferSize) {
+        this(bufferSize, DEFAULT_MAX_RETAINED_BUFFER_SIZE, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public POxOSharedPool(int bufferSize, int maxRetainedBufferSize, int maxPooled) {
+        super(bufferSize, maxRetainedBufferSize);
+        this.maxPooled = maxPooled;
+    }
+
+    @Override
+    public POxOPrimitiveEncoder obtainEncoder() {
+        POxOPrimitiveEncoder encoder = encoders.poll();
+        if (encoder == null) {
+            return newEncoder();
+        }
+        encodersCount.decrementAndGet();
+        return encoder;
+    }
+
+    @Override
+    public void releaseEncoder(POxOPrimitiveEncoder encoder) {
+        if (recycle(encoder) && reserve(encodersCount)) {
+            encoders.offer(encoder);
+        }
+    }
+
+    @Override
+    public POxOPrimitiveDecoder obtainDecoder(byte[] buffer, int offset, int count) {
+        POxOPrimitiveDecoder decoder = decoders.poll();
+        if (decoder == null) {
+            return newDecoder(buffer, offset, count);
+        }
+        decodersCount.decrementAndGet();
+        decoder.setBuffer(buffer, offset, count);
+        return decoder;
+    }
+
+    @Override
+    public void releaseDecoder(POxOPrimitiveDecoder decoder) {
+        if (recycle(decoder) && reserve(decodersCount)) {
+            decoders.offer(decoder);
+        }
+    }
+
+    private boolean reserve(AtomicInteger counter) {
+        int current;
+        do {
+            current = counter.get();
+            if (current >= maxPooled) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + 1));
+        return true;
+    }
+}
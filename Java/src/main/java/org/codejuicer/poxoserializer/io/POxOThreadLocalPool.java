@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.io;
+
+/**
+ * Pool keeping one encoder and one decoder per thread. A nested call on the same thread, while the cached
+ * instance is still in use, gets a new instance that is not retained.
+ */
+public class POxOThreadLocalPool extends POxOPrimitivePool {
+
+    private final ThreadLocal<Slot> slots = new ThreadLocal<Slot>() {
+
+        @Override
+        protected Slot initialValue() {
+            return new Slot();
+        }
+    };
+
+    public POxOThreadLocalPool(int bufferSize) {
+        this(bufferSize, DEFAULT_MAX_RETAINED_BUFFER_SIZE);
+    }
+
+    public POxOThreadLocalPool(int bufferSize, int maxRetainedBufferSize) {
+        super(bufferSize, maxRetainedBufferSize);
+    }
+
+    @Override
+    public POxOPrimitiveEncoder obtainEncoder() {
+        Slot slot = slots.get();
+        POxOPrimitiveEncoder encoder = slot.encoder;
+        if (encoder == null) {
+            return newEncoder();
+        }
+        slot.encoder = null;
+        return encoder;
+    }
+
+    @Override
+    public void releaseEncoder(POxOPrimitiveEncoder encoder) {
+        Slot slot = slots.get();
+        if (slot.encoder == null && recycle(encoder)) {
+            slot.encoder = encoder;
+        }
+    }
+
+    @Override
+    public POxOPrimitiveDecoder obtainDecoder(byte[] buffer, int offset, int count) {
+        Slot slot = slots.get();
+        POxOPrimitiveDecoder decoder = slot.decoder;
+        if (decoder == null) {
+            return newDecoder(buffer, offset, count);
+        }
+        slot.decoder = null;
+        decoder.setBuffer(buffer, offset, count);
+        return decoder;
+    }
+
+    @Override
+    public void releaseDecoder(POxOPrimitiveDecoder decoder) {
+        Slot slot = slots.get();
+        if (slot.decoder == null && recycle(decoder)) {
+            slot.decoder = decoder;
+        }
+    }
+
+    private static class Slot {
+        private POxOPrimitiveEncoder encoder;
+
+        private POxOPrimitiveDecoder decoder;
+    }
+}
@@ -1,52 +1,75 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer.serializers;
-
-import org.codejuicer.poxoserializer.exception.POxOSerializerException;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
-
-public class ByteSerializer extends GenericClassSerializer {
-
-    public ByteSerializer(Class<?> classToSerialize) {
-        super(Byte.class.isAssignableFrom(classToSerialize));
-    }
-
-    @Override
-    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
-        if (canBeNull) {
-            if (value == null) {
-                encoder.write(0x00);
-                return;
-            } else {
-                encoder.write(0x01);
-            }
-        }
-        encoder.writeByte((byte)value);
-    }
-
-    @Override
-    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
-        if (canBeNull) {
-            byte isNull = decoder.readByte();
-            if (isNull == 0x00) {
-                return null;
-            }
-        }
-        return decoder.readByte();
-    }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+public class ByteSerializer extends GenericClassSerializer implements PrimitiveFieldSerializer,
+    NullableValueSerializer {
+
+    public ByteSerializer(Class<?> classToSerialize) {
+        super(Byte.class.isAssignableFrom(classToSerialize));
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        if (canBeNull) {
+            if (value == null) {
+                encoder.write(0x00);
+                return;
+            } else {
+                encoder.write(0x01);
+            }
+        }
+        writeValue(encoder, value);
+    }
+
+    @Override
+    public void writeValue(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        encoder.writeByte((byte)value);
+    }
+
+    @Override
+    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        if (canBeNull) {
+            byte isNull = decoder.readByte();
+            if (isNull == 0x00) {
+                return null;
+            }
+        }
+        return readValue(decoder);
+    }
+
+    @Override
+    public Object readValue(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        return decoder.readByte();
+    }
+
+    @Override
+    public void writeField(POxOPrimitiveEncoder encoder, Object obj, FieldAccessor accessor)
+        throws POxOSerializerException {
+        encoder.writeByte(accessor.getByte(obj));
+    }
+
+    @Override
+    public void readField(POxOPrimitiveDecoder decoder, Object obj, FieldAccessor accessor)
+        throws POxOSerializerException {
+        accessor.setByte(obj, decoder.readByte());
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Fields serializer that delegates to a {@link POxOCodec}. It has no reflective fields plan.
+ */
+public class CodecFieldsSerializer extends FieldsSerializer {
+
+    private final POxOCodec codec;
+
+    public CodecFieldsSerializer(POxOCodec codec) {
+        super(codec.getType(), new FieldSerializerUtil[0]);
+        this.codec = codec;
+    }
+
+    public POxOCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public void read(POxOPrimitiveDecoder decoder, Object obj) throws POxOSerializerException {
+        codec.read(decoder, obj);
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object obj) throws POxOSerializerException {
+        codec.write(encoder, obj);
+    }
+}
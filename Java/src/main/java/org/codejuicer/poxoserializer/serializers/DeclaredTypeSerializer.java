@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import org.codejuicer.poxoserializer.POxOSerializerUtil;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Serializer of a field declared with a concrete POJO class. With the declared types enabled a value of
+ * exactly that class is written without its class name, straight through the fields plan of the class; null
+ * and the instances of subclasses go through the {@link ObjectSerializer}. Both forms are read in any case.
+ */
+public class DeclaredTypeSerializer extends GenericClassSerializer {
+
+    private final Class<?> type;
+
+    private final POxOSerializerUtil serializerUtil;
+
+    private final ObjectSerializer objectSerializer;
+
+    // resolved at the first use, since the plan of a class can hold a field of the class itself
+    private volatile FieldsSerializer fieldsSerializer;
+
+    public DeclaredTypeSerializer(Class<?> type, POxOSerializerUtil serializerUtil,
+                                  ObjectSerializer objectSerializer) {
+        super(true);
+        this.type = type;
+        this.serializerUtil = serializerUtil;
+        this.objectSerializer = objectSerializer;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        if (value == null || value.getClass() != type || !serializerUtil.isDeclaredTypesEnabled()) {
+            objectSerializer.write(encoder, value);
+            return;
+        }
+        objectSerializer.writeDeclared(encoder, value, getFieldsSerializer());
+    }
+
+    @Override
+    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        return objectSerializer.readDeclared(decoder, getFieldsSerializer());
+    }
+
+    private FieldsSerializer getFieldsSerializer() throws POxOSerializerException {
+        FieldsSerializer ret = fieldsSerializer;
+        if (ret == null) {
+            ret = serializerUtil.getFieldsSerializer(type);
+            fieldsSerializer = ret;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.lang.reflect.Field;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+
+/**
+ * Reads and writes the value of one field of a POJO. The back end used to access the fields is chosen with a
+ * {@link FieldAccessorFactory}.
+ * <p>
+ * The typed methods read and write a primitive field without boxing when the back end supports it; they
+ * must be called only with the declared type of the field. The default implementations go through
+ * {@link #get(Object)} and {@link #set(Object, Object)}.
+ */
+public abstract class FieldAccessor {
+
+    protected final Field field;
+
+    protected FieldAccessor(Field field) {
+        this.field = field;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public abstract Object get(Object obj) throws POxOSerializerException;
+
+    public abstract void set(Object obj, Object value) throws POxOSerializerException;
+
+    public int getInt(Object obj) throws POxOSerializerException {
+        return (Integer)get(obj);
+    }
+
+    public void setInt(Object obj, int value) throws POxOSerializerException {
+        set(obj, value);
+    }
+
+    public long getLong(Object obj) throws POxOSerializerException {
+        return (Long)get(obj);
+    }
+
+    public void setLong(Object obj, long value) throws POxOSerializerException {
+        set(obj, value);
+    }
+
+    public short getShort(Object obj) throws POxOSerializerException {
+        return (Short)get(obj);
+    }
+
+    public void setShort(Object obj, short value) throws POxOSerializerException {
+        set(obj, value);
+    }
+
+    public byte getByte(Object obj) throws POxOSerializerException {
+        return (Byte)get(obj);
+    }
+
+    public void setByte(Object obj, byte value) throws POxOSerializerException {
+        set(obj, value);
+    }
+
+    public char getChar(Object obj) throws POxOSerializerException {
+        return (Character)get(obj);
+    }
+
+    public void setChar(Object obj, char value) throws POxOSerializerException {
+        set(obj, value);
+    }
+
+    public float getFloat(Object obj) throws POxOSerializerException {
+        return (Float)get(obj);
+    }
+
+    public void setFloat(Object obj, float value) throws POxOSerializerException {
+        set(obj, value);
+    }
+
+    public double getDouble(Object obj) throws POxOSerializerException {
+        return (Double)get(obj);
+    }
+
+    public void setDouble(Object obj, double value) throws POxOSerializerException {
+        set(obj, value);
+    }
+
+    public boolean getBoolean(Object obj) throws POxOSerializerException {
+        return (Boolean)get(obj);
+    }
+
+    public void setBoolean(Object obj, boolean value) throws POxOSerializerException {
+        set(obj, value);
+    }
+
+    protected POxOSerializerException accessError(Throwable e) {
+        if (e instanceof Error) {
+            throw (Error)e;
+        }
+        return new POxOSerializerException("Error during access to field " + field.getName() + ".",
+                                           e instanceof Exception ? (Exception)e : new RuntimeException(e));
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.lang.reflect.Field;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+
+/**
+ * Built-in field access back ends.
+ */
+public enum FieldAccessorType implements FieldAccessorFactory {
+    /** Field.get/Field.set on an accessible Field. */
+    REFLECTION {
+        @Override
+        public FieldAccessor createAccessor(Field field) throws POxOSerializerException {
+            return new ReflectionFieldAccessor(field);
+        }
+    },
+    /**
+     * MethodHandles unreflected from the field once, without the access checks of Field.get/Field.set. Falls
+     * back to reflection when the field cannot be unreflected.
+     */
+    METHOD_HANDLE {
+        @Override
+        public FieldAccessor createAccessor(Field field) throws POxOSerializerException {
+            try {
+                return new MethodHandleFieldAccessor(field);
+            } catch (IllegalAccessException e) {
+                return new ReflectionFieldAccessor(field);
+            }
+        }
+    }
+}
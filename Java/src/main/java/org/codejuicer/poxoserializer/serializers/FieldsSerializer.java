@@ -1,55 +1,417 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer.serializers;
-
-import org.codejuicer.poxoserializer.exception.POxOSerializerException;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
-
-public class FieldsSerializer {
-
-    private ObjectSerializer objectSerializer;
-
-    private Class<?> type;
-
-    public FieldsSerializer(Class<?> classToSerialize, ObjectSerializer objectSerializer) {
-        this.objectSerializer = objectSerializer;
-        this.type = classToSerialize;
-    }
-
-    public void read(POxOPrimitiveDecoder decoder, Object obj) throws POxOSerializerException {
-        try {
-            FieldSerializerUtil[] fieldsSerializerList = objectSerializer.getFieldsSerializers(type);
-            for (int i = 0, n = fieldsSerializerList.length; i < n; i++)
-                fieldsSerializerList[i].getField().set(obj,
-                                                       fieldsSerializerList[i].getSerializer().read(decoder));
-        } catch (IllegalArgumentException | IllegalAccessException e) {
-            throw new POxOSerializerException("Error during fields deserializing. ", e);
-        }
-    }
-
-    public void write(POxOPrimitiveEncoder encoder, Object obj) throws POxOSerializerException {
-        try {
-            FieldSerializerUtil[] fieldsSerializerList = objectSerializer.getFieldsSerializers(type);
-            for (int i = 0, n = fieldsSerializerList.length; i < n; i++)
-                fieldsSerializerList[i].getSerializer().write(encoder,
-                                                              fieldsSerializerList[i].getField().get(obj));
-        } catch (IllegalArgumentException | IllegalAccessException e) {
-            throw new POxOSerializerException("Error during fields serializing. ", e);
-        }
-    }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codejuicer.poxoserializer.POxOSerializerUtil;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+public class FieldsSerializer {
+
+    // how a field is written with the field bitmaps enabled
+    private static final byte PLAIN_FIELD = 0;
+
+    // a boolean field, whose value is a bit of the bitmap
+    private static final byte BOOLEAN_FIELD = 1;
+
+    // a nullable field, whose null marker is a bit of the bitmap
+    private static final byte NULLABLE_FIELD = 2;
+
+    // a Boolean field, whose null marker and value are two bits of the bitmap
+    private static final byte NULLABLE_BOOLEAN_FIELD = 3;
+
+    // the boxed default of the primitive types, left out of the message in the sparse form
+    private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS = createPrimitiveDefaults();
+
+    private final Class<?> type;
+
+    private final FieldSerializerUtil[] fieldsSerializers;
+
+    private final POxOSerializerUtil serializerUtil;
+
+    private final byte[] bitmapKinds;
+
+    private final NullableValueSerializer[] valueSerializers;
+
+    private final int bitmapLength;
+
+    private final Object[] defaultValues;
+
+    // the fields that a new instance does not hold at their default, resolved at the first sparse read
+    private volatile boolean[] resetFields;
+
+    public FieldsSerializer(Class<?> classToSerialize, FieldSerializerUtil[] fieldsSerializers) {
+        this(classToSerialize, fieldsSerializers, null);
+    }
+
+    public FieldsSerializer(Class<?> classToSerialize, FieldSerializerUtil[] fieldsSerializers,
+                            POxOSerializerUtil serializerUtil) {
+        this.type = classToSerialize;
+        this.fieldsSerializers = fieldsSerializers;
+        this.serializerUtil = serializerUtil;
+        bitmapKinds = new byte[fieldsSerializers.length];
+        valueSerializers = new NullableValueSerializer[fieldsSerializers.length];
+        defaultValues = new Object[fieldsSerializers.length];
+        int bits = 0;
+        for (int i = 0; i < fieldsSerializers.length; i++) {
+            GenericClassSerializer serializer = fieldsSerializers[i].getSerializer();
+            Class<?> fieldType = fieldsSerializers[i].getField().getType();
+            defaultValues[i] = PRIMITIVE_DEFAULTS.get(fieldType);
+            if (fieldType == boolean.class) {
+                bitmapKinds[i] = BOOLEAN_FIELD;
+                bits++;
+            } else if (serializer.canBeNull && serializer instanceof NullableValueSerializer) {
+                valueSerializers[i] = (NullableValueSerializer)serializer;
+                if (fieldType == Boolean.class) {
+                    bitmapKinds[i] = NULLABLE_BOOLEAN_FIELD;
+                    bits += 2;
+                } else {
+                    bitmapKinds[i] = NULLABLE_FIELD;
+                    bits++;
+                }
+            }
+        }
+        bitmapLength = serializerUtil == null ? 0 : (bits + 7) >>> 3;
+    }
+
+    private static Map<Class<?>, Object> createPrimitiveDefaults() {
+        Map<Class<?>, Object> ret = new HashMap<Class<?>, Object>();
+        ret.put(boolean.class, Boolean.FALSE);
+        ret.put(byte.class, (byte)0);
+        ret.put(short.class, (short)0);
+        ret.put(char.class, '\0');
+        ret.put(int.class, 0);
+        ret.put(long.class, 0L);
+        ret.put(float.class, 0f);
+        ret.put(double.class, 0d);
+        return ret;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public FieldSerializerUtil[] getFieldsSerializers() {
+        return fieldsSerializers;
+    }
+
+    public void read(POxOPrimitiveDecoder decoder, Object obj) throws POxOSerializerException {
+        if (isSparse()) {
+            readSparse(decoder, obj);
+            return;
+        }
+        if (bitmapLength > 0 && serializerUtil.isFieldBitmapsEnabled()) {
+            readWithBitmap(decoder, obj);
+            return;
+        }
+        FieldSerializerUtil[] fieldsSerializerList = fieldsSerializers;
+        for (int i = 0, n = fieldsSerializerList.length; i < n; i++) {
+            FieldSerializerUtil fieldSerializer = fieldsSerializerList[i];
+            PrimitiveFieldSerializer primitiveSerializer = fieldSerializer.getPrimitiveSerializer();
+            if (primitiveSerializer != null) {
+                primitiveSerializer.readField(decoder, obj, fieldSerializer.getAccessor());
+            } else {
+                fieldSerializer.getAccessor().set(obj, fieldSerializer.getSerializer().read(decoder));
+            }
+        }
+    }
+
+    public void write(POxOPrimitiveEncoder encoder, Object obj) throws POxOSerializerException {
+        if (isSparse()) {
+            writeSparse(encoder, obj);
+            return;
+        }
+        if (bitmapLength > 0 && serializerUtil.isFieldBitmapsEnabled()) {
+            writeWithBitmap(encoder, obj);
+            return;
+        }
+        FieldSerializerUtil[] fieldsSerializerList = fieldsSerializers;
+        for (int i = 0, n = fieldsSerializerList.length; i < n; i++) {
+            FieldSerializerUtil fieldSerializer = fieldsSerializerList[i];
+            PrimitiveFieldSerializer primitiveSerializer = fieldSerializer.getPrimitiveSerializer();
+            if (primitiveSerializer != null) {
+                primitiveSerializer.writeField(encoder, obj, fieldSerializer.getAccessor());
+            } else {
+                fieldSerializer.getSerializer().write(encoder, fieldSerializer.getAccessor().get(obj));
+            }
+        }
+    }
+
+    /**
+     * Writes the null markers and the boolean values of the fields as a bitmap ahead of the other fields,
+     * then the non null values without their marker.
+     */
+    private void writeWithBitmap(POxOPrimitiveEncoder encoder, Object obj) throws POxOSerializerException {
+        FieldSerializerUtil[] fieldsSerializerList = fieldsSerializers;
+        byte[] kinds = bitmapKinds;
+        int bits = 0;
+        int count = 0;
+        for (int i = 0, n = fieldsSerializerList.length; i < n; i++) {
+            byte kind = kinds[i];
+            if (kind == PLAIN_FIELD) {
+                continue;
+            }
+            FieldAccessor accessor = fieldsSerializerList[i].getAccessor();
+            if (kind == BOOLEAN_FIELD) {
+                bits |= (accessor.getBoolean(obj) ? 1 : 0) << count;
+            } else {
+                Object value = accessor.get(obj);
+                bits |= (value != null ? 1 : 0) << count;
+                if (kind == NULLABLE_BOOLEAN_FIELD) {
+                    if (++count == 8) {
+                        encoder.write(bits);
+                        bits = 0;
+                        count = 0;
+                    }
+                    bits |= (Boolean.TRUE.equals(value) ? 1 : 0) << count;
+                }
+            }
+            if (++count == 8) {
+                encoder.write(bits);
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            encoder.write(bits);
+        }
+
+        NullableValueSerializer[] valueSerializerList = valueSerializers;
+        for (int i = 0, n = fieldsSerializerList.length; i < n; i++) {
+            FieldSerializerUtil fieldSerializer = fieldsSerializerList[i];
+            switch (kinds[i]) {
+            case PLAIN_FIELD:
+                PrimitiveFieldSerializer primitiveSerializer = fieldSerializer.getPrimitiveSerializer();
+                if (primitiveSerializer != null) {
+                    primitiveSerializer.writeField(encoder, obj, fieldSerializer.getAccessor());
+                } else {
+                    fieldSerializer.getSerializer().write(encoder, fieldSerializer.getAccessor().get(obj));
+                }
+                break;
+            case NULLABLE_FIELD:
+                Object value = fieldSerializer.getAccessor().get(obj);
+                if (value != null) {
+                    valueSerializerList[i].writeValue(encoder, value);
+                }
+                break;
+            default:
+                // in the bitmap
+            }
+        }
+    }
+
+    private void readWithBitmap(POxOPrimitiveDecoder decoder, Object obj) throws POxOSerializerException {
+        // up to 64 flags are kept in a long, the others in an array
+        long bitmap = 0;
+        byte[] longBitmap = null;
+        if (bitmapLength <= 8) {
+            bitmap = readBitmap(decoder, bitmapLength);
+        } else {
+            longBitmap = new byte[bitmapLength];
+            decoder.readBytes(longBitmap);
+        }
+
+        FieldSerializerUtil[] fieldsSerializerList = fieldsSerializers;
+        NullableValueSerializer[] valueSerializerList = valueSerializers;
+        byte[] kinds = bitmapKinds;
+        int flag = 0;
+        for (int i = 0, n = fieldsSerializerList.length; i < n; i++) {
+            FieldSerializerUtil fieldSerializer = fieldsSerializerList[i];
+            FieldAccessor accessor = fieldSerializer.getAccessor();
+            switch (kinds[i]) {
+            case PLAIN_FIELD:
+                PrimitiveFieldSerializer primitiveSerializer = fieldSerializer.getPrimitiveSerializer();
+                if (primitiveSerializer != null) {
+                    primitiveSerializer.readField(decoder, obj, accessor);
+                } else {
+                    accessor.set(obj, fieldSerializer.getSerializer().read(decoder));
+                }
+                break;
+            case BOOLEAN_FIELD:
+                accessor.setBoolean(obj, isSet(bitmap, longBitmap, flag++));
+                break;
+            case NULLABLE_FIELD:
+                accessor.set(obj, isSet(bitmap, longBitmap, flag++)
+                    ? valueSerializerList[i].readValue(decoder) : null);
+                break;
+            default:
+                boolean notNull = isSet(bitmap, longBitmap, flag++);
+                boolean value = isSet(bitmap, longBitmap, flag++);
+                accessor.set(obj, notNull ? Boolean.valueOf(value) : null);
+            }
+        }
+    }
+
+    private boolean isSparse() {
+        return serializerUtil != null && fieldsSerializers.length > 0
+               && serializerUtil.isSparseFieldsEnabled();
+    }
+
+    /**
+     * Writes a bitmap of the fields that are not at the default of their type, that is null, zero or false,
+     * followed by the values of these fields alone. The null markers and the value of the boolean fields are
+     * implied by the bitmap.
+     */
+    private void writeSparse(POxOPrimitiveEncoder encoder, Object obj) throws POxOSerializerException {
+        FieldSerializerUtil[] fieldsSerializerList = fieldsSerializers;
+        int bits = 0;
+        int count = 0;
+        for (int i = 0, n = fieldsSerializerList.length; i < n; i++) {
+            if (isPresent(fieldsSerializerList[i], obj)) {
+                bits |= 1 << count;
+            }
+            if (++count == 8) {
+                encoder.write(bits);
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            encoder.write(bits);
+        }
+
+        NullableValueSerializer[] valueSerializerList = valueSerializers;
+        for (int i = 0, n = fieldsSerializerList.length; i < n; i++) {
+            FieldSerializerUtil fieldSerializer = fieldsSerializerList[i];
+            FieldAccessor accessor = fieldSerializer.getAccessor();
+            PrimitiveFieldSerializer primitiveSerializer = fieldSerializer.getPrimitiveSerializer();
+            if (primitiveSerializer != null) {
+                if (bitmapKinds[i] != BOOLEAN_FIELD && isPresent(fieldSerializer, obj)) {
+                    primitiveSerializer.writeField(encoder, obj, accessor);
+                }
+            } else {
+                Object value = accessor.get(obj);
+                if (value != null) {
+                    if (valueSerializerList[i] != null) {
+                        valueSerializerList[i].writeValue(encoder, value);
+                    } else {
+                        fieldSerializer.getSerializer().write(encoder, value);
+                    }
+                }
+            }
+        }
+    }
+
+    private void readSparse(POxOPrimitiveDecoder decoder, Object obj) throws POxOSerializerException {
+        FieldSerializerUtil[] fieldsSerializerList = fieldsSerializers;
+        int n = fieldsSerializerList.length;
+        long bitmap = 0;
+        byte[] longBitmap = null;
+        if (n <= 64) {
+            bitmap = readBitmap(decoder, (n + 7) >>> 3);
+        } else {
+            longBitmap = new byte[(n + 7) >>> 3];
+            decoder.readBytes(longBitmap);
+        }
+
+        NullableValueSerializer[] valueSerializerList = valueSerializers;
+        boolean[] reset = getResetFields();
+        for (int i = 0; i < n; i++) {
+            FieldSerializerUtil fieldSerializer = fieldsSerializerList[i];
+            FieldAccessor accessor = fieldSerializer.getAccessor();
+            if (!isSet(bitmap, longBitmap, i)) {
+                if (reset[i]) {
+                    accessor.set(obj, defaultValues[i]);
+                }
+                continue;
+            }
+            PrimitiveFieldSerializer primitiveSerializer = fieldSerializer.getPrimitiveSerializer();
+            if (primitiveSerializer != null) {
+                if (bitmapKinds[i] == BOOLEAN_FIELD) {
+                    accessor.setBoolean(obj, true);
+                } else {
+                    primitiveSerializer.readField(decoder, obj, accessor);
+                }
+            } else if (valueSerializerList[i] != null) {
+                accessor.set(obj, valueSerializerList[i].readValue(decoder));
+            } else {
+                accessor.set(obj, fieldSerializer.getSerializer().read(decoder));
+            }
+        }
+    }
+
+    private static boolean isPresent(FieldSerializerUtil fieldSerializer, Object obj)
+        throws POxOSerializerException {
+        FieldAccessor accessor = fieldSerializer.getAccessor();
+        Class<?> fieldType = fieldSerializer.getField().getType();
+        if (!fieldType.isPrimitive()) {
+            return accessor.get(obj) != null;
+        } else if (fieldType == int.class) {
+            return accessor.getInt(obj) != 0;
+        } else if (fieldType == long.class) {
+            return accessor.getLong(obj) != 0;
+        } else if (fieldType == boolean.class) {
+            return accessor.getBoolean(obj);
+        } else if (fieldType == double.class) {
+            // -0.0 is not the default
+            return Double.doubleToRawLongBits(accessor.getDouble(obj)) != 0;
+        } else if (fieldType == float.class) {
+            return Float.floatToRawIntBits(accessor.getFloat(obj)) != 0;
+        } else if (fieldType == short.class) {
+            return accessor.getShort(obj) != 0;
+        } else if (fieldType == byte.class) {
+            return accessor.getByte(obj) != 0;
+        }
+        return accessor.getChar(obj) != 0;
+    }
+
+    /**
+     * Returns the fields that must be set to their default when left out of a sparse message, because a new
+     * instance of the class holds another value. All of them if no instance can be built.
+     */
+    private boolean[] getResetFields() {
+        boolean[] ret = resetFields;
+        if (ret == null) {
+            FieldSerializerUtil[] fieldsSerializerList = fieldsSerializers;
+            ret = new boolean[fieldsSerializerList.length];
+            try {
+                Object probe = serializerUtil.createNewInstance(type);
+                for (int i = 0; i < ret.length; i++) {
+                    Object value = fieldsSerializerList[i].getAccessor().get(probe);
+                    ret[i] = defaultValues[i] == null ? value != null : !defaultValues[i].equals(value);
+                }
+            } catch (POxOSerializerException | InstantiationException | IllegalAccessException
+                | IllegalArgumentException | InvocationTargetException e) {
+                // the constructor is not usable on its own
+                Arrays.fill(ret, true);
+            }
+            resetFields = ret;
+        }
+        return ret;
+    }
+
+    private static long readBitmap(POxOPrimitiveDecoder decoder, int length) {
+        long bitmap = 0;
+        for (int i = 0; i < length; i++) {
+            bitmap |= (decoder.readByte() & 0xFFL) << (i << 3);
+        }
+        return bitmap;
+    }
+
+    private static boolean isSet(long bitmap, byte[] longBitmap, int flag) {
+        if (longBitmap == null) {
+            return (bitmap >>> flag & 1) != 0;
+        }
+        return (longBitmap[flag >>> 3] >>> (flag & 7) & 1) != 0;
+    }
+}
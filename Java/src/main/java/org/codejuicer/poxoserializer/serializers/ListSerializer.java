@@ -1,78 +1,120 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer.serializers;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import org.codejuicer.poxoserializer.POxOSerializerClassPair;
-import org.codejuicer.poxoserializer.exception.POxOSerializerException;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
-
-public class ListSerializer extends GenericClassSerializer {
-
-    private POxOSerializerClassPair pair;
-
-    public ListSerializer(POxOSerializerClassPair pair) {
-        super(true);
-        this.pair = pair;
-    }
-
-    @Override
-    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
-        List<?> list = (List<?>)value;
-        if (canBeNull) {
-            if (list == null) {
-                encoder.write(0x00);
-                return;
-            } else {
-                encoder.write(0x01);
-            }
-        }
-        GenericClassSerializer nestedSerializer = pair.getSerializer();
-        encoder.writeVarInt(list.size(), true);
-        for (Object o : list) {
-            nestedSerializer.write(encoder, o);
-        }
-    }
-
-    @Override
-    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
-        if (canBeNull) {
-            byte isNull = decoder.readByte();
-            if (isNull == 0x00) {
-                return null;
-            }
-        }
-
-        return createAndFillListOfType(decoder);
-    }
-
-    @SuppressWarnings("unchecked")
-    private <T> List<T> createAndFillListOfType(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
-        GenericClassSerializer nestedSerializer = pair.getSerializer();
-        int size = decoder.readVarInt(true);
-        List<T> list = new ArrayList<T>(size);
-        
-        for (int i = 0; i < size; i++) {
-            T o = (T)nestedSerializer.read(decoder);
-            list.add(o);
-        }
-        return list;
-    }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codejuicer.poxoserializer.POxOSerializerClassPair;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+public class ListSerializer extends GenericClassSerializer {
+
+    private static final byte PACKED = 0x02;
+
+    private POxOSerializerClassPair pair;
+
+    private boolean packed;
+
+    private PackedIntegersSerializer packedSerializer;
+
+    public ListSerializer(POxOSerializerClassPair pair) {
+        this(pair, false);
+    }
+
+    /**
+     * @param packed true to write the Short, Integer or Long elements with the
+     *            {@link PackedIntegersSerializer}. Packed elements are read in any case.
+     */
+    public ListSerializer(POxOSerializerClassPair pair, boolean packed) {
+        this(pair, packed, true);
+    }
+
+    /**
+     * @param canBeNull false to write the list without the null marker ahead of it, for the positions that
+     *            never hold null. Such a serializer does not pack the elements.
+     */
+    public ListSerializer(POxOSerializerClassPair pair, boolean packed, boolean canBeNull) {
+        super(canBeNull);
+        this.pair = pair;
+        this.packed = packed;
+        this.packedSerializer = PackedIntegersSerializer.forType(pair.getGenericClass());
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        List<?> list = (List<?>)value;
+        if (canBeNull) {
+            if (list == null) {
+                encoder.write(0x00);
+                return;
+            } else if (packed && packedSerializer != null) {
+                encoder.write(PACKED);
+                encoder.writeVarInt(list.size(), true);
+                packedSerializer.write(encoder, list);
+                return;
+            } else {
+                encoder.write(0x01);
+            }
+        }
+        GenericClassSerializer nestedSerializer = pair.getSerializer();
+        encoder.writeVarInt(list.size(), true);
+        for (Object o : list) {
+            nestedSerializer.write(encoder, o);
+        }
+    }
+
+    @Override
+    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        if (canBeNull) {
+            byte isNull = decoder.readByte();
+            if (isNull == 0x00) {
+                return null;
+            } else if (isNull == PACKED) {
+                return readPacked(decoder);
+            }
+        }
+
+        return createAndFillListOfType(decoder);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> createAndFillListOfType(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        GenericClassSerializer nestedSerializer = pair.getSerializer();
+        int size = decoder.readVarInt(true);
+        List<T> list = new ArrayList<T>(size);
+        
+        for (int i = 0; i < size; i++) {
+            T o = (T)nestedSerializer.read(decoder);
+            list.add(o);
+        }
+        return list;
+    }
+
+    private List<Object> readPacked(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        if (packedSerializer == null) {
+            throw new POxOSerializerException("Packed elements of type " + pair.getGenericClass().getName()
+                                              + " are not supported.");
+        }
+        int size = decoder.readVarInt(true);
+        List<Object> list = new ArrayList<Object>(size);
+        packedSerializer.read(decoder, list, size);
+        return list;
+    }
+}
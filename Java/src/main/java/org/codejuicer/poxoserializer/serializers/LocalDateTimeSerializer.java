@@ -1,67 +1,76 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer.serializers;
-
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-
-import org.codejuicer.poxoserializer.exception.POxOSerializerException;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
-
-public class LocalDateTimeSerializer extends GenericClassSerializer {
-
-    public LocalDateTimeSerializer() {
-        super(true);
-    }
-
-    @Override
-    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
-        if (canBeNull) {
-            if (value == null) {
-                encoder.write(0x00);
-                return;
-            } else {
-                encoder.write(0x01);
-            }
-        }
-
-        LocalDateTime valueTyped = ((LocalDateTime)value);
-        ZonedDateTime zoned = ZonedDateTime.of(valueTyped, ZoneId.systemDefault());
-        long longValue = zoned.toInstant().toEpochMilli();
-        encoder.writeLong(longValue, true);
-        String zone = ZoneId.systemDefault().getId();
-        encoder.writeString(zone);
-    }
-
-    @Override
-    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
-        if (canBeNull) {
-            byte isNull = decoder.readByte();
-            if (isNull == 0x00) {
-                return null;
-            }
-        }
-        Instant i = Instant.ofEpochMilli(decoder.readLong(true));
-        ZoneId zone = ZoneId.of(decoder.readString());
-        ZonedDateTime zonedValue = ZonedDateTime.ofInstant(i, zone);
-        LocalDateTime value = zonedValue.toLocalDateTime();
-        return value;
-    }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+public class LocalDateTimeSerializer extends GenericClassSerializer implements NullableValueSerializer {
+
+    public LocalDateTimeSerializer() {
+        super(true);
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        if (canBeNull) {
+            if (value == null) {
+                encoder.write(0x00);
+                return;
+            } else {
+                encoder.write(0x01);
+            }
+        }
+        writeValue(encoder, value);
+    }
+
+    @Override
+    public void writeValue(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        LocalDateTime valueTyped = ((LocalDateTime)value);
+        ZonedDateTime zoned = ZonedDateTime.of(valueTyped, ZoneId.systemDefault());
+        long longValue = zoned.toInstant().toEpochMilli();
+        encoder.writeLong(longValue, true);
+        String zone = ZoneId.systemDefault().getId();
+        encoder.writeString(zone);
+    }
+
+    @Override
+    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        if (canBeNull) {
+            byte isNull = decoder.readByte();
+            if (isNull == 0x00) {
+                return null;
+            }
+        }
+        return readValue(decoder);
+    }
+
+    @Override
+    public Object readValue(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        Instant i = Instant.ofEpochMilli(decoder.readLong(true));
+        ZoneId zone = ZoneId.of(decoder.readString());
+        ZonedDateTime zonedValue = ZonedDateTime.ofInstant(i, zone);
+        LocalDateTime value = zonedValue.toLocalDateTime();
+        return value;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+
+public class MethodHandleFieldAccessor extends FieldAccessor {
+
+    private final MethodHandle getter;
+
+    private final MethodHandle setter;
+
+    private final MethodHandle primitiveGetter;
+
+    private final MethodHandle primitiveSetter;
+
+    public MethodHandleFieldAccessor(Field field) throws IllegalAccessException {
+        super(field);
+        field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+        setter = lookup.unreflectSetter(field)
+            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        Class<?> fieldType = field.getType();
+        if (fieldType.isPrimitive()) {
+            primitiveGetter = lookup.unreflectGetter(field)
+                .asType(MethodType.methodType(fieldType, Object.class));
+            primitiveSetter = lookup.unreflectSetter(field)
+                .asType(MethodType.methodType(void.class, Object.class, fieldType));
+        } else {
+            primitiveGetter = null;
+            primitiveSetter = null;
+        }
+    }
+
+    @Override
+    public Object get(Object obj) throws POxOSerializerException {
+        try {
+            return (Object)getter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void set(Object obj, Object value) throws POxOSerializerException {
+        try {
+            setter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public int getInt(Object obj) throws POxOSerializerException {
+        try {
+            return (int)primitiveGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setInt(Object obj, int value) throws POxOSerializerException {
+        try {
+            primitiveSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public long getLong(Object obj) throws POxOSerializerException {
+        try {
+            return (long)primitiveGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setLong(Object obj, long value) throws POxOSerializerException {
+        try {
+            primitiveSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public short getShort(Object obj) throws POxOSerializerException {
+        try {
+            return (short)primitiveGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setShort(Object obj, short value) throws POxOSerializerException {
+        try {
+            primitiveSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public byte getByte(Object obj) throws POxOSerializerException {
+        try {
+            return (byte)primitiveGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setByte(Object obj, byte value) throws POxOSerializerException {
+        try {
+            primitiveSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public char getChar(Object obj) throws POxOSerializerException {
+        try {
+            return (char)primitiveGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setChar(Object obj, char value) throws POxOSerializerException {
+        try {
+            primitiveSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public float getFloat(Object obj) throws POxOSerializerException {
+        try {
+            return (float)primitiveGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setFloat(Object obj, float value) throws POxOSerializerException {
+        try {
+            primitiveSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public double getDouble(Object obj) throws POxOSerializerException {
+        try {
+            return (double)primitiveGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setDouble(Object obj, double value) throws POxOSerializerException {
+        try {
+            primitiveSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(Object obj) throws POxOSerializerException {
+        try {
+            return (boolean)primitiveGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setBoolean(Object obj, boolean value) throws POxOSerializerException {
+        try {
+            primitiveSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw accessError(e);
+        }
+    }
+}
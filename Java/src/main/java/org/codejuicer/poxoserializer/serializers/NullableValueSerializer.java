@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Serializer whose null handling is only the marker byte ahead of the value. It is used by
+ * {@link FieldsSerializer} to move the null markers of the fields to the bitmap of the object, writing and
+ * reading the non null values alone.
+ */
+public interface NullableValueSerializer {
+
+    void writeValue(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException;
+
+    Object readValue(POxOPrimitiveDecoder decoder) throws POxOSerializerException;
+}
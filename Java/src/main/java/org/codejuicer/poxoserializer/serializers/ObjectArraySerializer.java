@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.lang.reflect.Array;
+
+import org.codejuicer.poxoserializer.POxOSerializerClassPair;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Serializer of the arrays of objects, including the arrays of arrays: the length followed by the elements
+ * written by the serializer of the component type.
+ */
+public class ObjectArraySerializer extends GenericClassSerializer implements NullableValueSerializer {
+
+    private POxOSerializerClassPair pair;
+
+    public ObjectArraySerializer(POxOSerializerClassPair pair) {
+        super(true);
+        this.pair = pair;
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        if (canBeNull) {
+            if (value == null) {
+                encoder.write(0x00);
+                return;
+            } else {
+                encoder.write(0x01);
+            }
+        }
+        writeValue(encoder, value);
+    }
+
+    @Override
+    public void writeValue(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        Object[] array = (Object[])value;
+        GenericClassSerializer nestedSerializer = pair.getSerializer();
+        encoder.writeVarInt(array.length, true);
+        for (int i = 0; i < array.length; i++) {
+            nestedSerializer.write(encoder, array[i]);
+        }
+    }
+
+    @Override
+    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        if (canBeNull) {
+            byte isNull = decoder.readByte();
+            if (isNull == 0x00) {
+                return null;
+            }
+        }
+        return readValue(decoder);
+    }
+
+    @Override
+    public Object readValue(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        GenericClassSerializer nestedSerializer = pair.getSerializer();
+        int length = decoder.readVarInt(true);
+        Object[] array = (Object[])Array.newInstance(pair.getGenericClass(), length);
+        for (int i = 0; i < length; i++) {
+            array[i] = nestedSerializer.read(decoder);
+        }
+        return array;
+    }
+}
@@ -1,146 +1,373 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer.serializers;
-
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-
-import org.codejuicer.poxoserializer.POxOSerializerUtil;
-import org.codejuicer.poxoserializer.exception.POxOSerializerException;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
-
-public class ObjectSerializer extends GenericClassSerializer {
-
-    private POxOSerializerUtil serializerUtil;
-
-    private Map<String, FieldsSerializer> classFieldSerializerMap;
-
-    private Map<String, FieldSerializerUtil[]> fieldsSerializersMap;
-
-    public ObjectSerializer(POxOSerializerUtil serializerUtil) {
-        super(true);
-        classFieldSerializerMap = new TreeMap<String, FieldsSerializer>();
-        fieldsSerializersMap = new TreeMap<String, FieldSerializerUtil[]>();
-        this.serializerUtil = serializerUtil;
-    }
-
-    @Override
-    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
-        Object obj = null;
-        byte isNull = decoder.readByte();
-        if (isNull == 0x00) {
-            return obj;
-        }
-        try {
-            String className = decoder.readString();
-
-            if (className != null) {
-                Class<?> type = serializerUtil.getClassFromName(className);
-
-                GenericClassSerializer ser = serializerUtil.getTypeSerializer(type);
-                if (ser instanceof ObjectSerializer) {
-                    FieldsSerializer fieldsSerializer = classFieldSerializerMap.get(className);
-                    if (fieldsSerializer == null) {
-                        fieldsSerializer = new FieldsSerializer(type, this);
-                        retrieveOrderedFieldsList(type);
-                        classFieldSerializerMap.put(className, fieldsSerializer);
-                    }
-                    obj = serializerUtil.createNewInstance(type);
-
-                    fieldsSerializer.read(decoder, obj);
-                } else {
-                    obj = ser.read(decoder);
-                }
-            }
-        } catch (POxOSerializerException | InstantiationException | IllegalAccessException
-            | IllegalArgumentException | InvocationTargetException e) {
-            throw new POxOSerializerException("Error during object deserializing.", e);
-        }
-
-        return obj;
-    }
-
-    @Override
-    public void write(POxOPrimitiveEncoder encoder, Object obj) throws POxOSerializerException {
-        if (obj == null) {
-            encoder.write(0x00);
-            return;
-        } else {
-            encoder.write(0x01);
-        }
-        Class<?> type = obj.getClass();
-
-        String name = serializerUtil.getNameFromClass(type);
-
-        encoder.writeString(name);
-
-        GenericClassSerializer ser = serializerUtil.getTypeSerializer(type);
-        if (ser instanceof ObjectSerializer) {
-            FieldsSerializer fieldsSerializer = classFieldSerializerMap.get(name);
-            if (fieldsSerializer == null) {
-                fieldsSerializer = new FieldsSerializer(type, this);
-                retrieveOrderedFieldsList(type);
-                classFieldSerializerMap.put(type.getName(), fieldsSerializer);
-            }
-
-            fieldsSerializer.write(encoder, obj);
-        } else {
-            ser.write(encoder, obj);
-        }
-    }
-
-    private void retrieveOrderedFieldsList(Class<?> type) throws POxOSerializerException {
-        if (fieldsSerializersMap.get(type.getName()) == null) {
-            List<FieldSerializerUtil> allFieldsSerializer = new ArrayList<FieldSerializerUtil>();
-            Class<?> nextClass = type;
-            while (nextClass != Object.class) {
-                Field[] declaredFields = nextClass.getDeclaredFields();
-                if (declaredFields != null) {
-                    for (Field f : declaredFields) {
-                        if (Modifier.isStatic(f.getModifiers()))
-                            continue;
-                        allFieldsSerializer
-                            .add(new FieldSerializerUtil(f, serializerUtil.getFieldSerializer(f)));
-                    }
-                }
-                nextClass = nextClass.getSuperclass();
-            }
-
-            Collections.sort(allFieldsSerializer, new Comparator<FieldSerializerUtil>() {
-
-                @Override
-                public int compare(FieldSerializerUtil object1, FieldSerializerUtil object2) {
-                    return object1.getField().getName().compareToIgnoreCase(object2.getField().getName());
-                }
-            });
-
-            fieldsSerializersMap.put(type.getName(), allFieldsSerializer.toArray(new FieldSerializerUtil[0]));
-        }
-    }
-
-    public FieldSerializerUtil[] getFieldsSerializers(Class<?> type) {
-        return fieldsSerializersMap.get(type.getName());
-    }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.codejuicer.poxoserializer.POxOSerializerClassPair;
+import org.codejuicer.poxoserializer.POxOSerializerUtil;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+public class ObjectSerializer extends GenericClassSerializer {
+
+    private static final byte NULL_OBJECT = 0x00;
+
+    private static final byte OBJECT = 0x01;
+
+    private static final byte OBJECT_REFERENCE = 0x02;
+
+    private static final byte REFERENCED_OBJECT = 0x03;
+
+    private static final byte DECLARED_OBJECT = 0x04;
+
+    private static final byte DECLARED_REFERENCED_OBJECT = 0x05;
+
+    private static final byte SUBTYPE_OBJECT = 0x06;
+
+    private static final byte SUBTYPE_REFERENCED_OBJECT = 0x07;
+
+    private static final byte FIRST_TYPE_TAG = 0x10;
+
+    private static final byte CLASS_ID = 0x00;
+
+    private static final byte CLASS_REFERENCE = 0x01;
+
+    private static final byte CLASS_DEFINITION = 0x02;
+
+    /**
+     * Built-in types written as the single byte FIRST_TYPE_TAG + index in place of the object marker and the
+     * class. The tag already tells that the value is not null, so the values follow without a null marker.
+     */
+    private static final Class<?>[] TAGGED_TYPES = new Class<?>[] {
+        int.class, long.class, short.class, double.class, float.class, boolean.class, byte.class, char.class,
+        String.class, Date.class, ZonedDateTime.class, LocalDateTime.class, LocalDate.class, LocalTime.class,
+        List.class, Set.class, Map.class, byte[].class, boolean[].class, short[].class, char[].class,
+        int[].class, long[].class, float[].class, double[].class};
+
+    private static final Map<Class<?>, Integer> TAG_FOR_CLASS = createTagForClass();
+
+    private POxOSerializerUtil serializerUtil;
+
+    private volatile GenericClassSerializer[] taggedSerializers;
+
+    public ObjectSerializer(POxOSerializerUtil serializerUtil) {
+        super(true);
+        this.serializerUtil = serializerUtil;
+    }
+
+    private static Map<Class<?>, Integer> createTagForClass() {
+        Map<Class<?>, Integer> ret = new IdentityHashMap<Class<?>, Integer>();
+        for (int i = 0; i < TAGGED_TYPES.length; i++) {
+            ret.put(TAGGED_TYPES[i], i);
+        }
+        Class<?>[] boxedTypes = new Class<?>[] {Integer.class, Long.class, Short.class, Double.class,
+                                                Float.class, Boolean.class, Byte.class, Character.class};
+        for (int i = 0; i < boxedTypes.length; i++) {
+            ret.put(boxedTypes[i], i);
+        }
+        // the usual implementations of the collections, the other ones are written by alias
+        for (Class<?> type : new Class<?>[] {ArrayList.class, LinkedList.class}) {
+            ret.put(type, ret.get(List.class));
+        }
+        for (Class<?> type : new Class<?>[] {HashSet.class, LinkedHashSet.class, TreeSet.class}) {
+            ret.put(type, ret.get(Set.class));
+        }
+        for (Class<?> type : new Class<?>[] {HashMap.class, LinkedHashMap.class, TreeMap.class}) {
+            ret.put(type, ret.get(Map.class));
+        }
+        return ret;
+    }
+
+    private GenericClassSerializer[] getTaggedSerializers() throws POxOSerializerException {
+        GenericClassSerializer[] ret = taggedSerializers;
+        if (ret == null) {
+            ret = new GenericClassSerializer[TAGGED_TYPES.length];
+            POxOSerializerClassPair pair = new POxOSerializerClassPair();
+            pair.setGenericClass(Object.class);
+            pair.setSerializer(this);
+            for (int i = 0; i < TAGGED_TYPES.length; i++) {
+                if (TAGGED_TYPES[i] == List.class) {
+                    ret[i] = new ListSerializer(pair, false, false);
+                } else if (TAGGED_TYPES[i] == Set.class) {
+                    ret[i] = new SetSerializer(pair, false, false);
+                } else {
+                    ret[i] = serializerUtil.getTypeSerializer(TAGGED_TYPES[i]);
+                }
+            }
+            taggedSerializers = ret;
+        }
+        return ret;
+    }
+
+    @Override
+    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        Object obj = null;
+        byte marker = decoder.readByte();
+        if (marker == NULL_OBJECT) {
+            return obj;
+        }
+        if (marker >= FIRST_TYPE_TAG) {
+            int tag = marker - FIRST_TYPE_TAG;
+            if (tag >= TAGGED_TYPES.length) {
+                throw new POxOSerializerException("Type tag " + marker + " is not defined.");
+            }
+            GenericClassSerializer ser = getTaggedSerializers()[tag];
+            if (ser instanceof NullableValueSerializer) {
+                return ((NullableValueSerializer)ser).readValue(decoder);
+            }
+            return ser.read(decoder);
+        }
+        try {
+            if (marker == OBJECT_REFERENCE) {
+                return readObjectReference(decoder);
+            }
+            Class<?> type = readClass(decoder);
+
+            if (type != null) {
+                GenericClassSerializer ser = serializerUtil.getTypeSerializer(type);
+                if (ser instanceof ObjectSerializer) {
+                    FieldsSerializer fieldsSerializer = serializerUtil.getFieldsSerializer(type);
+                    obj = serializerUtil.createNewInstance(type);
+                    if (marker == REFERENCED_OBJECT) {
+                        // registered before the fields, so that a cycle back to obj can be resolved
+                        decoder.addObjectReference(obj);
+                    }
+
+                    fieldsSerializer.read(decoder, obj);
+                } else {
+                    obj = ser.read(decoder);
+                }
+            }
+        } catch (POxOSerializerException | InstantiationException | IllegalAccessException
+            | IllegalArgumentException | InvocationTargetException e) {
+            throw new POxOSerializerException("Error during object deserializing.", e);
+        }
+
+        return obj;
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object obj) throws POxOSerializerException {
+        if (obj == null) {
+            encoder.write(NULL_OBJECT);
+            return;
+        }
+        Class<?> type = obj.getClass();
+        if (serializerUtil.isTypeTagsEnabled()) {
+            Integer tag = TAG_FOR_CLASS.get(type);
+            if (tag != null) {
+                encoder.write(FIRST_TYPE_TAG + tag);
+                GenericClassSerializer ser = getTaggedSerializers()[tag];
+                if (ser instanceof NullableValueSerializer) {
+                    ((NullableValueSerializer)ser).writeValue(encoder, obj);
+                } else {
+                    ser.write(encoder, obj);
+                }
+                return;
+            }
+        }
+
+        GenericClassSerializer ser = serializerUtil.getTypeSerializer(type);
+        if (ser instanceof ObjectSerializer) {
+            if (serializerUtil.isObjectReferencesEnabled()) {
+                int index = encoder.getObjectReference(obj);
+                if (index >= 0) {
+                    encoder.write(OBJECT_REFERENCE);
+                    encoder.writeVarInt(index, true);
+                    return;
+                }
+                encoder.addObjectReference(obj);
+                encoder.write(REFERENCED_OBJECT);
+            } else {
+                encoder.write(OBJECT);
+            }
+            writeClass(encoder, type);
+            FieldsSerializer fieldsSerializer = serializerUtil.getFieldsSerializer(type);
+            fieldsSerializer.write(encoder, obj);
+        } else {
+            encoder.write(OBJECT);
+            writeClass(encoder, type);
+            ser.write(encoder, obj);
+        }
+    }
+
+    /**
+     * Writes an object of exactly the declared class of a field with the fields plan of the class, without
+     * the class. The reader knows the class from the field.
+     */
+    void writeDeclared(POxOPrimitiveEncoder encoder, Object obj, FieldsSerializer fieldsSerializer)
+        throws POxOSerializerException {
+        if (writeImplicitClassMarker(encoder, obj, DECLARED_OBJECT, DECLARED_REFERENCED_OBJECT)) {
+            fieldsSerializer.write(encoder, obj);
+        }
+    }
+
+    /**
+     * Writes an object of exactly one of the known subtypes of a field with its index in the subtypes table
+     * in place of the class.
+     */
+    void writeSubtype(POxOPrimitiveEncoder encoder, Object obj, int subtypeIndex,
+                      FieldsSerializer fieldsSerializer) throws POxOSerializerException {
+        if (writeImplicitClassMarker(encoder, obj, SUBTYPE_OBJECT, SUBTYPE_REFERENCED_OBJECT)) {
+            encoder.write(subtypeIndex);
+            fieldsSerializer.write(encoder, obj);
+        }
+    }
+
+    /**
+     * Writes the marker of an object whose class is known to the reader, or a reference to it if it was
+     * already written. Returns false in the latter case, when the fields must not follow.
+     */
+    private boolean writeImplicitClassMarker(POxOPrimitiveEncoder encoder, Object obj, byte marker,
+                                             byte referencedMarker) {
+        if (serializerUtil.isObjectReferencesEnabled()) {
+            int index = encoder.getObjectReference(obj);
+            if (index >= 0) {
+                encoder.write(OBJECT_REFERENCE);
+                encoder.writeVarInt(index, true);
+                return false;
+            }
+            encoder.addObjectReference(obj);
+            encoder.write(referencedMarker);
+        } else {
+            encoder.write(marker);
+        }
+        return true;
+    }
+
+    /**
+     * Reads an object written by {@link #writeDeclared(POxOPrimitiveEncoder, Object, FieldsSerializer)} or,
+     * for any other marker, by {@link #write(POxOPrimitiveEncoder, Object)}.
+     */
+    Object readDeclared(POxOPrimitiveDecoder decoder, FieldsSerializer fieldsSerializer)
+        throws POxOSerializerException {
+        byte marker = decoder.peekByte();
+        if (marker != DECLARED_OBJECT && marker != DECLARED_REFERENCED_OBJECT) {
+            return read(decoder);
+        }
+        decoder.readByte();
+        return readFields(decoder, fieldsSerializer, marker == DECLARED_REFERENCED_OBJECT);
+    }
+
+    /**
+     * Reads an object written by
+     * {@link #writeSubtype(POxOPrimitiveEncoder, Object, int, FieldsSerializer)} or, for any other marker, by
+     * {@link #write(POxOPrimitiveEncoder, Object)}.
+     */
+    Object readSubtype(POxOPrimitiveDecoder decoder, SubtypeSerializer subtypeSerializer)
+        throws POxOSerializerException {
+        byte marker = decoder.peekByte();
+        if (marker != SUBTYPE_OBJECT && marker != SUBTYPE_REFERENCED_OBJECT) {
+            return read(decoder);
+        }
+        decoder.readByte();
+        FieldsSerializer fieldsSerializer = subtypeSerializer.getFieldsSerializer(decoder.readByte() & 0xFF);
+        return readFields(decoder, fieldsSerializer, marker == SUBTYPE_REFERENCED_OBJECT);
+    }
+
+    private Object readFields(POxOPrimitiveDecoder decoder, FieldsSerializer fieldsSerializer,
+                              boolean referenced) throws POxOSerializerException {
+        try {
+            Object obj = serializerUtil.createNewInstance(fieldsSerializer.getType());
+            if (referenced) {
+                decoder.addObjectReference(obj);
+            }
+            fieldsSerializer.read(decoder, obj);
+            return obj;
+        } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+            | InvocationTargetException e) {
+            throw new POxOSerializerException("Error during object deserializing.", e);
+        }
+    }
+
+    private Object readObjectReference(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        int index = decoder.readVarInt(true);
+        Object obj = decoder.getObjectReference(index);
+        if (obj == null) {
+            throw new POxOSerializerException("Object reference " + index + " is not defined.");
+        }
+        return obj;
+    }
+
+    /**
+     * Writes the registered ID of the class, if any, or else its name. With the class references enabled the
+     * name is written once per message, marked as a definition, and then replaced by its index in the class
+     * table. Names never start with these markers because class names cannot begin with a control character.
+     */
+    private void writeClass(POxOPrimitiveEncoder encoder, Class<?> type) {
+        int id = serializerUtil.getClassId(type);
+        if (id >= 0) {
+            encoder.write(CLASS_ID);
+            encoder.writeVarInt(id, true);
+        } else if (serializerUtil.isClassReferencesEnabled()) {
+            int index = encoder.getClassReference(type);
+            if (index >= 0) {
+                encoder.write(CLASS_REFERENCE);
+                encoder.writeVarInt(index, true);
+            } else {
+                encoder.addClassReference(type);
+                encoder.write(CLASS_DEFINITION);
+                encoder.writeString(serializerUtil.getNameFromClass(type));
+            }
+        } else {
+            encoder.writeString(serializerUtil.getNameFromClass(type));
+        }
+    }
+
+    private Class<?> readClass(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        switch (decoder.peekByte()) {
+        case CLASS_ID:
+            decoder.readByte();
+            return serializerUtil.getClassFromId(decoder.readVarInt(true));
+        case CLASS_REFERENCE:
+            decoder.readByte();
+            int index = decoder.readVarInt(true);
+            Class<?> type = decoder.getClassReference(index);
+            if (type == null) {
+                throw new POxOSerializerException("Class reference " + index + " is not defined.");
+            }
+            return type;
+        case CLASS_DEFINITION:
+            decoder.readByte();
+            type = serializerUtil.getClassFromName(decoder.readString());
+            decoder.addClassReference(type);
+            return type;
+        default:
+            String className = decoder.readString();
+            return className == null ? null : serializerUtil.getClassFromName(className);
+        }
+    }
+}
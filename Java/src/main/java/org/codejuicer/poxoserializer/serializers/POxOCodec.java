@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import org.codejuicer.poxoserializer.POxOSerializerUtil;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Fields codec of one POJO class, usually generated at compile time for the classes annotated with
+ * {@link org.codejuicer.poxoserializer.annotation.POxOSerializable}. A codec writes the fields in the same
+ * order and with the same encoding of {@link FieldsSerializer}.
+ * <p>
+ * Codecs are registered as META-INF/services/org.codejuicer.poxoserializer.serializers.POxOCodec entries.
+ * Every POxOSerializerUtil loads its own instances and initializes each of them once, before first use.
+ */
+public interface POxOCodec {
+    Class<?> getType();
+
+    void initialize(POxOSerializerUtil serializerUtil) throws POxOSerializerException;
+
+    void write(POxOPrimitiveEncoder encoder, Object obj) throws POxOSerializerException;
+
+    void read(POxOPrimitiveDecoder decoder, Object obj) throws POxOSerializerException;
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.util.Collection;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Frame-of-reference encoding of the Short, Integer and Long elements of a collection. The elements are
+ * written as a null bitmap, present only when there are nulls, followed by blocks of 128 values: each block
+ * has its minimum as a varint, the bit width of the largest difference from the minimum and then the
+ * differences packed with that width, least significant bits first.
+ */
+public class PackedIntegersSerializer {
+
+    private static final int BLOCK_SIZE = 128;
+
+    private static final int SHORT = 0;
+
+    private static final int INT = 1;
+
+    private static final int LONG = 2;
+
+    private final int elementType;
+
+    private PackedIntegersSerializer(int elementType) {
+        this.elementType = elementType;
+    }
+
+    /** Returns the serializer of the elements of the type, or null if it is not Short, Integer or Long. */
+    public static PackedIntegersSerializer forType(Class<?> type) {
+        if (type == Short.class) {
+            return new PackedIntegersSerializer(SHORT);
+        } else if (type == Integer.class) {
+            return new PackedIntegersSerializer(INT);
+        } else if (type == Long.class) {
+            return new PackedIntegersSerializer(LONG);
+        }
+        return null;
+    }
+
+    /** Writes the elements of the collection; the size is written by the caller. */
+    public void write(POxOPrimitiveEncoder encoder, Collection<?> values) {
+        int size = values.size();
+        long[] longs = new long[size];
+        byte[] nulls = null;
+        int count = 0;
+        int i = 0;
+        for (Object value : values) {
+            if (value == null) {
+                if (nulls == null)
+                    nulls = new byte[(size + 7) >>> 3];
+                nulls[i >>> 3] |= 1 << (i & 7);
+            } else {
+                longs[count++] = ((Number)value).longValue();
+            }
+            i++;
+        }
+        if (nulls == null) {
+            encoder.write(0x00);
+        } else {
+            encoder.write(0x01);
+            encoder.writeBytes(nulls);
+        }
+        byte[] block = new byte[BLOCK_SIZE * 8];
+        for (int start = 0; start < count; start += BLOCK_SIZE) {
+            writeBlock(encoder, longs, start, Math.min(count, start + BLOCK_SIZE), block);
+        }
+    }
+
+    /** Reads size elements, written by {@link #write(POxOPrimitiveEncoder, Collection)}, into values. */
+    public void read(POxOPrimitiveDecoder decoder, Collection<Object> values, int size)
+        throws POxOSerializerException {
+        byte[] nulls = null;
+        int count = size;
+        if (decoder.readByte() != 0x00) {
+            nulls = new byte[(size + 7) >>> 3];
+            decoder.readBytes(nulls);
+            for (int i = 0; i < size; i++) {
+                count -= (nulls[i >>> 3] >>> (i & 7)) & 1;
+            }
+        }
+        long[] longs = new long[count];
+        byte[] block = new byte[BLOCK_SIZE * 8];
+        for (int start = 0; start < count; start += BLOCK_SIZE) {
+            readBlock(decoder, longs, start, Math.min(count, start + BLOCK_SIZE), block);
+        }
+        for (int i = 0, j = 0; i < size; i++) {
+            if (nulls != null && ((nulls[i >>> 3] >>> (i & 7)) & 1) != 0) {
+                values.add(null);
+            } else {
+                values.add(box(longs[j++]));
+            }
+        }
+    }
+
+    private Object box(long value) {
+        switch (elementType) {
+        case SHORT:
+            return Short.valueOf((short)value);
+        case INT:
+            return Integer.valueOf((int)value);
+        default:
+            return Long.valueOf(value);
+        }
+    }
+
+    private static void writeBlock(POxOPrimitiveEncoder encoder, long[] longs, int start, int end,
+                                   byte[] block) {
+        long min = longs[start];
+        long max = min;
+        for (int i = start + 1; i < end; i++) {
+            long value = longs[i];
+            if (value < min)
+                min = value;
+            else if (value > max)
+                max = value;
+        }
+        // max - min is the unsigned difference even when it overflows a long
+        int width = 64 - Long.numberOfLeadingZeros(max - min);
+        encoder.writeVarLong(min, false);
+        encoder.write(width);
+        if (width == 0)
+            return;
+
+        int length = 0;
+        int current = 0;
+        int bits = 0;
+        for (int i = start; i < end; i++) {
+            long delta = longs[i] - min;
+            int remaining = width;
+            while (remaining > 0) {
+                int take = Math.min(8 - bits, remaining);
+                current |= ((int)delta & ((1 << take) - 1)) << bits;
+                delta >>>= take;
+                remaining -= take;
+                bits += take;
+                if (bits == 8) {
+                    block[length++] = (byte)current;
+                    current = 0;
+                    bits = 0;
+                }
+            }
+        }
+        if (bits > 0)
+            block[length++] = (byte)current;
+        encoder.writeBytes(block, 0, length);
+    }
+
+    private static void readBlock(POxOPrimitiveDecoder decoder, long[] longs, int start, int end,
+                                  byte[] block) throws POxOSerializerException {
+        long min = decoder.readVarLong(false);
+        int width = decoder.readByte() & 0xFF;
+        if (width == 0) {
+            for (int i = start; i < end; i++) {
+                longs[i] = min;
+            }
+            return;
+        }
+        if (width > 64)
+            throw new POxOSerializerException("Invalid bit width of a packed block: " + width);
+
+        decoder.readBytes(block, 0, ((end - start) * width + 7) >>> 3);
+        int p = 0;
+        int current = 0;
+        int bits = 0;
+        for (int i = start; i < end; i++) {
+            long delta = 0;
+            int shift = 0;
+            while (shift < width) {
+                if (bits == 0) {
+                    current = block[p++] & 0xFF;
+                    bits = 8;
+                }
+                int take = Math.min(bits, width - shift);
+                delta |= (long)(current & ((1 << take) - 1)) << shift;
+                current >>>= take;
+                bits -= take;
+                shift += take;
+            }
+            longs[i] = min + delta;
+        }
+    }
+}
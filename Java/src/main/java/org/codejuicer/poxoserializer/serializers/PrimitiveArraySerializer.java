@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Serializer of the arrays of a primitive type: the length followed by the elements in one loop, without
+ * boxing. A byte[] is copied in bulk, int, long and short are varints, char, float and double have fixed
+ * size.
+ */
+public class PrimitiveArraySerializer extends GenericClassSerializer implements NullableValueSerializer {
+
+    private static final int BYTE = 0;
+
+    private static final int BOOLEAN = 1;
+
+    private static final int SHORT = 2;
+
+    private static final int CHAR = 3;
+
+    private static final int INT = 4;
+
+    private static final int LONG = 5;
+
+    private static final int FLOAT = 6;
+
+    private static final int DOUBLE = 7;
+
+    private final int componentType;
+
+    public PrimitiveArraySerializer(Class<?> arrayType) {
+        super(true);
+        Class<?> type = arrayType.getComponentType();
+        if (type == byte.class) {
+            componentType = BYTE;
+        } else if (type == boolean.class) {
+            componentType = BOOLEAN;
+        } else if (type == short.class) {
+            componentType = SHORT;
+        } else if (type == char.class) {
+            componentType = CHAR;
+        } else if (type == int.class) {
+            componentType = INT;
+        } else if (type == long.class) {
+            componentType = LONG;
+        } else if (type == float.class) {
+            componentType = FLOAT;
+        } else if (type == double.class) {
+            componentType = DOUBLE;
+        } else {
+            throw new IllegalArgumentException("Not an array of a primitive type: " + arrayType.getName());
+        }
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        if (canBeNull) {
+            if (value == null) {
+                encoder.write(0x00);
+                return;
+            } else {
+                encoder.write(0x01);
+            }
+        }
+        writeValue(encoder, value);
+    }
+
+    @Override
+    public void writeValue(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        switch (componentType) {
+        case BYTE:
+            byte[] bytes = (byte[])value;
+            encoder.writeVarInt(bytes.length, true);
+            encoder.writeBytes(bytes);
+            break;
+        case BOOLEAN:
+            boolean[] booleans = (boolean[])value;
+            encoder.writeVarInt(booleans.length, true);
+            for (int i = 0; i < booleans.length; i++) {
+                encoder.writeBoolean(booleans[i]);
+            }
+            break;
+        case SHORT:
+            short[] shorts = (short[])value;
+            encoder.writeVarInt(shorts.length, true);
+            for (int i = 0; i < shorts.length; i++) {
+                encoder.writeVarInt(shorts[i], false);
+            }
+            break;
+        case CHAR:
+            char[] chars = (char[])value;
+            encoder.writeVarInt(chars.length, true);
+            for (int i = 0; i < chars.length; i++) {
+                encoder.writeChar(chars[i]);
+            }
+            break;
+        case INT:
+            int[] ints = (int[])value;
+            encoder.writeVarInt(ints.length, true);
+            for (int i = 0; i < ints.length; i++) {
+                encoder.writeVarInt(ints[i], false);
+            }
+            break;
+        case LONG:
+            long[] longs = (long[])value;
+            encoder.writeVarInt(longs.length, true);
+            for (int i = 0; i < longs.length; i++) {
+                encoder.writeVarLong(longs[i], false);
+            }
+            break;
+        case FLOAT:
+            float[] floats = (float[])value;
+            encoder.writeVarInt(floats.length, true);
+            for (int i = 0; i < floats.length; i++) {
+                encoder.writeFloat(floats[i]);
+            }
+            break;
+        default:
+            double[] doubles = (double[])value;
+            encoder.writeVarInt(doubles.length, true);
+            for (int i = 0; i < doubles.length; i++) {
+                encoder.writeDouble(doubles[i]);
+            }
+        }
+    }
+
+    @Override
+    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        if (canBeNull) {
+            byte isNull = decoder.readByte();
+            if (isNull == 0x00) {
+                return null;
+            }
+        }
+        return readValue(decoder);
+    }
+
+    @Override
+    public Object readValue(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        int length = decoder.readVarInt(true);
+        switch (componentType) {
+        case BYTE:
+            byte[] bytes = new byte[length];
+            decoder.readBytes(bytes);
+            return bytes;
+        case BOOLEAN:
+            boolean[] booleans = new boolean[length];
+            for (int i = 0; i < length; i++) {
+                booleans[i] = decoder.readBoolean();
+            }
+            return booleans;
+        case SHORT:
+            short[] shorts = new short[length];
+            for (int i = 0; i < length; i++) {
+                shorts[i] = (short)decoder.readVarInt(false);
+            }
+            return shorts;
+        case CHAR:
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = decoder.readChar();
+            }
+            return chars;
+        case INT:
+            int[] ints = new int[length];
+            for (int i = 0; i < length; i++) {
+                ints[i] = decoder.readVarInt(false);
+            }
+            return ints;
+        case LONG:
+            long[] longs = new long[length];
+            for (int i = 0; i < length; i++) {
+                longs[i] = decoder.readVarLong(false);
+            }
+            return longs;
+        case FLOAT:
+            float[] floats = new float[length];
+            for (int i = 0; i < length; i++) {
+                floats[i] = decoder.readFloat();
+            }
+            return floats;
+        default:
+            double[] doubles = new double[length];
+            for (int i = 0; i < length; i++) {
+                doubles[i] = decoder.readDouble();
+            }
+            return doubles;
+        }
+    }
+}
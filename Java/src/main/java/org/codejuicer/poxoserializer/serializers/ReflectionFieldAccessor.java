@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.lang.reflect.Field;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+
+public class ReflectionFieldAccessor extends FieldAccessor {
+
+    public ReflectionFieldAccessor(Field field) {
+        super(field);
+        field.setAccessible(true);
+    }
+
+    @Override
+    public Object get(Object obj) throws POxOSerializerException {
+        try {
+            return field.get(obj);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void set(Object obj, Object value) throws POxOSerializerException {
+        try {
+            field.set(obj, value);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public int getInt(Object obj) throws POxOSerializerException {
+        try {
+            return field.getInt(obj);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setInt(Object obj, int value) throws POxOSerializerException {
+        try {
+            field.setInt(obj, value);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public long getLong(Object obj) throws POxOSerializerException {
+        try {
+            return field.getLong(obj);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setLong(Object obj, long value) throws POxOSerializerException {
+        try {
+            field.setLong(obj, value);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public short getShort(Object obj) throws POxOSerializerException {
+        try {
+            return field.getShort(obj);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setShort(Object obj, short value) throws POxOSerializerException {
+        try {
+            field.setShort(obj, value);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public byte getByte(Object obj) throws POxOSerializerException {
+        try {
+            return field.getByte(obj);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setByte(Object obj, byte value) throws POxOSerializerException {
+        try {
+            field.setByte(obj, value);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public char getChar(Object obj) throws POxOSerializerException {
+        try {
+            return field.getChar(obj);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setChar(Object obj, char value) throws POxOSerializerException {
+        try {
+            field.setChar(obj, value);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public float getFloat(Object obj) throws POxOSerializerException {
+        try {
+            return field.getFloat(obj);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setFloat(Object obj, float value) throws POxOSerializerException {
+        try {
+            field.setFloat(obj, value);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public double getDouble(Object obj) throws POxOSerializerException {
+        try {
+            return field.getDouble(obj);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setDouble(Object obj, double value) throws POxOSerializerException {
+        try {
+            field.setDouble(obj, value);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(Object obj) throws POxOSerializerException {
+        try {
+            return field.getBoolean(obj);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+
+    @Override
+    public void setBoolean(Object obj, boolean value) throws POxOSerializerException {
+        try {
+            field.setBoolean(obj, value);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw accessError(e);
+        }
+    }
+}
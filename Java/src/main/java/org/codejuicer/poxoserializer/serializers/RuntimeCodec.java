@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import org.codejuicer.poxoserializer.POxOSerializerUtil;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Base class of the codecs generated at runtime by {@link RuntimeCodecGenerator}. The generated subclass
+ * implements {@link #write} and {@link #read} with straight-line code over the fields of the plan; the
+ * boxed primitives and the strings go through the static methods of this class, so the generated code has
+ * no branch.
+ */
+public abstract class RuntimeCodec implements POxOCodec {
+
+    private Class<?> type;
+
+    // the serializer of each field of the plan, used by the fields that are not written inline
+    protected GenericClassSerializer[] serializers;
+
+    // the accessor of each field of the plan, used by the fields that the codec cannot reach directly
+    protected FieldAccessor[] accessors;
+
+    void bind(Class<?> type, FieldSerializerUtil[] fields) {
+        this.type = type;
+        serializers = new GenericClassSerializer[fields.length];
+        accessors = new FieldAccessor[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            serializers[i] = fields[i].getSerializer();
+            accessors[i] = fields[i].getAccessor();
+        }
+    }
+
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+
+    @Override
+    public void initialize(POxOSerializerUtil serializerUtil) {
+        // the serializers and the accessors come with the plan the codec is generated from
+    }
+
+    protected static void writeInteger(POxOPrimitiveEncoder encoder, Integer value) {
+        if (writeNullMarker(encoder, value)) {
+            encoder.writeInt(value, true);
+        }
+    }
+
+    protected static Integer readInteger(POxOPrimitiveDecoder decoder) {
+        return decoder.readByte() == 0x00 ? null : decoder.readInt(true);
+    }
+
+    protected static void writeLong(POxOPrimitiveEncoder encoder, Long value) {
+        if (writeNullMarker(encoder, value)) {
+            encoder.writeLong(value, true);
+        }
+    }
+
+    protected static Long readLong(POxOPrimitiveDecoder decoder) {
+        return decoder.readByte() == 0x00 ? null : decoder.readLong(true);
+    }
+
+    protected static void writeShort(POxOPrimitiveEncoder encoder, Short value) {
+        if (writeNullMarker(encoder, value)) {
+            encoder.writeShort(value);
+        }
+    }
+
+    protected static Short readShort(POxOPrimitiveDecoder decoder) {
+        return decoder.readByte() == 0x00 ? null : decoder.readShort();
+    }
+
+    protected static void writeByte(POxOPrimitiveEncoder encoder, Byte value) {
+        if (writeNullMarker(encoder, value)) {
+            encoder.writeByte(value);
+        }
+    }
+
+    protected static Byte readByte(POxOPrimitiveDecoder decoder) {
+        return decoder.readByte() == 0x00 ? null : decoder.readByte();
+    }
+
+    protected static void writeCharacter(POxOPrimitiveEncoder encoder, Character value) {
+        if (writeNullMarker(encoder, value)) {
+            encoder.writeChar(value);
+        }
+    }
+
+    protected static Character readCharacter(POxOPrimitiveDecoder decoder) {
+        return decoder.readByte() == 0x00 ? null : decoder.readChar();
+    }
+
+    protected static void writeBoolean(POxOPrimitiveEncoder encoder, Boolean value) {
+        if (writeNullMarker(encoder, value)) {
+            encoder.writeBoolean(value);
+        }
+    }
+
+    protected static Boolean readBoolean(POxOPrimitiveDecoder decoder) {
+        return decoder.readByte() == 0x00 ? null : decoder.readBoolean();
+    }
+
+    protected static void writeFloat(POxOPrimitiveEncoder encoder, Float value) {
+        if (writeNullMarker(encoder, value)) {
+            encoder.writeFloat(value);
+        }
+    }
+
+    protected static Float readFloat(POxOPrimitiveDecoder decoder) {
+        return decoder.readByte() == 0x00 ? null : decoder.readFloat();
+    }
+
+    protected static void writeDouble(POxOPrimitiveEncoder encoder, Double value) {
+        if (writeNullMarker(encoder, value)) {
+            encoder.writeDouble(value);
+        }
+    }
+
+    protected static Double readDouble(POxOPrimitiveDecoder decoder) {
+        return decoder.readByte() == 0x00 ? null : decoder.readDouble();
+    }
+
+    protected static void writeString(POxOPrimitiveEncoder encoder, String value) {
+        if (writeNullMarker(encoder, value)) {
+            encoder.writeString(value);
+        }
+    }
+
+    protected static String readString(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        return decoder.readByte() == 0x00 ? null : decoder.readString();
+    }
+
+    private static boolean writeNullMarker(POxOPrimitiveEncoder encoder, Object value) {
+        encoder.write(value == null ? 0x00 : 0x01);
+        return value != null;
+    }
+}
@@ -0,0 +1,603 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Generates at runtime the {@link RuntimeCodec} of a POJO class from its reflective fields plan. The codec
+ * writes the fields in the order of the plan and with the encoding of their serializers:
+ * <ul>
+ * <li>the primitive fields with the typed calls of the encoder and the decoder;</li>
+ * <li>the boxed primitive and String fields with the static methods of {@link RuntimeCodec};</li>
+ * <li>the other fields with their serializer in the plan.</li>
+ * </ul>
+ * The fields are read and written with getfield and putfield, never through their JavaBean methods. A field
+ * the codec cannot reach (a private field of a superclass, a field of a superclass of another package or a
+ * final field on the write side) goes through its {@link FieldAccessor}.
+ * <p>
+ * The codec is defined as a hidden class, nestmate of the POJO class, or as a VM anonymous class hosted by
+ * the POJO class before Java 15. When the runtime does not allow to define the class, {@link #generate}
+ * returns null and the reflective plan is used. A class file the runtime rejects is a bug of this generator,
+ * so its LinkageError is thrown rather than hidden behind the slower plan.
+ */
+public final class RuntimeCodecGenerator {
+
+    private static final String CODEC_SUFFIX = "$POxORuntimeCodec";
+
+    private static final Method PRIVATE_LOOKUP_IN = findMethod(MethodHandles.class, "privateLookupIn",
+                                                               Class.class, MethodHandles.Lookup.class);
+
+    private static final Object HIDDEN_CLASS_OPTIONS = createHiddenClassOptions();
+
+    private static final Method DEFINE_HIDDEN_CLASS = HIDDEN_CLASS_OPTIONS == null ? null
+        : findMethod(MethodHandles.Lookup.class, "defineHiddenClass", byte[].class, boolean.class,
+                     HIDDEN_CLASS_OPTIONS.getClass());
+
+    private static final Object UNSAFE = findUnsafe();
+
+    private static final Method DEFINE_ANONYMOUS_CLASS = UNSAFE == null ? null
+        : findMethod(UNSAFE.getClass(), "defineAnonymousClass", Class.class, byte[].class, Object[].class);
+
+    // declared by the visitor interfaces, called on GenericClassSerializer
+    private static final Method SERIALIZER_WRITE = findMethod(FieldsWriterVisitor.class, "write",
+                                                              POxOPrimitiveEncoder.class, Object.class);
+
+    private static final Method SERIALIZER_READ = findMethod(FieldsReaderVisitor.class, "read",
+                                                             POxOPrimitiveDecoder.class);
+
+    private static final Method ACCESSOR_GET = findMethod(FieldAccessor.class, "get", Object.class);
+
+    private static final Method ACCESSOR_SET = findMethod(FieldAccessor.class, "set", Object.class,
+                                                          Object.class);
+
+    private static final Map<Class<?>, Encoding> ENCODINGS = createEncodings();
+
+    // the locals of the write and read methods
+    private static final int THIS = 0;
+
+    private static final int STREAM = 1;
+
+    private static final int VALUE = 2;
+
+    private static final int OBJ = 3;
+
+    private RuntimeCodecGenerator() {
+    }
+
+    /**
+     * Returns the codec of the class for the fields of the plan, or null if the runtime does not allow to
+     * define it.
+     */
+    public static POxOCodec generate(Class<?> type, FieldSerializerUtil[] fields)
+        throws POxOSerializerException {
+        try {
+            Class<?> codecClass = define(type, createClassFile(type, fields));
+            if (codecClass == null) {
+                return null;
+            }
+            RuntimeCodec codec = (RuntimeCodec)codecClass.getDeclaredConstructor().newInstance();
+            codec.bind(type, fields);
+            return codec;
+        } catch (ReflectiveOperationException | SecurityException | UnsupportedOperationException e) {
+            return null;
+        } catch (IOException e) {
+            throw new POxOSerializerException("Error writing the codec of " + type.getName() + ".", e);
+        }
+    }
+
+    private static Class<?> define(Class<?> type, byte[] classFile) throws ReflectiveOperationException {
+        try {
+            if (DEFINE_HIDDEN_CLASS != null && PRIVATE_LOOKUP_IN != null) {
+                Object lookup = PRIVATE_LOOKUP_IN.invoke(null, type, MethodHandles.lookup());
+                Object hiddenLookup = DEFINE_HIDDEN_CLASS.invoke(lookup, classFile, true,
+                                                                 HIDDEN_CLASS_OPTIONS);
+                return ((MethodHandles.Lookup)hiddenLookup).lookupClass();
+            }
+            if (DEFINE_ANONYMOUS_CLASS != null) {
+                return (Class<?>)DEFINE_ANONYMOUS_CLASS.invoke(UNSAFE, type, classFile, null);
+            }
+            return null;
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof LinkageError) {
+                throw (LinkageError)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static byte[] createClassFile(Class<?> type, FieldSerializerUtil[] fields) throws IOException {
+        ClassFile classFile = new ClassFile(internalName(type) + CODEC_SUFFIX,
+                                            internalName(RuntimeCodec.class));
+
+        Code init = classFile.code();
+        init.op(0x2a); // aload_0
+        init.op(0xb7); // invokespecial
+        init.u2(classFile.methodRef(internalName(RuntimeCodec.class), "<init>", "()V"));
+        init.op(0xb1); // return
+        classFile.method("<init>", "()V", init);
+
+        Code write = classFile.code();
+        Code read = classFile.code();
+        for (Code code : new Code[] {write, read}) {
+            code.op(0x2c); // aload_2
+            code.op(0xc0); // checkcast
+            code.u2(classFile.classRef(internalName(type)));
+            code.op(0x4e); // astore_3
+        }
+        for (int i = 0; i < fields.length; i++) {
+            writeField(classFile, write, type, fields[i], i);
+            readField(classFile, read, type, fields[i], i);
+        }
+        write.op(0xb1); // return
+        read.op(0xb1); // return
+        classFile.method("write", methodDescriptor(void.class, POxOPrimitiveEncoder.class, Object.class),
+                         write);
+        classFile.method("read", methodDescriptor(void.class, POxOPrimitiveDecoder.class, Object.class),
+                         read);
+        return classFile.toByteArray();
+    }
+
+    private static void writeField(ClassFile classFile, Code code, Class<?> type, FieldSerializerUtil field,
+                                   int index) throws IOException {
+        Encoding encoding = getEncoding(field);
+        if (encoding == null) {
+            loadArrayItem(classFile, code, "serializers", GenericClassSerializer[].class, index);
+            code.op(0x2b); // aload_1
+            loadField(classFile, code, type, field, index, ACCESSOR_GET);
+            invoke(classFile, code, GenericClassSerializer.class, SERIALIZER_WRITE);
+            return;
+        }
+        code.op(0x2b); // aload_1
+        loadField(classFile, code, type, field, index, encoding.get);
+        if (encoding.optimizePositive) {
+            code.op(0x04); // iconst_1
+        }
+        invoke(classFile, code, encoding.write);
+    }
+
+    private static void readField(ClassFile classFile, Code code, Class<?> type, FieldSerializerUtil field,
+                                  int index) throws IOException {
+        Field reflectField = field.getField();
+        Encoding encoding = getEncoding(field);
+        boolean direct = canAccess(type, reflectField) && !Modifier.isFinal(reflectField.getModifiers())
+                         && (encoding != null || canAccess(type, reflectField.getType()));
+        if (direct) {
+            code.op(0x2d); // aload_3
+        } else {
+            loadArrayItem(classFile, code, "accessors", FieldAccessor[].class, index);
+            code.op(0x2d); // aload_3
+        }
+        if (encoding == null) {
+            loadArrayItem(classFile, code, "serializers", GenericClassSerializer[].class, index);
+            code.op(0x2b); // aload_1
+            invoke(classFile, code, GenericClassSerializer.class, SERIALIZER_READ);
+            if (direct && reflectField.getType() != Object.class) {
+                code.op(0xc0); // checkcast
+                code.u2(classFile.classRef(internalName(reflectField.getType())));
+            }
+        } else {
+            code.op(0x2b); // aload_1
+            if (encoding.optimizePositive) {
+                code.op(0x04); // iconst_1
+            }
+            invoke(classFile, code, encoding.read);
+        }
+        if (direct) {
+            code.op(0xb5); // putfield
+            code.u2(classFile.fieldRef(reflectField));
+        } else {
+            invoke(classFile, code, encoding == null ? ACCESSOR_SET : encoding.set);
+        }
+    }
+
+    /** Pushes the value of the field, of the type of the accessor method when it is not read directly. */
+    private static void loadField(ClassFile classFile, Code code, Class<?> type, FieldSerializerUtil field,
+                                  int index, Method accessorGet) throws IOException {
+        Field reflectField = field.getField();
+        if (canAccess(type, reflectField)) {
+            code.op(0x2d); // aload_3
+            code.op(0xb4); // getfield
+            code.u2(classFile.fieldRef(reflectField));
+            return;
+        }
+        loadArrayItem(classFile, code, "accessors", FieldAccessor[].class, index);
+        code.op(0x2d); // aload_3
+        invoke(classFile, code, accessorGet);
+        if (accessorGet == ACCESSOR_GET && getEncoding(field) != null) {
+            // a boxed primitive or a String, passed to a typed static method
+            code.op(0xc0); // checkcast
+            code.u2(classFile.classRef(internalName(reflectField.getType())));
+        }
+    }
+
+    private static void loadArrayItem(ClassFile classFile, Code code, String arrayName, Class<?> arrayType,
+                                      int index) throws IOException {
+        code.op(0x2a); // aload_0
+        code.op(0xb4); // getfield
+        code.u2(classFile.fieldRef(internalName(RuntimeCodec.class), arrayName, descriptor(arrayType)));
+        if (index <= 5) {
+            code.op(0x03 + index); // iconst_<index>
+        } else if (index <= Byte.MAX_VALUE) {
+            code.op(0x10); // bipush
+            code.op(index);
+        } else if (index <= Short.MAX_VALUE) {
+            code.op(0x11); // sipush
+            code.u2(index);
+        } else {
+            code.op(0x13); // ldc_w
+            code.u2(classFile.integer(index));
+        }
+        code.op(0x32); // aaload
+    }
+
+    private static void invoke(ClassFile classFile, Code code, Method method) throws IOException {
+        invoke(classFile, code, method.getDeclaringClass(), method);
+    }
+
+    private static void invoke(ClassFile classFile, Code code, Class<?> owner, Method method)
+        throws IOException {
+        code.op(Modifier.isStatic(method.getModifiers()) ? 0xb8 : 0xb6); // invokestatic, invokevirtual
+        code.u2(classFile.methodRef(internalName(owner), method.getName(),
+                                    methodDescriptor(method.getReturnType(), method.getParameterTypes())));
+        Class<?> returnType = method.getReturnType();
+        if (owner == POxOPrimitiveEncoder.class && returnType != void.class) {
+            // the number of bytes written, returned by some of the encoder methods
+            code.op(returnType == long.class || returnType == double.class ? 0x58 : 0x57); // pop2, pop
+        }
+    }
+
+    private static Encoding getEncoding(FieldSerializerUtil field) {
+        Encoding encoding = ENCODINGS.get(field.getField().getType());
+        return encoding != null && encoding.serializerClass == field.getSerializer().getClass() ? encoding
+            : null;
+    }
+
+    /** Returns true if the codec, defined in the package of the POJO class, can access the field. */
+    private static boolean canAccess(Class<?> type, Field field) {
+        Class<?> owner = field.getDeclaringClass();
+        int modifiers = field.getModifiers();
+        if (owner == type) {
+            return true;
+        }
+        if (Modifier.isPrivate(modifiers)) {
+            return false;
+        }
+        return isSamePackage(type, owner) || Modifier.isPublic(modifiers) && canAccess(type, owner);
+    }
+
+    /** Returns true if the codec can cast to the class. */
+    private static boolean canAccess(Class<?> type, Class<?> target) {
+        while (target.isArray()) {
+            target = target.getComponentType();
+        }
+        return target.isPrimitive() || Modifier.isPublic(target.getModifiers())
+               || isSamePackage(type, target);
+    }
+
+    private static boolean isSamePackage(Class<?> type, Class<?> other) {
+        return type.getClassLoader() == other.getClassLoader()
+               && packageName(type).equals(packageName(other));
+    }
+
+    private static String packageName(Class<?> type) {
+        String name = type.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(0, dot);
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.isArray() ? descriptor(type) : type.getName().replace('.', '/');
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type.isArray()) {
+            return "[" + descriptor(type.getComponentType());
+        }
+        if (!type.isPrimitive()) {
+            return "L" + internalName(type) + ";";
+        }
+        if (type == boolean.class) {
+            return "Z";
+        } else if (type == long.class) {
+            return "J";
+        } else if (type == void.class) {
+            return "V";
+        }
+        return type.getName().substring(0, 1).toUpperCase();
+    }
+
+    private static String methodDescriptor(Class<?> returnType, Class<?>... parameterTypes) {
+        StringBuilder builder = new StringBuilder("(");
+        for (Class<?> parameterType : parameterTypes) {
+            builder.append(descriptor(parameterType));
+        }
+        return builder.append(')').append(descriptor(returnType)).toString();
+    }
+
+    private static Map<Class<?>, Encoding> createEncodings() {
+        Map<Class<?>, Encoding> ret = new HashMap<Class<?>, Encoding>();
+        addEncodings(ret, int.class, Integer.class, IntegerSerializer.class, "Int", true);
+        addEncodings(ret, long.class, Long.class, LongSerializer.class, "Long", true);
+        addEncodings(ret, short.class, Short.class, ShortSerializer.class, "Short", false);
+        addEncodings(ret, byte.class, Byte.class, ByteSerializer.class, "Byte", false);
+        addEncodings(ret, char.class, Character.class, CharSerializer.class, "Char", false);
+        addEncodings(ret, boolean.class, Boolean.class, BooleanSerializer.class, "Boolean", false);
+        addEncodings(ret, float.class, Float.class, FloatSerializer.class, "Float", false);
+        addEncodings(ret, double.class, Double.class, DoubleSerializer.class, "Double", false);
+        ret.put(String.class, boxedEncoding(String.class, StringSerializer.class));
+        return ret;
+    }
+
+    private static void addEncodings(Map<Class<?>, Encoding> encodings, Class<?> primitiveType,
+                                     Class<?> boxedType, Class<?> serializerClass, String suffix,
+                                     boolean optimizePositive) {
+        int streamParameters = optimizePositive ? 1 : 0;
+        Encoding encoding = new Encoding();
+        encoding.serializerClass = serializerClass;
+        encoding.write = findStreamMethod(POxOPrimitiveEncoder.class, "write" + suffix, streamParameters + 1);
+        encoding.read = findStreamMethod(POxOPrimitiveDecoder.class, "read" + suffix, streamParameters);
+        encoding.optimizePositive = optimizePositive;
+        encoding.get = findMethod(FieldAccessor.class, "get" + suffix, Object.class);
+        encoding.set = findMethod(FieldAccessor.class, "set" + suffix, Object.class, primitiveType);
+        encodings.put(primitiveType, encoding);
+        encodings.put(boxedType, boxedEncoding(boxedType, serializerClass));
+    }
+
+    private static Encoding boxedEncoding(Class<?> boxedType, Class<?> serializerClass) {
+        String name = boxedType.getSimpleName();
+        Encoding encoding = new Encoding();
+        encoding.serializerClass = serializerClass;
+        encoding.write = findMethod(RuntimeCodec.class, "write" + name, POxOPrimitiveEncoder.class,
+                                    boxedType);
+        encoding.read = findMethod(RuntimeCodec.class, "read" + name, POxOPrimitiveDecoder.class);
+        encoding.get = ACCESSOR_GET;
+        encoding.set = ACCESSOR_SET;
+        return encoding;
+    }
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getDeclaredMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Method findStreamMethod(Class<?> type, String name, int parameterCount) {
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == parameterCount) {
+                return method;
+            }
+        }
+        throw new IllegalStateException("Missing method " + type.getName() + "." + name);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object createHiddenClassOptions() {
+        try {
+            Class optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            Object options = Array.newInstance(optionClass, 1);
+            Array.set(options, 0, Enum.valueOf(optionClass, "NESTMATE"));
+            return options;
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Object findUnsafe() {
+        try {
+            Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** The inline encoding of a primitive, boxed primitive or String field. */
+    private static final class Encoding {
+        private Class<?> serializerClass;
+
+        private Method write;
+
+        private Method read;
+
+        private boolean optimizePositive;
+
+        private Method get;
+
+        private Method set;
+    }
+
+    /** Writer of a class file of version 52 (Java 8), with no interfaces, no fields and no branches. */
+    private static final class ClassFile {
+        private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+
+        private final Map<String, Integer> constants = new HashMap<String, Integer>();
+
+        private int constantCount = 1;
+
+        private final ByteArrayOutputStream methodsBytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream methods = new DataOutputStream(methodsBytes);
+
+        private int methodCount;
+
+        private final int thisClass;
+
+        private final int superClass;
+
+        ClassFile(String name, String superName) throws IOException {
+            thisClass = classRef(name);
+            superClass = classRef(superName);
+        }
+
+        Code code() {
+            return new Code();
+        }
+
+        void method(String name, String descriptor, Code code) throws IOException {
+            if (code.bytes.size() > 0xFFFF) {
+                throw new IOException("Method " + name + " is too large.");
+            }
+            methods.writeShort(Modifier.PUBLIC);
+            methods.writeShort(utf8(name));
+            methods.writeShort(utf8(descriptor));
+            methods.writeShort(1);
+            methods.writeShort(utf8("Code"));
+            methods.writeInt(12 + code.bytes.size());
+            // the stack never holds more than an array item, its index and a long argument
+            methods.writeShort(8);
+            methods.writeShort(OBJ + 1);
+            methods.writeInt(code.bytes.size());
+            code.bytes.writeTo(methods);
+            methods.writeShort(0); // exception table
+            methods.writeShort(0); // attributes
+            methodCount++;
+        }
+
+        int utf8(String value) throws IOException {
+            Integer index = constants.get("U" + value);
+            if (index == null) {
+                constantPool.writeByte(1);
+                constantPool.writeUTF(value);
+                index = add("U" + value);
+            }
+            return index;
+        }
+
+        int integer(int value) throws IOException {
+            Integer index = constants.get("I" + value);
+            if (index == null) {
+                constantPool.writeByte(3);
+                constantPool.writeInt(value);
+                index = add("I" + value);
+            }
+            return index;
+        }
+
+        int classRef(String internalName) throws IOException {
+            Integer index = constants.get("C" + internalName);
+            if (index == null) {
+                int name = utf8(internalName);
+                constantPool.writeByte(7);
+                constantPool.writeShort(name);
+                index = add("C" + internalName);
+            }
+            return index;
+        }
+
+        int fieldRef(Field field) throws IOException {
+            return fieldRef(internalName(field.getDeclaringClass()), field.getName(),
+                            descriptor(field.getType()));
+        }
+
+        int fieldRef(String owner, String name, String descriptor) throws IOException {
+            return memberRef(9, owner, name, descriptor);
+        }
+
+        int methodRef(String owner, String name, String descriptor) throws IOException {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+            String key = tag + owner + "." + name + descriptor;
+            Integer index = constants.get(key);
+            if (index == null) {
+                int ownerIndex = classRef(owner);
+                int nameAndType = nameAndType(name, descriptor);
+                constantPool.writeByte(tag);
+                constantPool.writeShort(ownerIndex);
+                constantPool.writeShort(nameAndType);
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int nameAndType(String name, String descriptor) throws IOException {
+            String key = "N" + name + descriptor;
+            Integer index = constants.get(key);
+            if (index == null) {
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                constantPool.writeByte(12);
+                constantPool.writeShort(nameIndex);
+                constantPool.writeShort(descriptorIndex);
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int add(String key) throws IOException {
+            if (constantCount > 0xFFFE) {
+                throw new IOException("Constant pool overflow.");
+            }
+            constants.put(key, constantCount);
+            return constantCount++;
+        }
+
+        byte[] toByteArray() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0); // minor version
+            out.writeShort(52); // major version, Java 8
+            out.writeShort(constantCount);
+            constantPoolBytes.writeTo(out);
+            out.writeShort(Modifier.PUBLIC | Modifier.FINAL | 0x20); // ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methodCount);
+            methodsBytes.writeTo(out);
+            out.writeShort(0); // attributes
+            return bytes.toByteArray();
+        }
+    }
+
+    /** Bytecode of a method body. */
+    private static final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        void op(int opcode) {
+            bytes.write(opcode);
+        }
+
+        void u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+    }
+}
@@ -1,78 +1,120 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer.serializers;
-
-import java.util.HashSet;
-import java.util.Set;
-
-import org.codejuicer.poxoserializer.POxOSerializerClassPair;
-import org.codejuicer.poxoserializer.exception.POxOSerializerException;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
-import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
-
-public class SetSerializer extends GenericClassSerializer {
-
-    private POxOSerializerClassPair pair;
-
-    public SetSerializer(POxOSerializerClassPair pair) {
-        super(true);
-        this.pair = pair;
-    }
-
-    @Override
-    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
-        if (canBeNull) {
-            byte isNull = decoder.readByte();
-            if (isNull == 0x00) {
-                return null;
-            }
-        }
-
-        return createAndFillListOfType(decoder);
-    }
-
-    @Override
-    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
-        Set<?> set = (Set<?>)value;
-        if (canBeNull) {
-            if (set == null) {
-                encoder.write(0x00);
-                return;
-            } else {
-                encoder.write(0x01);
-            }
-        }
-        GenericClassSerializer nestedSerializer = pair.getSerializer();
-        encoder.writeVarInt(set.size(), true);
-        for (Object o : set) {
-            nestedSerializer.write(encoder, o);
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    private <T> Set<T> createAndFillListOfType(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
-        GenericClassSerializer nestedSerializer = pair.getSerializer();
-        int size = decoder.readVarInt(true);
-        Set<T> set = new HashSet<>(size);
-
-        for (int i = 0; i < size; i++) {
-            T o = (T)nestedSerializer.read(decoder);
-            set.add(o);
-        }
-        return set;
-    }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.codejuicer.poxoserializer.POxOSerializerClassPair;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+public class SetSerializer extends GenericClassSerializer {
+
+    private static final byte PACKED = 0x02;
+
+    private POxOSerializerClassPair pair;
+
+    private boolean packed;
+
+    private PackedIntegersSerializer packedSerializer;
+
+    public SetSerializer(POxOSerializerClassPair pair) {
+        this(pair, false);
+    }
+
+    /**
+     * @param packed true to write the Short, Integer or Long elements with the
+     *            {@link PackedIntegersSerializer}. Packed elements are read in any case.
+     */
+    public SetSerializer(POxOSerializerClassPair pair, boolean packed) {
+        this(pair, packed, true);
+    }
+
+    /**
+     * @param canBeNull false to write the set without the null marker ahead of it, for the positions that
+     *            never hold null. Such a serializer does not pack the elements.
+     */
+    public SetSerializer(POxOSerializerClassPair pair, boolean packed, boolean canBeNull) {
+        super(canBeNull);
+        this.pair = pair;
+        this.packed = packed;
+        this.packedSerializer = PackedIntegersSerializer.forType(pair.getGenericClass());
+    }
+
+    @Override
+    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        if (canBeNull) {
+            byte isNull = decoder.readByte();
+            if (isNull == 0x00) {
+                return null;
+            } else if (isNull == PACKED) {
+                return readPacked(decoder);
+            }
+        }
+
+        return createAndFillListOfType(decoder);
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        Set<?> set = (Set<?>)value;
+        if (canBeNull) {
+            if (set == null) {
+                encoder.write(0x00);
+                return;
+            } else if (packed && packedSerializer != null) {
+                encoder.write(PACKED);
+                encoder.writeVarInt(set.size(), true);
+                packedSerializer.write(encoder, set);
+                return;
+            } else {
+                encoder.write(0x01);
+            }
+        }
+        GenericClassSerializer nestedSerializer = pair.getSerializer();
+        encoder.writeVarInt(set.size(), true);
+        for (Object o : set) {
+            nestedSerializer.write(encoder, o);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Set<T> createAndFillListOfType(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        GenericClassSerializer nestedSerializer = pair.getSerializer();
+        int size = decoder.readVarInt(true);
+        Set<T> set = new HashSet<>(size);
+
+        for (int i = 0; i < size; i++) {
+            T o = (T)nestedSerializer.read(decoder);
+            set.add(o);
+        }
+        return set;
+    }
+
+    private Set<Object> readPacked(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        if (packedSerializer == null) {
+            throw new POxOSerializerException("Packed elements of type " + pair.getGenericClass().getName()
+                                              + " are not supported.");
+        }
+        int size = decoder.readVarInt(true);
+        Set<Object> set = new HashSet<Object>(size);
+        packedSerializer.read(decoder, set, size);
+        return set;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.serializers;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.codejuicer.poxoserializer.POxOSerializerUtil;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+
+/**
+ * Serializer of a field with a table of known subtypes. An instance of exactly one of the subtypes is written
+ * with a single byte index in the table and the fields plan of the subtype; null and any other class go
+ * through the {@link ObjectSerializer}.
+ */
+public class SubtypeSerializer extends GenericClassSerializer {
+
+    private final Class<?>[] subtypes;
+
+    private final POxOSerializerUtil serializerUtil;
+
+    private final ObjectSerializer objectSerializer;
+
+    // resolved at the first use of each subtype, since a subtype can hold a field of the base type; the
+    // serializer is shared by the threads, so the plans are published through an atomic array
+    private final AtomicReferenceArray<FieldsSerializer> fieldsSerializers;
+
+    public SubtypeSerializer(Class<?>[] subtypes, POxOSerializerUtil serializerUtil,
+                             ObjectSerializer objectSerializer) {
+        super(true);
+        this.subtypes = subtypes.clone();
+        this.serializerUtil = serializerUtil;
+        this.objectSerializer = objectSerializer;
+        fieldsSerializers = new AtomicReferenceArray<FieldsSerializer>(subtypes.length);
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        if (value != null) {
+            Class<?> type = value.getClass();
+            for (int i = 0; i < subtypes.length; i++) {
+                if (subtypes[i] == type) {
+                    objectSerializer.writeSubtype(encoder, value, i, getFieldsSerializer(i));
+                    return;
+                }
+            }
+        }
+        objectSerializer.write(encoder, value);
+    }
+
+    @Override
+    public Object read(POxOPrimitiveDecoder decoder) throws POxOSerializerException {
+        return objectSerializer.readSubtype(decoder, this);
+    }
+
+    FieldsSerializer getFieldsSerializer(int index) throws POxOSerializerException {
+        if (index >= subtypes.length) {
+            throw new POxOSerializerException("Subtype index " + index + " is not defined.");
+        }
+        FieldsSerializer ret = fieldsSerializers.get(index);
+        if (ret == null) {
+            ret = serializerUtil.getFieldsSerializer(subtypes[index]);
+            fieldsSerializers.set(index, ret);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+import java.util.List;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+import org.codejuicer.poxoserializer.serializers.GenericClassSerializer;
+import org.codejuicer.poxoserializer.serializers.POxOCodec;
+
+/**
+ * Codec written as the annotation processor generates it for {@link CodecObjectClass}.
+ */
+public final class CodecObjectClassPOxOCodec implements POxOCodec {
+
+    private GenericClassSerializer tagsSerializer;
+
+    @Override
+    public Class<?> getType() {
+        return CodecObjectClass.class;
+    }
+
+    @Override
+    public void initialize(POxOSerializerUtil util) throws POxOSerializerException {
+        try {
+            tagsSerializer = util.getFieldSerializer(CodecObjectClass.class.getDeclaredField("tags"));
+        } catch (NoSuchFieldException e) {
+            throw new POxOSerializerException("Codec does not match its class.", e);
+        }
+    }
+
+    @Override
+    public void write(POxOPrimitiveEncoder encoder, Object value) throws POxOSerializerException {
+        CodecObjectClass obj = (CodecObjectClass)value;
+        String name = obj.getName();
+        if (name == null) {
+            encoder.write(0x00);
+        } else {
+            encoder.write(0x01);
+            encoder.writeString(name);
+        }
+        tagsSerializer.write(encoder, obj.getTags());
+        encoder.writeInt(obj.getValue(), true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void read(POxOPrimitiveDecoder decoder, Object value) throws POxOSerializerException {
+        CodecObjectClass obj = (CodecObjectClass)value;
+        obj.setName(decoder.readByte() == 0x00 ? null : decoder.readString());
+        obj.setTags((List<String>)tagsSerializer.read(decoder));
+        obj.setValue(decoder.readInt(true));
+    }
+}
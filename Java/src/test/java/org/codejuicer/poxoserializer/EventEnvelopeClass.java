@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+import java.util.List;
+
+import org.codejuicer.poxoserializer.annotation.POxOSubtypes;
+
+public class EventEnvelopeClass {
+    private AbstractEventClass event;
+
+    private List<AbstractEventClass> history;
+
+    @POxOSubtypes({CreatedEventClass.class, DeletedEventClass.class})
+    private Object payload;
+
+    public AbstractEventClass getEvent() {
+        return event;
+    }
+
+    public void setEvent(AbstractEventClass event) {
+        this.event = event;
+    }
+
+    public List<AbstractEventClass> getHistory() {
+        return history;
+    }
+
+    public void setHistory(List<AbstractEventClass> history) {
+        this.history = history;
+    }
+
+    public Object getPayload() {
+        return payload;
+    }
+
+    public void setPayload(Object payload) {
+        this.payload = payload;
+    }
+}
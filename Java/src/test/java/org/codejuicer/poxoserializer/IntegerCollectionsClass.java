@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class IntegerCollectionsClass {
+    private List<Integer> ints;
+
+    private Set<Long> longs;
+
+    private List<Short> shorts;
+
+    private Map<String, List<Integer>> series;
+
+    public List<Integer> getInts() {
+        return ints;
+    }
+
+    public void setInts(List<Integer> ints) {
+        this.ints = ints;
+    }
+
+    public Set<Long> getLongs() {
+        return longs;
+    }
+
+    public void setLongs(Set<Long> longs) {
+        this.longs = longs;
+    }
+
+    public List<Short> getShorts() {
+        return shorts;
+    }
+
+    public void setShorts(List<Short> shorts) {
+        this.shorts = shorts;
+    }
+
+    public Map<String, List<Integer>> getSeries() {
+        return series;
+    }
+
+    public void setSeries(Map<String, List<Integer>> series) {
+        this.series = series;
+    }
+}
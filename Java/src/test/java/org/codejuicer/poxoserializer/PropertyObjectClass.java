@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+/**
+ * JavaBean methods that do not read and write the fields as they are, and a final field, to check that the
+ * serializers move the field values.
+ */
+public class PropertyObjectClass {
+    private String name;
+
+    private int count;
+
+    private final long created;
+
+    public PropertyObjectClass() {
+        created = 1400000000000L;
+    }
+
+    public String getName() {
+        return name == null ? null : name.toUpperCase();
+    }
+
+    public void setName(String name) {
+        this.name = name == null ? null : name.trim();
+    }
+
+    public int getCount() {
+        return count * 2;
+    }
+
+    public void setCount(int count) {
+        this.count = count + 1;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+}
@@ -1,6 +1,6 @@
-package org.codejuicer.poxoserializer;
-
-public enum TestEnum {
-    WORK,
-    NOTWORK
-}
+package org.codejuicer.poxoserializer;
+
+public enum TestEnum {
+    WORK,
+    NOTWORK
+}
@@ -1,104 +1,104 @@
-package org.codejuicer.poxoserializer;
-
-public class TestObjectClass {
-    private String campo1;
-    private String campo2;
-    private String campo3;
-    private String campo4;
-    private String campo5;
-    private String campo6;
-    private String campo7;
-    private String campo8;
-    private String campo9;
-    private String campo10;
-    private String campo11;
-    private String campo12;
-    private String campo13;
-    private String campo14;
-    private String campo15;
-    private String campo16;
-
-    protected TestObjectClass() {
-        
-    }
-    
-    public TestObjectClass(String campo1, String campo2, String campo3, String campo4, String campo5,
-                           String campo6, String campo7, String campo8, String campo9, String campo10,
-                           String campo11, String campo12, String campo13, String campo14, String campo15,
-                           String campo16) {
-        super();
-        this.campo1 = campo1;
-        this.campo2 = campo2;
-        this.campo3 = campo3;
-        this.campo4 = campo4;
-        this.campo5 = campo5;
-        this.campo6 = campo6;
-        this.campo7 = campo7;
-        this.campo8 = campo8;
-        this.campo9 = campo9;
-        this.campo10 = campo10;
-        this.campo11 = campo11;
-        this.campo12 = campo12;
-        this.campo13 = campo13;
-        this.campo14 = campo14;
-        this.campo15 = campo15;
-        this.campo16 = campo16;
-    }
-
-    public String getCampo1() {
-        return campo1;
-    }
-    public String getCampo2() {
-        return campo2;
-    }
-    public String getCampo3() {
-        return campo3;
-    }
-    public String getCampo4() {
-        return campo4;
-    }
-    public String getCampo5() {
-        return campo5;
-    }
-    public String getCampo6() {
-        return campo6;
-    }
-    public String getCampo7() {
-        return campo7;
-    }
-    public String getCampo8() {
-        return campo8;
-    }
-    
-    public String getCampo9() {
-        return campo9;
-    }
-
-    public String getCampo10() {
-        return campo10;
-    }
-
-    public String getCampo11() {
-        return campo11;
-    }
-
-    public String getCampo12() {
-        return campo12;
-    }
-
-    public String getCampo13() {
-        return campo13;
-    }
-
-    public String getCampo14() {
-        return campo14;
-    }
-
-    public String getCampo15() {
-        return campo15;
-    }
-
-    public String getCampo16() {
-        return campo16;
-    }
-}
+package org.codejuicer.poxoserializer;
+
+public class TestObjectClass {
+    private String campo1;
+    private String campo2;
+    private String campo3;
+    private String campo4;
+    private String campo5;
+    private String campo6;
+    private String campo7;
+    private String campo8;
+    private String campo9;
+    private String campo10;
+    private String campo11;
+    private String campo12;
+    private String campo13;
+    private String campo14;
+    private String campo15;
+    private String campo16;
+
+    protected TestObjectClass() {
+        
+    }
+    
+    public TestObjectClass(String campo1, String campo2, String campo3, String campo4, String campo5,
+                           String campo6, String campo7, String campo8, String campo9, String campo10,
+                           String campo11, String campo12, String campo13, String campo14, String campo15,
+                           String campo16) {
+        super();
+        this.campo1 = campo1;
+        this.campo2 = campo2;
+        this.campo3 = campo3;
+        this.campo4 = campo4;
+        this.campo5 = campo5;
+        this.campo6 = campo6;
+        this.campo7 = campo7;
+        this.campo8 = campo8;
+        this.campo9 = campo9;
+        this.campo10 = campo10;
+        this.campo11 = campo11;
+        this.campo12 = campo12;
+        this.campo13 = campo13;
+        this.campo14 = campo14;
+        this.campo15 = campo15;
+        this.campo16 = campo16;
+    }
+
+    public String getCampo1() {
+        return campo1;
+    }
+    public String getCampo2() {
+        return campo2;
+    }
+    public String getCampo3() {
+        return campo3;
+    }
+    public String getCampo4() {
+        return campo4;
+    }
+    public String getCampo5() {
+        return campo5;
+    }
+    public String getCampo6() {
+        return campo6;
+    }
+    public String getCampo7() {
+        return campo7;
+    }
+    public String getCampo8() {
+        return campo8;
+    }
+    
+    public String getCampo9() {
+        return campo9;
+    }
+
+    public String getCampo10() {
+        return campo10;
+    }
+
+    public String getCampo11() {
+        return campo11;
+    }
+
+    public String getCampo12() {
+        return campo12;
+    }
+
+    public String getCampo13() {
+        return campo13;
+    }
+
+    public String getCampo14() {
+        return campo14;
+    }
+
+    public String getCampo15() {
+        return campo15;
+    }
+
+    public String getCampo16() {
+        return campo16;
+    }
+}
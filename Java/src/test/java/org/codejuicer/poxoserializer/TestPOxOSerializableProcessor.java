@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.codejuicer.poxoserializer.annotation.POxOSerializable;
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.serializers.CodecFieldsSerializer;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles the annotation processor of the poxo-serializer-processor module, runs it on the classes in
+ * src/test/resources/codec and checks that the generated codecs write the bytes of the reflective plan.
+ */
+public class TestPOxOSerializableProcessor {
+
+    private static final String PROCESSOR_SOURCES = "poxo-serializer-processor/src/main/java";
+
+    private static final String FIXTURE_SOURCES = "src/test/resources/codec";
+
+    private static final String FIXTURE_PACKAGE = "org.codejuicer.poxoserializer.codec.";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGeneratedCodecs() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+
+        File processorClasses = folder.newFolder("processor");
+        List<String> arguments = new ArrayList<String>(Arrays.asList("-proc:none", "-d",
+                                                                     processorClasses.getPath()));
+        addSources(new File(PROCESSOR_SOURCES), arguments);
+        assertEquals(compiler.run(null, null, null, arguments.toArray(new String[0])), 0);
+
+        File fixtureClasses = folder.newFolder("fixture");
+        String coreClasses = new File(POxOSerializable.class.getProtectionDomain().getCodeSource()
+            .getLocation().toURI()).getPath();
+        arguments = new ArrayList<String>(Arrays.asList("-classpath", coreClasses, "-processorpath",
+                                                        processorClasses.getPath(), "-processor",
+                                                        "org.codejuicer.poxoserializer.processor."
+                                                            + "POxOSerializableProcessor", "-d",
+                                                        fixtureClasses.getPath()));
+        addSources(new File(FIXTURE_SOURCES), arguments);
+        // the codecs are compiled in the same run, so a codec that does not compile fails here
+        assertEquals(compiler.run(null, null, null, arguments.toArray(new String[0])), 0);
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {fixtureClasses.toURI().toURL()},
+                                                        getClass().getClassLoader())) {
+            for (String name : new String[] {"BeanClass", "DirectClass", "ShadowClass"}) {
+                checkCodec(loader, loader.loadClass(FIXTURE_PACKAGE + name));
+            }
+        }
+    }
+
+    private void checkCodec(ClassLoader loader, Class<?> type) throws Exception {
+        POxOSerializerUtil util = new POxOSerializerUtil();
+        util.setClassLoader(loader);
+        assertTrue(type.getName(), util.getFieldsSerializer(type) instanceof CodecFieldsSerializer);
+
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.setClassLoader(loader);
+        POxOSerializer reflectionSerializer = new POxOSerializer();
+        reflectionSerializer.setClassLoader(loader);
+        reflectionSerializer.setCodecsEnabled(false);
+
+        for (boolean nulls : new boolean[] {false, true}) {
+            Object obj = type.newInstance();
+            fill(obj, nulls);
+            byte[] bytes = serializer.serialize(obj);
+            assertTrue(type.getName(), Arrays.equals(bytes, reflectionSerializer.serialize(obj)));
+            Object objCheck = serializer.deserialize(bytes);
+            assertTrue(type.getName(), Arrays.equals(reflectionSerializer.serialize(objCheck), bytes));
+        }
+    }
+
+    /** Gives every field of the hierarchy a different value, or null to the nullable ones. */
+    private void fill(Object obj, boolean nulls) throws IllegalAccessException, POxOSerializerException {
+        int seed = 1;
+        for (Class<?> type = obj.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                Class<?> fieldType = field.getType();
+                seed++;
+                if (fieldType == int.class) {
+                    field.setInt(obj, -seed * 1000);
+                } else if (fieldType == long.class) {
+                    field.setLong(obj, seed * 100000000000L);
+                } else if (fieldType == short.class) {
+                    field.setShort(obj, (short)seed);
+                } else if (fieldType == char.class) {
+                    field.setChar(obj, (char)('a' + seed));
+                } else if (fieldType == boolean.class) {
+                    field.setBoolean(obj, true);
+                } else if (nulls) {
+                    field.set(obj, null);
+                } else if (fieldType == Integer.class) {
+                    field.set(obj, seed);
+                } else if (fieldType == Double.class) {
+                    field.set(obj, seed / 3.0);
+                } else if (fieldType == String.class) {
+                    field.set(obj, field.getName() + seed);
+                } else if (fieldType == List.class) {
+                    field.set(obj, Arrays.asList("a" + seed, null, "è"));
+                } else {
+                    throw new POxOSerializerException("No test value for " + field);
+                }
+            }
+        }
+    }
+
+    private void addSources(File directory, List<String> arguments) {
+        for (File file : directory.listFiles()) {
+            if (file.isDirectory()) {
+                addSources(file, arguments);
+            } else if (file.getName().endsWith(".java")) {
+                arguments.add(file.getPath());
+            }
+        }
+    }
+}
@@ -1,472 +1,1370 @@
-/*
- * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.codejuicer.poxoserializer;
-
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNull;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-
-import org.codejuicer.poxoserializer.exception.POxOSerializerException;
-import org.junit.After;
-import org.junit.Before;
-import org.junit.Test;
-
-public class TestPOxOSerializer {
-
-    PrimitiveClassesContainer classToTest;
-
-    Map<String, Double> map;
-
-    @After
-    public void close() {
-    }
-
-    @Before
-    public void initialize() {
-        classToTest = new PrimitiveClassesContainer();
-
-        classToTest.setbNotNull((byte)0x7F);
-        classToTest.setcNotNull('c');
-        classToTest.setsNotNull((short)32000);
-        classToTest.setiNotNull(1000000000);
-        classToTest.setlNotNull(4000000000L);
-        classToTest.setSt("test ascii string");
-        classToTest.setStUTF8("SãoVicente");
-        classToTest.setBoNotNull(true);
-        Date date = Calendar.getInstance().getTime();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSVV");
-        ZonedDateTime zonedDateTime = ZonedDateTime.parse("2018-03-09 10:25:31.094+04:00", formatter);
-        long mills = zonedDateTime.toInstant().toEpochMilli();
-        Instant instant = Instant.ofEpochMilli(mills);
-        LocalDateTime localDateTime = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
-        classToTest.setTimestamp(date);
-        classToTest.setZonedDateTime(zonedDateTime);
-        classToTest.setLocalDateTime(localDateTime);
-        classToTest.setLocalTime(zonedDateTime.toLocalTime());
-        classToTest.setLocalDate(zonedDateTime.toLocalDate());
-        classToTest.setfNotNull(125.758F);
-        classToTest.setdNotNull(6546874.16513154644);
-        classToTest.setEnumValue(TestEnum.NOTWORK);
-
-        List<Integer> ints = new ArrayList<Integer>();
-        ints.add(123);
-        ints.add(456);
-        ints.add(789);
-
-        List<String> strings = new ArrayList<String>();
-        strings.add("pippo");
-        strings.add("pluto");
-        strings.add("paperino");
-
-        map = new HashMap<String, Double>();
-        map.put("A", 123.4560);
-        map.put("B", 456.7890);
-        map.put("C", 789.1230);
-        map.put("D", 147.2580);
-
-        classToTest.setInts(ints);
-        classToTest.setStrings(strings);
-        classToTest.setMap(map);
-
-        List<Map<String, List<Integer>>> nestedCollections = new ArrayList<Map<String, List<Integer>>>();
-        Map<String, List<Integer>> map2 = new HashMap<String, List<Integer>>();
-        map2.put("test", ints);
-        nestedCollections.add(map2);
-        classToTest.setNestedCollections(nestedCollections);
-
-        NestedObjectClass nestedClass = new NestedObjectClass();
-        nestedClass.setIndex(50);
-        List<NestedObjectClass> listNestedClass = new ArrayList<NestedObjectClass>();
-        listNestedClass.add(nestedClass);
-        classToTest.setNestedClass(listNestedClass);
-
-        Map<String, Object> genericValueMap = new HashMap<String, Object>();
-        genericValueMap.put("bool", true);
-        genericValueMap.put("int", new Integer(74));
-        genericValueMap.put("string", "pippo");
-        genericValueMap.put("object", nestedClass);
-        genericValueMap.put("enum", TestEnum.WORK);
-        classToTest.setGenericValueMap(genericValueMap);
-    }
-
-    @Test
-    public void test1() throws POxOSerializerException, IOException {
-
-        POxOSerializer serializer = new POxOSerializer();
-        PrimitiveClassesContainer retB = null;
-        byte[] serialized = serializer.serialize(classToTest);
-        retB = (PrimitiveClassesContainer)serializer.deserialize(serialized);
-
-        assertEquals(retB.getbNotNull(), classToTest.getbNotNull());
-        assertEquals(retB.getcNotNull(), classToTest.getcNotNull());
-        assertEquals(retB.getsNotNull(), classToTest.getsNotNull());
-        assertEquals(retB.getiNotNull(), classToTest.getiNotNull());
-        assertEquals(retB.getlNotNull(), classToTest.getlNotNull());
-        assertEquals(retB.getSt(), classToTest.getSt());
-        assertEquals(retB.getStUTF8(), classToTest.getStUTF8());
-        assertEquals(retB.isBoNotNull(), classToTest.isBoNotNull());
-        assertEquals(retB.getTimestamp(), classToTest.getTimestamp());
-        assertEquals(retB.getZonedDateTime(), classToTest.getZonedDateTime());
-        assertEquals(retB.getLocalDateTime(), classToTest.getLocalDateTime());
-        assertEquals(retB.getLocalTime(), classToTest.getLocalTime());
-        assertEquals(retB.getLocalDate(), classToTest.getLocalDate());
-        assertEquals(retB.getfNotNull(), classToTest.getfNotNull(), 0.0000000001);
-        assertEquals(retB.getdNotNull(), classToTest.getdNotNull(), 0.0000000001);
-        assertEquals(retB.getEnumValue(), classToTest.getEnumValue());
-
-        assertEquals(retB.getbCanNull(), classToTest.getbCanNull());
-        assertEquals(retB.getcCanNull(), classToTest.getcCanNull());
-        assertEquals(retB.getsCanNull(), classToTest.getsCanNull());
-        assertEquals(retB.getiCanNull(), classToTest.getiCanNull());
-        assertEquals(retB.getlCanNull(), classToTest.getlCanNull());
-        assertNull(retB.getBoCanNull());
-        assertNull(retB.getfCanNull());
-        assertNull(retB.getdCanNull());
-
-        assertEquals(retB.getInts().size(), classToTest.getInts().size());
-        assertEquals(retB.getMap().size(), classToTest.getMap().size());
-        assertEquals(retB.getNestedCollections().size(), classToTest.getNestedCollections().size());
-        assertEquals(retB.getNestedCollections().get(0).size(),
-                     classToTest.getNestedCollections().get(0).size());
-        assertEquals(retB.getNestedCollections().get(0).get("test").get(2),
-                     classToTest.getNestedCollections().get(0).get("test").get(2));
-        assertEquals(retB.getNestedClass().get(0).getIndex(), classToTest.getNestedClass().get(0).getIndex());
-        assertEquals(retB.getGenericValueMap().get("bool"), classToTest.getGenericValueMap().get("bool"));
-        assertEquals(retB.getGenericValueMap().get("int"), classToTest.getGenericValueMap().get("int"));
-        assertEquals(retB.getGenericValueMap().get("string"), classToTest.getGenericValueMap().get("string"));
-        assertEquals(true, retB.getGenericValueMap().get("object") instanceof NestedObjectClass);
-        assertEquals(((NestedObjectClass)retB.getGenericValueMap().get("object")).getIndex(),
-                     ((NestedObjectClass)classToTest.getGenericValueMap().get("object")).getIndex());
-    }
-
-    @Test
-    public void testGenericTypeContainer() throws POxOSerializerException, IOException {
-        List<TestObjectClass> testData = new ArrayList<TestObjectClass>();
-        Set<TestObjectClass> setData = new HashSet<TestObjectClass>();
-        for (int i = 0; i < 10000; i++) {
-            TestObjectClass mapData = new TestObjectClass(this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName());
-            testData.add(mapData);
-            setData.add(mapData);
-        }
-
-        GenericTypeContainer container = new GenericTypeContainer();
-        container.setListObject(testData);
-        container.setSetObject(setData);
-
-        POxOSerializer serializer = new POxOSerializer();
-        byte[] output = serializer.serialize(container);
-        writeDataToFile("testListObject", output);
-        GenericTypeContainer testDataCheck = (GenericTypeContainer)serializer.deserialize(output);
-        assertEquals(testDataCheck.getListObject().size(), testData.size());
-        assertEquals(testDataCheck.getSetObject().size(), setData.size());
-
-        List<List<String>> testDataListList = new ArrayList<List<String>>();
-        for (int i = 0; i < 10000; i++) {
-            List<String> mapData = new ArrayList<String>();
-            for (int j = 0; j < 16; j++) {
-                mapData.add(this.getClass().getSimpleName() + j);
-            }
-            testDataListList.add(mapData);
-        }
-
-        container = new GenericTypeContainer();
-        container.setListList(testDataListList);
-
-        serializer = new POxOSerializer();
-        output = serializer.serialize(container);
-        writeDataToFile("testListList", output);
-        GenericTypeContainer testDataCheckListList = (GenericTypeContainer)serializer.deserialize(output);
-        assertEquals(testDataCheckListList.getListList().size(), testDataListList.size());
-
-        List<Map<String, String>> testDataListMap = new ArrayList<Map<String, String>>();
-        for (int i = 0; i < 10000; i++) {
-            Map<String, String> mapData = new HashMap<String, String>();
-            for (int j = 0; j < 16; j++) {
-                mapData.put("key" + j, this.getClass().getSimpleName() + j);
-            }
-            testDataListMap.add(mapData);
-        }
-
-        container = new GenericTypeContainer();
-        container.setListMap(testDataListMap);
-
-        serializer = new POxOSerializer();
-        output = serializer.serialize(container);
-        writeDataToFile("testListMap", output);
-        GenericTypeContainer testDataCheckListMap = (GenericTypeContainer)serializer.deserialize(output);
-        assertEquals(testDataCheckListMap.getListMap().size(), testDataListMap.size());
-
-        Map<String, List<Integer>> testDataMapList = new HashMap<String, List<Integer>>();
-        for (int i = 0; i < 2100; i++) {
-            List<Integer> mapData = new ArrayList<Integer>();
-            for (int j = 0; j < 8; j++) {
-                mapData.add(j);
-            }
-            testDataMapList.put("row" + i, mapData);
-        }
-
-        container = new GenericTypeContainer();
-        container.setMapList(testDataMapList);
-
-        serializer = new POxOSerializer();
-        output = serializer.serialize(container);
-        writeDataToFile("testMapList", output);
-        GenericTypeContainer testDataCheckMapList = (GenericTypeContainer)serializer.deserialize(output);
-        assertEquals(testDataCheckMapList.getMapList().size(), testDataMapList.size());
-    }
-
-    @Test
-    public void testListListStringSerializer() throws POxOSerializerException, IOException {
-        List<List<String>> testData = new ArrayList<List<String>>();
-        for (int i = 0; i < 2500; i++) {
-            List<String> mapData = new ArrayList<String>();
-            for (int j = 0; j < 16; j++) {
-                mapData.add(this.getClass().getSimpleName() + j);
-            }
-            testData.add(mapData);
-        }
-
-        POxOSerializer serializer = new POxOSerializer();
-
-        long checkTime = System.currentTimeMillis();
-        byte[] output = serializer.serialize(testData);
-        checkTime = System.currentTimeMillis() - checkTime;
-        System.out.println("serialization time " + checkTime);
-        writeDataToFile("testListList", output);
-
-        checkTime = System.currentTimeMillis();
-        List<List<String>> testDataCheck = (List<List<String>>)serializer.deserialize(output);
-        checkTime = System.currentTimeMillis() - checkTime;
-        System.out.println("deserialization time " + checkTime);
-        assertEquals(testDataCheck.size(), testData.size());
-    }
-
-    @Test
-    public void testListMapStringStringSerializer() throws POxOSerializerException, IOException {
-        List<Map<String, String>> testData = new ArrayList<Map<String, String>>();
-        for (int i = 0; i < 2500; i++) {
-            Map<String, String> mapData = new HashMap<String, String>();
-            for (int j = 0; j < 16; j++) {
-                mapData.put("key" + j, this.getClass().getSimpleName() + j);
-            }
-            testData.add(mapData);
-        }
-
-        GenericTypeContainer gt = new GenericTypeContainer();
-        gt.setListMap(testData);
-        POxOSerializer serializer = new POxOSerializer();
-
-        long checkTime = System.currentTimeMillis();
-        byte[] output = serializer.serialize(gt);
-        checkTime = System.currentTimeMillis() - checkTime;
-        System.out.println("serialization time " + checkTime);
-        writeDataToFile("testListMap", output);
-
-        checkTime = System.currentTimeMillis();
-        GenericTypeContainer testDataCheck = (GenericTypeContainer)serializer.deserialize(output);
-        checkTime = System.currentTimeMillis() - checkTime;
-        System.out.println("deserialization time " + checkTime);
-        assertEquals(testDataCheck.getListMap().size(), testData.size());
-    }
-
-    @Test
-    public void testListObjectSerializer() throws POxOSerializerException, IOException {
-        List<TestObjectClass> testData = new ArrayList<TestObjectClass>();
-        for (int i = 0; i < 10000; i++) {
-            TestObjectClass mapData = new TestObjectClass(this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName(),
-                                                          this.getClass().getSimpleName());
-            testData.add(mapData);
-        }
-
-        POxOSerializer serializer = new POxOSerializer();
-
-        long checkTime = System.currentTimeMillis();
-        byte[] output = serializer.serialize(testData);
-        checkTime = System.currentTimeMillis() - checkTime;
-        System.out.println("serialization time " + checkTime);
-
-        checkTime = System.currentTimeMillis();
-        List<TestObjectClass> testDataCheck = (List<TestObjectClass>)serializer.deserialize(output);
-        checkTime = System.currentTimeMillis() - checkTime;
-        System.out.println("deserialization time " + checkTime);
-        assertEquals(testDataCheck.size(), testData.size());
-    }
-
-    @Test
-    public void testListSerializer() throws POxOSerializerException, IOException {
-
-        List<Object> list = new ArrayList<Object>();
-        list.add(classToTest);
-        list.add(classToTest);
-        POxOSerializer serializer = new POxOSerializer();
-
-        byte[] serialized = serializer.serialize(list);
-        List<Object> listB = (List<Object>)serializer.deserialize(serialized);
-        assertEquals(listB.size(), list.size());
-
-        PrimitiveClassesContainer retB = (PrimitiveClassesContainer)listB.get(0);
-        assertEquals(retB.getbNotNull(), classToTest.getbNotNull());
-        assertEquals(retB.getcNotNull(), classToTest.getcNotNull());
-        assertEquals(retB.getsNotNull(), classToTest.getsNotNull());
-        assertEquals(retB.getiNotNull(), classToTest.getiNotNull());
-        assertEquals(retB.getlNotNull(), classToTest.getlNotNull());
-        assertEquals(retB.getSt(), classToTest.getSt());
-        assertEquals(retB.getStUTF8(), classToTest.getStUTF8());
-        assertEquals(retB.isBoNotNull(), classToTest.isBoNotNull());
-        assertEquals(retB.getTimestamp(), classToTest.getTimestamp());
-        assertEquals(retB.getZonedDateTime(), classToTest.getZonedDateTime());
-        assertEquals(retB.getLocalDateTime(), classToTest.getLocalDateTime());
-        assertEquals(retB.getLocalTime(), classToTest.getLocalTime());
-        assertEquals(retB.getLocalDate(), classToTest.getLocalDate());
-        assertEquals(retB.getfNotNull(), classToTest.getfNotNull(), 0.0000000001);
-        assertEquals(retB.getdNotNull(), classToTest.getdNotNull(), 0.0000000001);
-        assertEquals(retB.getEnumValue(), classToTest.getEnumValue());
-
-        assertEquals(retB.getbCanNull(), classToTest.getbCanNull());
-        assertEquals(retB.getcCanNull(), classToTest.getcCanNull());
-        assertEquals(retB.getsCanNull(), classToTest.getsCanNull());
-        assertEquals(retB.getiCanNull(), classToTest.getiCanNull());
-        assertEquals(retB.getlCanNull(), classToTest.getlCanNull());
-        assertNull(retB.getBoCanNull());
-        assertNull(retB.getfCanNull());
-        assertNull(retB.getdCanNull());
-
-        assertEquals(retB.getInts().size(), classToTest.getInts().size());
-        assertEquals(retB.getMap().size(), classToTest.getMap().size());
-        assertEquals(retB.getNestedCollections().size(), classToTest.getNestedCollections().size());
-        assertEquals(retB.getNestedCollections().get(0).size(),
-                     classToTest.getNestedCollections().get(0).size());
-        assertEquals(retB.getNestedCollections().get(0).get("test").get(2),
-                     classToTest.getNestedCollections().get(0).get("test").get(2));
-        assertEquals(retB.getNestedClass().get(0).getIndex(), classToTest.getNestedClass().get(0).getIndex());
-        assertEquals(retB.getGenericValueMap().get("bool"), classToTest.getGenericValueMap().get("bool"));
-        assertEquals(retB.getGenericValueMap().get("int"), classToTest.getGenericValueMap().get("int"));
-        assertEquals(retB.getGenericValueMap().get("string"), classToTest.getGenericValueMap().get("string"));
-        assertEquals(true, retB.getGenericValueMap().get("object") instanceof NestedObjectClass);
-        assertEquals(((NestedObjectClass)retB.getGenericValueMap().get("object")).getIndex(),
-                     ((NestedObjectClass)classToTest.getGenericValueMap().get("object")).getIndex());
-    }
-
-    @Test
-    public void testMapSerializer() throws POxOSerializerException, IOException {
-
-        Map<Object, Object> map = new HashMap<Object, Object>();
-        map.put("key", classToTest);
-        POxOSerializer serializer = new POxOSerializer();
-
-        byte[] serialized = serializer.serialize(map);
-        Map<Object, Object> mapB = (Map<Object, Object>)serializer.deserialize(serialized);
-        assertEquals(mapB.size(), map.size());
-
-        Entry<Object, Object> entry = map.entrySet().iterator().next();
-        assertEquals(entry.getKey(), "key");
-        PrimitiveClassesContainer retB = (PrimitiveClassesContainer)entry.getValue();
-        assertEquals(retB.getbNotNull(), classToTest.getbNotNull());
-        assertEquals(retB.getcNotNull(), classToTest.getcNotNull());
-        assertEquals(retB.getsNotNull(), classToTest.getsNotNull());
-        assertEquals(retB.getiNotNull(), classToTest.getiNotNull());
-        assertEquals(retB.getlNotNull(), classToTest.getlNotNull());
-        assertEquals(retB.getSt(), classToTest.getSt());
-        assertEquals(retB.getStUTF8(), classToTest.getStUTF8());
-        assertEquals(retB.isBoNotNull(), classToTest.isBoNotNull());
-        assertEquals(retB.getTimestamp(), classToTest.getTimestamp());
-        assertEquals(retB.getZonedDateTime(), classToTest.getZonedDateTime());
-        assertEquals(retB.getLocalDateTime(), classToTest.getLocalDateTime());
-        assertEquals(retB.getLocalTime(), classToTest.getLocalTime());
-        assertEquals(retB.getLocalDate(), classToTest.getLocalDate());
-        assertEquals(retB.getfNotNull(), classToTest.getfNotNull(), 0.0000000001);
-        assertEquals(retB.getdNotNull(), classToTest.getdNotNull(), 0.0000000001);
-        assertEquals(retB.getEnumValue(), classToTest.getEnumValue());
-
-        assertEquals(retB.getbCanNull(), classToTest.getbCanNull());
-        assertEquals(retB.getcCanNull(), classToTest.getcCanNull());
-        assertEquals(retB.getsCanNull(), classToTest.getsCanNull());
-        assertEquals(retB.getiCanNull(), classToTest.getiCanNull());
-        assertEquals(retB.getlCanNull(), classToTest.getlCanNull());
-        assertNull(retB.getBoCanNull());
-        assertNull(retB.getfCanNull());
-        assertNull(retB.getdCanNull());
-
-        assertEquals(retB.getInts().size(), classToTest.getInts().size());
-        assertEquals(retB.getMap().size(), classToTest.getMap().size());
-        assertEquals(retB.getNestedCollections().size(), classToTest.getNestedCollections().size());
-        assertEquals(retB.getNestedCollections().get(0).size(),
-                     classToTest.getNestedCollections().get(0).size());
-        assertEquals(retB.getNestedCollections().get(0).get("test").get(2),
-                     classToTest.getNestedCollections().get(0).get("test").get(2));
-        assertEquals(retB.getNestedClass().get(0).getIndex(), classToTest.getNestedClass().get(0).getIndex());
-        assertEquals(retB.getGenericValueMap().get("bool"), classToTest.getGenericValueMap().get("bool"));
-        assertEquals(retB.getGenericValueMap().get("int"), classToTest.getGenericValueMap().get("int"));
-        assertEquals(retB.getGenericValueMap().get("string"), classToTest.getGenericValueMap().get("string"));
-        assertEquals(true, retB.getGenericValueMap().get("object") instanceof NestedObjectClass);
-        assertEquals(((NestedObjectClass)retB.getGenericValueMap().get("object")).getIndex(),
-                     ((NestedObjectClass)classToTest.getGenericValueMap().get("object")).getIndex());
-    }
-
-    private void writeDataToFile(String fileName, byte[] data) throws IOException {
-        FileOutputStream stream = new FileOutputStream(new File(fileName));
-        stream.write(data, 0, data.length);
-        stream.flush();
-        stream.close();
-    }
-}
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.codejuicer.poxoserializer.exception.POxOSerializerException;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveDecoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitiveEncoder;
+import org.codejuicer.poxoserializer.io.POxOPrimitivePool;
+import org.codejuicer.poxoserializer.io.POxOSharedPool;
+import org.codejuicer.poxoserializer.io.POxOThreadLocalPool;
+import org.codejuicer.poxoserializer.serializers.CodecFieldsSerializer;
+import org.codejuicer.poxoserializer.serializers.FieldAccessor;
+import org.codejuicer.poxoserializer.serializers.FieldAccessorType;
+import org.codejuicer.poxoserializer.serializers.FieldSerializerUtil;
+import org.codejuicer.poxoserializer.serializers.FieldsSerializer;
+import org.codejuicer.poxoserializer.serializers.RuntimeCodec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPOxOSerializer {
+
+    PrimitiveClassesContainer classToTest;
+
+    Map<String, Double> map;
+
+    @After
+    public void close() {
+    }
+
+    @Before
+    public void initialize() {
+        classToTest = new PrimitiveClassesContainer();
+
+        classToTest.setbNotNull((byte)0x7F);
+        classToTest.setcNotNull('c');
+        classToTest.setsNotNull((short)32000);
+        classToTest.setiNotNull(1000000000);
+        classToTest.setlNotNull(4000000000L);
+        classToTest.setSt("test ascii string");
+        classToTest.setStUTF8("SãoVicente");
+        classToTest.setBoNotNull(true);
+        Date date = Calendar.getInstance().getTime();
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSVV");
+        ZonedDateTime zonedDateTime = ZonedDateTime.parse("2018-03-09 10:25:31.094+04:00", formatter);
+        long mills = zonedDateTime.toInstant().toEpochMilli();
+        Instant instant = Instant.ofEpochMilli(mills);
+        LocalDateTime localDateTime = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+        classToTest.setTimestamp(date);
+        classToTest.setZonedDateTime(zonedDateTime);
+        classToTest.setLocalDateTime(localDateTime);
+        classToTest.setLocalTime(zonedDateTime.toLocalTime());
+        classToTest.setLocalDate(zonedDateTime.toLocalDate());
+        classToTest.setfNotNull(125.758F);
+        classToTest.setdNotNull(6546874.16513154644);
+        classToTest.setEnumValue(TestEnum.NOTWORK);
+
+        List<Integer> ints = new ArrayList<Integer>();
+        ints.add(123);
+        ints.add(456);
+        ints.add(789);
+
+        List<String> strings = new ArrayList<String>();
+        strings.add("pippo");
+        strings.add("pluto");
+        strings.add("paperino");
+
+        map = new HashMap<String, Double>();
+        map.put("A", 123.4560);
+        map.put("B", 456.7890);
+        map.put("C", 789.1230);
+        map.put("D", 147.2580);
+
+        classToTest.setInts(ints);
+        classToTest.setStrings(strings);
+        classToTest.setMap(map);
+
+        List<Map<String, List<Integer>>> nestedCollections = new ArrayList<Map<String, List<Integer>>>();
+        Map<String, List<Integer>> map2 = new HashMap<String, List<Integer>>();
+        map2.put("test", ints);
+        nestedCollections.add(map2);
+        classToTest.setNestedCollections(nestedCollections);
+
+        NestedObjectClass nestedClass = new NestedObjectClass();
+        nestedClass.setIndex(50);
+        List<NestedObjectClass> listNestedClass = new ArrayList<NestedObjectClass>();
+        listNestedClass.add(nestedClass);
+        classToTest.setNestedClass(listNestedClass);
+
+        Map<String, Object> genericValueMap = new HashMap<String, Object>();
+        genericValueMap.put("bool", true);
+        genericValueMap.put("int", new Integer(74));
+        genericValueMap.put("string", "pippo");
+        genericValueMap.put("object", nestedClass);
+        genericValueMap.put("enum", TestEnum.WORK);
+        classToTest.setGenericValueMap(genericValueMap);
+    }
+
+    @Test
+    public void test1() throws POxOSerializerException, IOException {
+
+        POxOSerializer serializer = new POxOSerializer();
+        PrimitiveClassesContainer retB = null;
+        byte[] serialized = serializer.serialize(classToTest);
+        retB = (PrimitiveClassesContainer)serializer.deserialize(serialized);
+
+        assertEquals(retB.getbNotNull(), classToTest.getbNotNull());
+        assertEquals(retB.getcNotNull(), classToTest.getcNotNull());
+        assertEquals(retB.getsNotNull(), classToTest.getsNotNull());
+        assertEquals(retB.getiNotNull(), classToTest.getiNotNull());
+        assertEquals(retB.getlNotNull(), classToTest.getlNotNull());
+        assertEquals(retB.getSt(), classToTest.getSt());
+        assertEquals(retB.getStUTF8(), classToTest.getStUTF8());
+        assertEquals(retB.isBoNotNull(), classToTest.isBoNotNull());
+        assertEquals(retB.getTimestamp(), classToTest.getTimestamp());
+        assertEquals(retB.getZonedDateTime(), classToTest.getZonedDateTime());
+        assertEquals(retB.getLocalDateTime(), classToTest.getLocalDateTime());
+        assertEquals(retB.getLocalTime(), classToTest.getLocalTime());
+        assertEquals(retB.getLocalDate(), classToTest.getLocalDate());
+        assertEquals(retB.getfNotNull(), classToTest.getfNotNull(), 0.0000000001);
+        assertEquals(retB.getdNotNull(), classToTest.getdNotNull(), 0.0000000001);
+        assertEquals(retB.getEnumValue(), classToTest.getEnumValue());
+
+        assertEquals(retB.getbCanNull(), classToTest.getbCanNull());
+        assertEquals(retB.getcCanNull(), classToTest.getcCanNull());
+        assertEquals(retB.getsCanNull(), classToTest.getsCanNull());
+        assertEquals(retB.getiCanNull(), classToTest.getiCanNull());
+        assertEquals(retB.getlCanNull(), classToTest.getlCanNull());
+        assertNull(retB.getBoCanNull());
+        assertNull(retB.getfCanNull());
+        assertNull(retB.getdCanNull());
+
+        assertEquals(retB.getInts().size(), classToTest.getInts().size());
+        assertEquals(retB.getMap().size(), classToTest.getMap().size());
+        assertEquals(retB.getNestedCollections().size(), classToTest.getNestedCollections().size());
+        assertEquals(retB.getNestedCollections().get(0).size(),
+                     classToTest.getNestedCollections().get(0).size());
+        assertEquals(retB.getNestedCollections().get(0).get("test").get(2),
+                     classToTest.getNestedCollections().get(0).get("test").get(2));
+        assertEquals(retB.getNestedClass().get(0).getIndex(), classToTest.getNestedClass().get(0).getIndex());
+        assertEquals(retB.getGenericValueMap().get("bool"), classToTest.getGenericValueMap().get("bool"));
+        assertEquals(retB.getGenericValueMap().get("int"), classToTest.getGenericValueMap().get("int"));
+        assertEquals(retB.getGenericValueMap().get("string"), classToTest.getGenericValueMap().get("string"));
+        assertEquals(true, retB.getGenericValueMap().get("object") instanceof NestedObjectClass);
+        assertEquals(((NestedObjectClass)retB.getGenericValueMap().get("object")).getIndex(),
+                     ((NestedObjectClass)classToTest.getGenericValueMap().get("object")).getIndex());
+    }
+
+    @Test
+    public void testFieldsPlanIsReused() throws POxOSerializerException {
+        POxOSerializerUtil serializerUtil = new POxOSerializerUtil();
+        assertSame(serializerUtil.getFieldsSerializer(PrimitiveClassesContainer.class),
+                   serializerUtil.getFieldsSerializer(PrimitiveClassesContainer.class));
+
+        POxOSerializer serializer = new POxOSerializer();
+        for (int i = 0; i < 3; i++) {
+            PrimitiveClassesContainer retB = (PrimitiveClassesContainer)serializer.deserialize(serializer
+                .serialize(classToTest));
+            assertEquals(retB.getSt(), classToTest.getSt());
+            assertEquals(retB.getNestedClass().get(0).getIndex(), classToTest.getNestedClass().get(0).getIndex());
+        }
+    }
+
+    @Test
+    public void testPooledEncoders() throws POxOSerializerException {
+        POxOPrimitivePool[] pools = new POxOPrimitivePool[] {new POxOThreadLocalPool(256, 1024),
+                                                             new POxOSharedPool(256, 1024, 1)};
+        for (POxOPrimitivePool pool : pools) {
+            POxOPrimitiveEncoder encoder = pool.obtainEncoder();
+            pool.releaseEncoder(encoder);
+            assertSame(encoder, pool.obtainEncoder());
+
+            encoder.writeBytes(new byte[4096]);
+            pool.releaseEncoder(encoder);
+            assertNotSame(encoder, pool.obtainEncoder());
+
+            POxOSerializer serializer = new POxOSerializer(pool);
+            for (int i = 0; i < 3; i++) {
+                PrimitiveClassesContainer retB = (PrimitiveClassesContainer)serializer.deserialize(serializer
+                    .serialize(classToTest));
+                assertEquals(retB.getStUTF8(), classToTest.getStUTF8());
+                assertEquals(retB.getMap(), classToTest.getMap());
+            }
+        }
+    }
+
+    @Test
+    public void testFieldAccessorTypes() throws POxOSerializerException {
+        for (FieldAccessorType accessorType : FieldAccessorType.values()) {
+            POxOSerializer serializer = new POxOSerializer();
+            serializer.setFieldAccessorFactory(accessorType);
+            PrimitiveClassesContainer retB = (PrimitiveClassesContainer)serializer.deserialize(serializer
+                .serialize(classToTest));
+            assertEquals(retB.getbNotNull(), classToTest.getbNotNull());
+            assertEquals(retB.getcNotNull(), classToTest.getcNotNull());
+            assertEquals(retB.getsNotNull(), classToTest.getsNotNull());
+            assertEquals(retB.getiNotNull(), classToTest.getiNotNull());
+            assertEquals(retB.getlNotNull(), classToTest.getlNotNull());
+            assertEquals(retB.isBoNotNull(), classToTest.isBoNotNull());
+            assertEquals(retB.getfNotNull(), classToTest.getfNotNull(), 0.0000000001);
+            assertEquals(retB.getdNotNull(), classToTest.getdNotNull(), 0.0000000001);
+            assertEquals(retB.getSt(), classToTest.getSt());
+            assertNull(retB.getiCanNull());
+            assertEquals(retB.getEnumValue(), classToTest.getEnumValue());
+        }
+    }
+
+    @Test
+    public void testPrimitiveFieldSerializers() throws POxOSerializerException, NoSuchFieldException {
+        POxOSerializerUtil serializerUtil = new POxOSerializerUtil();
+        serializerUtil.setCodecsEnabled(false);
+        for (FieldSerializerUtil fieldSerializer : serializerUtil
+            .getFieldsSerializer(PrimitiveClassesContainer.class).getFieldsSerializers()) {
+            if (fieldSerializer.getField().getType().isPrimitive()) {
+                assertNotNull(fieldSerializer.getPrimitiveSerializer());
+            } else {
+                assertNull(fieldSerializer.getPrimitiveSerializer());
+            }
+        }
+
+        Class<?> type = PrimitiveClassesContainer.class;
+        PrimitiveClassesContainer obj = new PrimitiveClassesContainer();
+        for (FieldAccessorType accessorType : FieldAccessorType.values()) {
+            FieldAccessor accessor = accessorType.createAccessor(type.getDeclaredField("sNotNull"));
+            accessor.setShort(obj, (short)-7);
+            assertEquals(-7, accessor.getShort(obj));
+            accessor = accessorType.createAccessor(type.getDeclaredField("boNotNull"));
+            accessor.setBoolean(obj, true);
+            assertTrue(accessor.getBoolean(obj));
+            accessor = accessorType.createAccessor(type.getDeclaredField("lNotNull"));
+            accessor.setLong(obj, Long.MIN_VALUE);
+            assertEquals(Long.MIN_VALUE, accessor.getLong(obj));
+        }
+    }
+
+    @Test
+    public void testCodec() throws POxOSerializerException {
+        assertTrue(new POxOSerializerUtil()
+            .getFieldsSerializer(CodecObjectClass.class) instanceof CodecFieldsSerializer);
+
+        CodecObjectClass obj = new CodecObjectClass();
+        obj.setName("codec");
+        obj.setValue(-12345);
+        obj.setTags(Arrays.asList("a", null, "\u00e8"));
+
+        POxOSerializer serializer = new POxOSerializer();
+        POxOSerializer reflectionSerializer = new POxOSerializer();
+        reflectionSerializer.setCodecsEnabled(false);
+        byte[] bytes = serializer.serialize(obj);
+        assertTrue(Arrays.equals(bytes, reflectionSerializer.serialize(obj)));
+
+        CodecObjectClass retB = (CodecObjectClass)serializer.deserialize(bytes);
+        assertEquals(retB.getName(), obj.getName());
+        assertEquals(retB.getValue(), obj.getValue());
+        assertEquals(retB.getTags(), obj.getTags());
+
+        obj.setName(null);
+        retB = (CodecObjectClass)reflectionSerializer.deserialize(serializer.serialize(obj));
+        assertNull(retB.getName());
+
+        // the codec is left out while the field bitmaps or the sparse fields are enabled
+        serializer.setFieldBitmapsEnabled(true);
+        reflectionSerializer.setFieldBitmapsEnabled(true);
+        assertTrue(Arrays.equals(serializer.serialize(obj), reflectionSerializer.serialize(obj)));
+        serializer.setSparseFieldsEnabled(true);
+        reflectionSerializer.setSparseFieldsEnabled(true);
+        bytes = serializer.serialize(obj);
+        assertTrue(Arrays.equals(bytes, reflectionSerializer.serialize(obj)));
+        retB = (CodecObjectClass)serializer.deserialize(bytes);
+        assertNull(retB.getName());
+        assertEquals(retB.getTags(), obj.getTags());
+        POxOSerializerUtil util = new POxOSerializerUtil();
+        util.setSparseFieldsEnabled(true);
+        assertFalse(util.getFieldsSerializer(CodecObjectClass.class) instanceof CodecFieldsSerializer);
+        util.setSparseFieldsEnabled(false);
+        assertTrue(util.getFieldsSerializer(CodecObjectClass.class) instanceof CodecFieldsSerializer);
+    }
+
+    @Test
+    public void testGeneratedCodecs() throws POxOSerializerException, ReflectiveOperationException {
+        POxOSerializerUtil util = new POxOSerializerUtil();
+        util.setGeneratedCodecsEnabled(true);
+        for (Class<?> type : new Class<?>[] {PrimitiveClassesContainer.class, ArrayObjectClass.class,
+                                             WideRecordClass.class, LinkedObjectSubclass.class,
+                                             PropertyObjectClass.class}) {
+            FieldsSerializer plan = util.getFieldsSerializer(type);
+            assertTrue(type.getName(), plan instanceof CodecFieldsSerializer
+                                       && ((CodecFieldsSerializer)plan).getCodec() instanceof RuntimeCodec);
+        }
+        // a compile time codec is preferred
+        assertFalse(((CodecFieldsSerializer)util.getFieldsSerializer(CodecObjectClass.class))
+            .getCodec() instanceof RuntimeCodec);
+
+        PropertyObjectClass properties = new PropertyObjectClass();
+        properties.setName(" Generated ");
+        properties.setCount(20);
+        Field created = PropertyObjectClass.class.getDeclaredField("created");
+        created.setAccessible(true);
+        created.setLong(properties, 1500000000000L);
+        LinkedObjectSubclass linked = new LinkedObjectSubclass();
+        linked.setIndex(-3);
+        linked.setLabel("label");
+        linked.setNext(new LinkedObjectClass());
+
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.setGeneratedCodecsEnabled(true);
+        POxOSerializer reflectionSerializer = new POxOSerializer();
+        for (Object obj : new Object[] {classToTest, properties, linked}) {
+            byte[] bytes = serializer.serialize(obj);
+            assertTrue(Arrays.equals(bytes, reflectionSerializer.serialize(obj)));
+            assertTrue(Arrays.equals(reflectionSerializer.serialize(serializer.deserialize(bytes)), bytes));
+        }
+
+        // the fields are moved as they are, not through the JavaBean methods
+        PropertyObjectClass propertiesCheck = (PropertyObjectClass)serializer.deserialize(serializer
+            .serialize(properties));
+        assertEquals(propertiesCheck.getName(), "GENERATED");
+        assertEquals(propertiesCheck.getCount(), 42);
+        assertEquals(propertiesCheck.getCreated(), 1500000000000L);
+    }
+
+    @Test
+    public void testPrimitiveEncoderDecoder() throws POxOSerializerException {
+        int[] ints = new int[] {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        long[] longs = new long[] {0L, 300L, 1L << 35, Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            builder.append("ab\u00e8\u20ac");
+        }
+        String longAscii = builder.toString().replaceAll("[^a]", "x");
+        String[] strings = new String[] {null, "", "a", "ascii string", "S\u00e3oVicente", "\u20ac",
+                                         builder.toString(), longAscii};
+        POxOPrimitiveEncoder encoder = new POxOPrimitiveEncoder(16);
+        for (int value : ints) {
+            encoder.writeInt(value, true);
+            encoder.writeInt(value, false);
+        }
+        for (long value : longs) {
+            encoder.writeLong(value, true);
+            encoder.writeLong(value, false);
+        }
+        for (String value : strings) {
+            encoder.writeString(value);
+        }
+        encoder.writeAscii(longAscii);
+        encoder.writeShort(-2);
+        encoder.writeChar('\u00e8');
+        encoder.writeDouble(-0.5);
+
+        byte[] bytes = encoder.toByteArray();
+        assertTrue(encoder.capacity() > 16);
+        assertEquals(bytes.length, encoder.position());
+        assertTrue(Arrays.equals(bytes, Arrays.copyOf(encoder.getBuffer(), encoder.position())));
+        // the trailing values of the message are decoded through the bounds checked slow paths
+        POxOPrimitiveDecoder decoder = new POxOPrimitiveDecoder(bytes);
+        for (int value : ints) {
+            assertEquals(value, decoder.readInt(true));
+            assertEquals(value, decoder.readInt(false));
+        }
+        for (long value : longs) {
+            assertEquals(value, decoder.readLong(true));
+            assertEquals(value, decoder.readLong(false));
+        }
+        for (String value : strings) {
+            assertEquals(value, decoder.readString());
+        }
+        assertEquals(longAscii, decoder.readString());
+        assertEquals(-2, decoder.readShort());
+        assertEquals('\u00e8', decoder.readChar());
+        assertEquals(-0.5, decoder.readDouble(), 0);
+        assertEquals(0, decoder.available());
+        try {
+            decoder.readByte();
+            fail("Reading past the end of the message must fail.");
+        } catch (BufferUnderflowException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = POxOSerializerException.class)
+    public void testTruncatedMessage() throws POxOSerializerException {
+        POxOSerializer serializer = new POxOSerializer();
+        byte[] bytes = serializer.serialize(classToTest);
+        serializer.deserialize(Arrays.copyOf(bytes, bytes.length / 2));
+    }
+
+    @Test
+    public void testStreams() throws POxOSerializerException {
+        POxOSerializer serializer = new POxOSerializer(new POxOSharedPool(16));
+        byte[] bytes = serializer.serialize(classToTest);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(classToTest, out);
+        serializer.serialize(classToTest.getNestedClass().get(0), out);
+        byte[] streamed = out.toByteArray();
+        assertTrue(Arrays.equals(Arrays.copyOf(streamed, bytes.length), bytes));
+
+        // returns a few bytes per read, so that the decoder refills its buffer in the middle of the values
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+        PrimitiveClassesContainer retB = (PrimitiveClassesContainer)serializer.deserialize(in);
+        assertEquals(retB.getSt(), classToTest.getSt());
+        assertEquals(retB.getStUTF8(), classToTest.getStUTF8());
+        assertEquals(retB.getMap().size(), classToTest.getMap().size());
+        assertTrue(Arrays.equals(serializer.serialize(retB), bytes));
+
+        try {
+            serializer.deserialize(new ByteArrayInputStream(bytes, 0, bytes.length / 2));
+            fail();
+        } catch (POxOSerializerException e) {
+            // expected
+        }
+
+        // a value larger than the retained size grows the stream buffer, that is not kept in the pool
+        POxOPrimitivePool pool = new POxOSharedPool(16, 1024, 1);
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'a');
+        String longAscii = new String(chars);
+        POxOPrimitiveEncoder encoder = new POxOPrimitiveEncoder();
+        encoder.writeAscii(longAscii);
+        POxOPrimitiveDecoder decoder = pool.obtainDecoder(null, 0, 0);
+        decoder.setInputStream(new ByteArrayInputStream(encoder.toByteArray()), pool.getBufferSize());
+        assertEquals(decoder.readString(), longAscii);
+        assertTrue(decoder.streamBufferCapacity() > 1024);
+        pool.releaseDecoder(decoder);
+        assertSame(pool.obtainDecoder(null, 0, 0), decoder);
+        assertTrue(decoder.streamBufferCapacity() <= 1024);
+    }
+
+    @Test
+    public void testByteBuffers() throws POxOSerializerException {
+        POxOSerializer serializer = new POxOSerializer(new POxOSharedPool(16));
+        byte[] bytes = serializer.serialize(classToTest);
+        NestedObjectClass nested = classToTest.getNestedClass().get(0);
+        for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(bytes.length * 3),
+                                                   ByteBuffer.allocateDirect(bytes.length * 3)}) {
+            buffer.putInt(42);
+            serializer.serialize(classToTest, buffer);
+            assertEquals(buffer.position(), 4 + bytes.length);
+            serializer.serialize(nested, buffer);
+            buffer.flip();
+            assertEquals(buffer.getInt(), 42);
+
+            PrimitiveClassesContainer retB = (PrimitiveClassesContainer)serializer.deserialize(buffer);
+            assertEquals(buffer.position(), 4 + bytes.length);
+            assertTrue(Arrays.equals(serializer.serialize(retB), bytes));
+            assertEquals(((NestedObjectClass)serializer.deserialize(buffer)).getIndex(), nested.getIndex());
+            assertEquals(buffer.remaining(), 0);
+
+            buffer.clear();
+            buffer.position(buffer.capacity() - bytes.length / 2);
+            try {
+                serializer.serialize(classToTest, buffer);
+                fail();
+            } catch (POxOSerializerException e) {
+                assertEquals(buffer.position(), buffer.capacity() - bytes.length / 2);
+            }
+
+            buffer.clear();
+            buffer.put(bytes, 0, bytes.length / 2);
+            buffer.flip();
+            try {
+                serializer.deserialize(buffer);
+                fail();
+            } catch (POxOSerializerException e) {
+                assertEquals(buffer.position(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testCallerArrays() throws POxOSerializerException {
+        POxOSerializer serializer = new POxOSerializer(new POxOThreadLocalPool(16, 64));
+        byte[] bytes = serializer.serialize(classToTest);
+        byte[] frame = new byte[bytes.length + 10];
+        assertEquals(serializer.serialize(classToTest, frame, 6), bytes.length);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(frame, 6, 6 + bytes.length), bytes));
+        PrimitiveClassesContainer retB = (PrimitiveClassesContainer)serializer.deserialize(frame, 6,
+                                                                                           bytes.length);
+        assertTrue(Arrays.equals(serializer.serialize(retB), bytes));
+        // the array of the caller is read without being written
+        assertTrue(Arrays.equals(Arrays.copyOfRange(frame, 6, 6 + bytes.length), bytes));
+
+        try {
+            serializer.serialize(classToTest, frame, 11);
+            fail();
+        } catch (POxOSerializerException e) {
+            // expected
+        }
+        // the pooled encoder is back to its own buffer
+        assertTrue(Arrays.equals(serializer.serialize(classToTest), bytes));
+
+        // an offset outside the array still returns the encoder to the pool
+        POxOPrimitivePool pool = new POxOSharedPool(16, 64, 1);
+        POxOPrimitiveEncoder pooled = pool.obtainEncoder();
+        pool.releaseEncoder(pooled);
+        try {
+            new POxOSerializer(pool).serialize(classToTest, frame, frame.length + 1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        assertSame(pooled, pool.obtainEncoder());
+
+        // long ASCII and UTF8 strings fill an array of the exact size
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append(i % 10 == 0 ? "\u20ac\u00e8" : "ascii");
+        }
+        List<String> strings = Arrays.asList(builder.toString(),
+                                             builder.toString().replace("\u20ac\u00e8", "-"));
+        bytes = serializer.serialize(strings);
+        frame = new byte[bytes.length];
+        assertEquals(serializer.serialize(strings, frame, 0), bytes.length);
+        assertTrue(Arrays.equals(frame, bytes));
+        assertEquals(serializer.deserialize(frame), strings);
+    }
+
+    @Test
+    public void testArrays() throws POxOSerializerException {
+        ArrayObjectClass arrays = new ArrayObjectClass();
+        byte[] bytes = new byte[5000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)i;
+        }
+        arrays.setBytes(bytes);
+        arrays.setBooleans(new boolean[] {true, false, true});
+        arrays.setShorts(new short[] {Short.MIN_VALUE, -1, 0, Short.MAX_VALUE});
+        arrays.setChars(new char[] {'a', '\u00e8', '\uffff'});
+        arrays.setInts(new int[] {Integer.MIN_VALUE, -1, 0, 300, Integer.MAX_VALUE});
+        arrays.setLongs(new long[] {Long.MIN_VALUE, -1L, 0L, 1L << 40, Long.MAX_VALUE});
+        arrays.setFloats(new float[] {-1.5f, 0f, Float.MAX_VALUE});
+        arrays.setDoubles(new double[] {-1.5, 0, Double.MIN_VALUE});
+        arrays.setStrings(new String[] {"a", null, "c"});
+        NestedObjectClass nested = new NestedObjectClass();
+        nested.setIndex(7);
+        arrays.setNested(new NestedObjectClass[] {nested, null});
+        arrays.setMatrix(new int[][] {{1, 2}, null, {}});
+        @SuppressWarnings("unchecked")
+        List<String>[] lists = new List[] {Arrays.asList("x", "y"), null};
+        arrays.setLists(lists);
+
+        POxOSerializer serializer = new POxOSerializer(new POxOSharedPool(64));
+        byte[] output = serializer.serialize(arrays);
+        assertTrue(output.length < bytes.length + 256);
+        ArrayObjectClass arraysCheck = (ArrayObjectClass)serializer.deserialize(output);
+        assertArrayEquals(arraysCheck.getBytes(), arrays.getBytes());
+        assertTrue(Arrays.equals(arraysCheck.getBooleans(), arrays.getBooleans()));
+        assertArrayEquals(arraysCheck.getShorts(), arrays.getShorts());
+        assertArrayEquals(arraysCheck.getChars(), arrays.getChars());
+        assertArrayEquals(arraysCheck.getInts(), arrays.getInts());
+        assertArrayEquals(arraysCheck.getLongs(), arrays.getLongs());
+        assertArrayEquals(arraysCheck.getFloats(), arrays.getFloats(), 0f);
+        assertArrayEquals(arraysCheck.getDoubles(), arrays.getDoubles(), 0);
+        assertArrayEquals(arraysCheck.getStrings(), arrays.getStrings());
+        assertEquals(arraysCheck.getNested()[0].getIndex(), 7);
+        assertNull(arraysCheck.getNested()[1]);
+        assertArrayEquals(arraysCheck.getMatrix(), arrays.getMatrix());
+        assertEquals(arraysCheck.getLists()[0], arrays.getLists()[0]);
+        assertNull(arraysCheck.getLists()[1]);
+
+        // the byte[] larger than the pool buffer is read straight from the stream
+        arraysCheck = (ArrayObjectClass)serializer.deserialize(new ByteArrayInputStream(output));
+        assertArrayEquals(arraysCheck.getBytes(), arrays.getBytes());
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("ints", arrays.getInts());
+        map.put("matrix", arrays.getMatrix());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> mapCheck = (Map<String, Object>)serializer.deserialize(serializer.serialize(map));
+        assertArrayEquals((int[])mapCheck.get("ints"), arrays.getInts());
+        assertArrayEquals((int[][])mapCheck.get("matrix"), arrays.getMatrix());
+    }
+
+    @Test
+    public void testPackedIntegers() throws POxOSerializerException {
+        List<Integer> ints = new ArrayList<Integer>();
+        Set<Long> longs = new HashSet<Long>();
+        List<Short> shorts = new ArrayList<Short>();
+        for (int i = 0; i < 1000; i++) {
+            ints.add(i % 97 == 0 ? null : 1000000 + i * 3 % 200);
+            longs.add(1600000000000L + i * 1000L);
+            shorts.add((short)(i - 500));
+        }
+        longs.add(Long.MIN_VALUE);
+        longs.add(Long.MAX_VALUE);
+        IntegerCollectionsClass collections = new IntegerCollectionsClass();
+        collections.setInts(ints);
+        collections.setLongs(longs);
+        collections.setShorts(shorts);
+        Map<String, List<Integer>> series = new HashMap<String, List<Integer>>();
+        series.put("empty", new ArrayList<Integer>());
+        series.put("same", Arrays.asList(5, 5, 5));
+        series.put("ints", ints);
+        collections.setSeries(series);
+
+        POxOSerializer plainSerializer = new POxOSerializer();
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.setPackedIntegersEnabled(true);
+        byte[] output = serializer.serialize(collections);
+        assertTrue(output.length * 2 < plainSerializer.serialize(collections).length);
+
+        IntegerCollectionsClass collectionsCheck = (IntegerCollectionsClass)plainSerializer
+            .deserialize(output);
+        assertEquals(collectionsCheck.getInts(), ints);
+        assertEquals(collectionsCheck.getLongs(), longs);
+        assertEquals(collectionsCheck.getShorts(), shorts);
+        assertEquals(collectionsCheck.getSeries(), series);
+    }
+
+    @Test
+    public void testTypeTags() throws POxOSerializerException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("int", 1);
+        values.put("long", 2L);
+        values.put("short", (short)3);
+        values.put("double", 4.5);
+        values.put("float", 5.5f);
+        values.put("bool", true);
+        values.put("byte", (byte)6);
+        values.put("char", 'c');
+        values.put("string", "string");
+        values.put("date", new Date(1000L));
+        values.put("zdt", ZonedDateTime.of(2014, 1, 2, 3, 4, 5, 0, ZoneId.of("UTC")));
+        values.put("ldt", LocalDateTime.of(2014, 1, 2, 3, 4, 5));
+        values.put("ld", LocalDate.of(2014, 1, 2));
+        values.put("lt", LocalTime.of(3, 4, 5));
+        values.put("list", new ArrayList<Object>(Arrays.asList(1, "a", null)));
+        values.put("set", new HashSet<Object>(Arrays.asList(1L, 2L)));
+        values.put("map", new TreeMap<String, Object>(values));
+        values.put("enum", TestEnum.values()[0]);
+        values.put("object", classToTest.getNestedClass().get(0));
+        values.put("null", null);
+        List<Map<String, Object>> testData = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 10; i++) {
+            testData.add(values);
+        }
+
+        POxOSerializer plainSerializer = new POxOSerializer();
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.setTypeTagsEnabled(true);
+        byte[] output = serializer.serialize(testData);
+        byte[] plainOutput = plainSerializer.serialize(testData);
+        assertTrue(output.length < plainOutput.length);
+        for (byte[] bytes : new byte[][] {output, plainOutput}) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> testDataCheck = (List<Map<String, Object>>)plainSerializer
+                .deserialize(bytes);
+            Map<String, Object> valuesCheck = testDataCheck.get(9);
+            assertEquals(valuesCheck.get("object").getClass(), NestedObjectClass.class);
+            valuesCheck.put("object", values.get("object"));
+            assertEquals(valuesCheck, values);
+        }
+
+        values.clear();
+        values.put("bytes", new byte[] {1, 2});
+        values.put("doubles", new double[] {1.5});
+        @SuppressWarnings("unchecked")
+        Map<String, Object> valuesCheck = (Map<String, Object>)serializer
+            .deserialize(serializer.serialize(values));
+        assertArrayEquals((byte[])valuesCheck.get("bytes"), (byte[])values.get("bytes"));
+        assertArrayEquals((double[])valuesCheck.get("doubles"), (double[])values.get("doubles"), 0);
+
+        // the tag takes the place of the null marker of the value
+        POxOPrimitiveEncoder encoder = new POxOPrimitiveEncoder();
+        encoder.writeString("string");
+        int stringLength = encoder.size();
+        values.clear();
+        values.put("key", null);
+        int nullLength = serializer.serialize(values).length;
+        values.put("key", "string");
+        assertEquals(serializer.serialize(values).length, nullLength + stringLength);
+        values.put("key", new ArrayList<Object>());
+        assertEquals(serializer.serialize(values).length, nullLength + 1);
+        assertEquals(serializer.deserialize(serializer.serialize(values)), values);
+    }
+
+    @Test
+    public void testRegisteredClasses() throws POxOSerializerException {
+        List<NestedObjectClass> testData = new ArrayList<NestedObjectClass>();
+        for (int i = 0; i < 100; i++) {
+            NestedObjectClass nestedClass = new NestedObjectClass();
+            nestedClass.setIndex(i);
+            testData.add(nestedClass);
+        }
+
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.register(NestedObjectClass.class, 1);
+        serializer.register(NestedObjectClass.class, 1);
+        byte[] output = serializer.serialize(testData);
+        assertTrue(output.length * 4 < new POxOSerializer().serialize(testData).length);
+
+        @SuppressWarnings("unchecked")
+        List<NestedObjectClass> testDataCheck = (List<NestedObjectClass>)serializer.deserialize(output);
+        assertEquals(testDataCheck.size(), testData.size());
+        assertEquals(testDataCheck.get(99).getIndex(), 99);
+
+        try {
+            serializer.register(TestObjectClass.class, 1);
+            fail("An id cannot be registered twice.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new POxOSerializer().deserialize(output);
+            fail("The reader must register the same ids.");
+        } catch (POxOSerializerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testClassReferences() throws POxOSerializerException {
+        List<Object> testData = new ArrayList<Object>();
+        for (int i = 0; i < 100; i++) {
+            NestedObjectClass nestedClass = new NestedObjectClass();
+            nestedClass.setIndex(i);
+            testData.add(nestedClass);
+            testData.add(TestEnum.WORK);
+        }
+
+        POxOSerializer serializer = new POxOSerializer(new POxOThreadLocalPool(256));
+        serializer.setClassReferencesEnabled(true);
+        POxOSerializer reader = new POxOSerializer();
+        for (int i = 0; i < 2; i++) {
+            byte[] output = serializer.serialize(testData);
+            assertTrue(output.length * 4 < reader.serialize(testData).length);
+
+            @SuppressWarnings("unchecked")
+            List<Object> testDataCheck = (List<Object>)reader.deserialize(output);
+            assertEquals(testDataCheck.size(), testData.size());
+            assertEquals(((NestedObjectClass)testDataCheck.get(198)).getIndex(), 99);
+            assertEquals(testDataCheck.get(199), TestEnum.WORK);
+        }
+    }
+
+    @Test
+    public void testStringReferences() throws POxOSerializerException {
+        List<Map<String, Object>> testData = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put("currency", "EUR");
+            row.put("status", i % 2 == 0 ? "CONFIRMED" : "S\u00e3oVicente");
+            row.put("index", i);
+            testData.add(row);
+        }
+
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.setStringReferenceThreshold(3);
+        byte[] output = serializer.serialize(testData);
+        assertTrue(output.length * 2 < new POxOSerializer().serialize(testData).length);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> testDataCheck = (List<Map<String, Object>>)serializer.deserialize(output);
+        assertEquals(testDataCheck, testData);
+        assertSame(testDataCheck.get(0).get("status"), testDataCheck.get(98).get("status"));
+
+        POxOPrimitiveEncoder encoder = new POxOPrimitiveEncoder();
+        encoder.setStringReferenceThreshold(3);
+        encoder.writeString(null);
+        encoder.writeString("abc");
+        encoder.writeString("ab");
+        encoder.writeString("abc");
+        POxOPrimitiveDecoder decoder = new POxOPrimitiveDecoder(encoder.toByteArray());
+        decoder.setStringReferenceThreshold(3);
+        assertNull(decoder.readString());
+        String first = decoder.readString();
+        assertEquals("ab", decoder.readString());
+        assertSame(first, decoder.readString());
+
+        // a reference to a string not read yet
+        output = serializer.serialize(Arrays.asList("abc", "abc"));
+        assertEquals((byte)0x80, output[output.length - 2]);
+        output[output.length - 1] = 100;
+        try {
+            serializer.deserialize(output);
+            fail("An undefined string reference must be refused.");
+        } catch (POxOSerializerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testObjectReferences() throws POxOSerializerException {
+        LinkedObjectClass first = new LinkedObjectClass();
+        first.setIndex(1);
+        LinkedObjectClass second = new LinkedObjectClass();
+        second.setIndex(2);
+        first.setNext(second);
+        second.setNext(first);
+        List<LinkedObjectClass> testData = new ArrayList<LinkedObjectClass>();
+        for (int i = 0; i < 50; i++) {
+            testData.add(i % 2 == 0 ? first : second);
+        }
+
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.setObjectReferencesEnabled(true);
+        @SuppressWarnings("unchecked")
+        List<LinkedObjectClass> testDataCheck = (List<LinkedObjectClass>)new POxOSerializer()
+            .deserialize(serializer.serialize(testData));
+        assertEquals(testDataCheck.size(), testData.size());
+        LinkedObjectClass firstCheck = testDataCheck.get(0);
+        assertEquals(firstCheck.getIndex(), 1);
+        assertEquals(firstCheck.getNext().getIndex(), 2);
+        assertSame(firstCheck.getNext().getNext(), firstCheck);
+        assertSame(testDataCheck.get(1), firstCheck.getNext());
+        assertSame(testDataCheck.get(48), firstCheck);
+
+        second.setNext(null);
+        byte[] output = serializer.serialize(testData);
+        POxOSerializer plainSerializer = new POxOSerializer();
+        assertTrue(output.length * 4 < plainSerializer.serialize(testData).length);
+        output = plainSerializer.serialize(testData);
+        testDataCheck = (List<LinkedObjectClass>)plainSerializer.deserialize(output);
+        assertNotSame(testDataCheck.get(0), testDataCheck.get(2));
+    }
+
+    @Test
+    public void testDeclaredTypes() throws POxOSerializerException {
+        List<LinkedObjectClass> testData = new ArrayList<LinkedObjectClass>();
+        for (int i = 0; i < 50; i++) {
+            LinkedObjectClass first = new LinkedObjectClass();
+            first.setIndex(i);
+            LinkedObjectClass second = i % 10 == 0 ? new LinkedObjectSubclass() : new LinkedObjectClass();
+            second.setIndex(i + 1);
+            first.setNext(second);
+            testData.add(first);
+        }
+        ((LinkedObjectSubclass)testData.get(0).getNext()).setLabel("subclass");
+
+        POxOSerializer plainSerializer = new POxOSerializer();
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.setDeclaredTypesEnabled(true);
+        byte[] output = serializer.serialize(testData);
+        assertTrue(output.length * 3 / 2 < plainSerializer.serialize(testData).length);
+        @SuppressWarnings("unchecked")
+        List<LinkedObjectClass> testDataCheck = (List<LinkedObjectClass>)plainSerializer.deserialize(output);
+        assertEquals(testDataCheck.size(), testData.size());
+        assertEquals(testDataCheck.get(5).getIndex(), 5);
+        assertEquals(testDataCheck.get(5).getNext().getClass(), LinkedObjectClass.class);
+        assertEquals(testDataCheck.get(5).getNext().getIndex(), 6);
+        assertNull(testDataCheck.get(5).getNext().getNext());
+        assertEquals(((LinkedObjectSubclass)testDataCheck.get(0).getNext()).getLabel(), "subclass");
+
+        // a cycle through declared fields with the object references
+        LinkedObjectClass first = testData.get(1);
+        first.getNext().setNext(first);
+        serializer.setObjectReferencesEnabled(true);
+        output = serializer.serialize(first);
+        LinkedObjectClass firstCheck = (LinkedObjectClass)plainSerializer.deserialize(output);
+        assertSame(firstCheck.getNext().getNext(), firstCheck);
+    }
+
+    @Test
+    public void testSubtypes() throws POxOSerializerException {
+        EventEnvelopeClass envelope = new EventEnvelopeClass();
+        CreatedEventClass created = new CreatedEventClass();
+        created.setTimestamp(1400000000000L);
+        created.setName("created");
+        envelope.setEvent(created);
+        List<AbstractEventClass> history = new ArrayList<AbstractEventClass>();
+        for (int i = 0; i < 10; i++) {
+            DeletedEventClass deleted = new DeletedEventClass();
+            deleted.setTimestamp(1400000000000L + i);
+            deleted.setReason(i);
+            history.add(deleted);
+        }
+        envelope.setHistory(history);
+        envelope.setPayload(created);
+
+        POxOSerializer serializer = new POxOSerializer();
+        byte[] output = serializer.serialize(envelope);
+        // the class name of the envelope only
+        assertTrue(output.length < EventEnvelopeClass.class.getName().length() + 150);
+        EventEnvelopeClass envelopeCheck = (EventEnvelopeClass)serializer.deserialize(output);
+        assertEquals(((CreatedEventClass)envelopeCheck.getEvent()).getName(), "created");
+        assertEquals(envelopeCheck.getEvent().getTimestamp(), 1400000000000L);
+        assertEquals(envelopeCheck.getHistory().size(), 10);
+        assertEquals(((DeletedEventClass)envelopeCheck.getHistory().get(9)).getReason(), 9);
+        assertEquals(((CreatedEventClass)envelopeCheck.getPayload()).getName(), "created");
+
+        // a payload out of the table is written by name
+        envelope.setPayload("payload");
+        envelopeCheck = (EventEnvelopeClass)serializer.deserialize(serializer.serialize(envelope));
+        assertEquals(envelopeCheck.getPayload(), "payload");
+
+        // registered subtypes, with a subclass out of the table
+        List<LinkedObjectClass> testData = new ArrayList<LinkedObjectClass>();
+        for (int i = 0; i < 20; i++) {
+            LinkedObjectClass first = new LinkedObjectClass();
+            first.setIndex(i);
+            first.setNext(i % 10 == 0 ? new LinkedObjectSubclass() : new LinkedObjectClass());
+            testData.add(first);
+        }
+        POxOSerializer registeredSerializer = new POxOSerializer();
+        registeredSerializer.registerSubtypes(LinkedObjectClass.class, LinkedObjectClass.class);
+        output = registeredSerializer.serialize(testData);
+        assertTrue(output.length * 3 / 2 < serializer.serialize(testData).length);
+        @SuppressWarnings("unchecked")
+        List<LinkedObjectClass> testDataCheck =
+            (List<LinkedObjectClass>)registeredSerializer.deserialize(output);
+        assertEquals(testDataCheck.size(), 20);
+        assertEquals(testDataCheck.get(3).getIndex(), 3);
+        assertEquals(testDataCheck.get(3).getNext().getClass(), LinkedObjectClass.class);
+        assertEquals(testDataCheck.get(10).getNext().getClass(), LinkedObjectSubclass.class);
+
+        // a registration after the first use replaces the cached array serializer too
+        LinkedObjectClass[] array = testData.toArray(new LinkedObjectClass[testData.size()]);
+        POxOSerializer lateSerializer = new POxOSerializer();
+        byte[] unregistered = lateSerializer.serialize(array);
+        lateSerializer.registerSubtypes(LinkedObjectClass.class, LinkedObjectClass.class);
+        output = lateSerializer.serialize(array);
+        assertTrue(Arrays.equals(output, registeredSerializer.serialize(array)));
+        assertTrue(output.length < unregistered.length);
+
+        try {
+            registeredSerializer.registerSubtypes(AbstractEventClass.class, LinkedObjectClass.class);
+            fail("A class that is not a subtype must be refused.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFieldBitmaps() throws POxOSerializerException {
+        classToTest.setBoCanNull(true);
+        POxOSerializer plainSerializer = new POxOSerializer();
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.setFieldBitmapsEnabled(true);
+        byte[] output = serializer.serialize(classToTest);
+        assertTrue(output.length + 10 < plainSerializer.serialize(classToTest).length);
+        PrimitiveClassesContainer retB = (PrimitiveClassesContainer)serializer.deserialize(output);
+        assertEquals(retB.getSt(), classToTest.getSt());
+        assertEquals(retB.isBoNotNull(), classToTest.isBoNotNull());
+        assertEquals(retB.getTimestamp(), classToTest.getTimestamp());
+        assertEquals(retB.getLocalTime(), classToTest.getLocalTime());
+        assertEquals(retB.getbCanNull(), classToTest.getbCanNull());
+        assertEquals(retB.getlCanNull(), classToTest.getlCanNull());
+        assertEquals(retB.getBoCanNull(), Boolean.TRUE);
+        assertNull(retB.getfCanNull());
+        assertNull(retB.getdCanNull());
+        assertEquals(retB.getMap().size(), classToTest.getMap().size());
+        assertEquals(retB.getNestedClass().get(0).getIndex(), classToTest.getNestedClass().get(0).getIndex());
+        assertEquals(retB.getEnumValue(), classToTest.getEnumValue());
+
+        // more flags than fit in a long
+        WideRecordClass record = new WideRecordClass();
+        record.value0 = 0;
+        record.value63 = -63;
+        record.label2 = "label";
+        record.flag1 = true;
+        record.flag3 = true;
+        output = serializer.serialize(record);
+        assertTrue(output.length + 60 < plainSerializer.serialize(record).length);
+        WideRecordClass recordCheck = (WideRecordClass)serializer.deserialize(output);
+        assertEquals(recordCheck.value0, Integer.valueOf(0));
+        assertNull(recordCheck.value1);
+        assertEquals(recordCheck.value63, Integer.valueOf(-63));
+        assertNull(recordCheck.label1);
+        assertEquals(recordCheck.label2, "label");
+        assertTrue(!recordCheck.flag0 && recordCheck.flag1 && !recordCheck.flag2 && recordCheck.flag3);
+    }
+
+    @Test
+    public void testSparseFields() throws POxOSerializerException {
+        POxOSerializer plainSerializer = new POxOSerializer();
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.setSparseFieldsEnabled(true);
+        PrimitiveClassesContainer retB = (PrimitiveClassesContainer)serializer.deserialize(serializer
+            .serialize(classToTest));
+        assertEquals(retB.getiNotNull(), classToTest.getiNotNull());
+        assertEquals(retB.getSt(), classToTest.getSt());
+        assertEquals(retB.isBoNotNull(), classToTest.isBoNotNull());
+        assertEquals(retB.getLocalDate(), classToTest.getLocalDate());
+        assertEquals(retB.getlCanNull(), classToTest.getlCanNull());
+        assertNull(retB.getfCanNull());
+        assertEquals(retB.getNestedCollections().get(0).get("test").get(2),
+                     classToTest.getNestedCollections().get(0).get("test").get(2));
+        assertEquals(retB.getNestedClass().get(0).getIndex(), classToTest.getNestedClass().get(0).getIndex());
+        assertEquals(retB.getEnumValue(), classToTest.getEnumValue());
+
+        // a mostly empty object
+        PrimitiveClassesContainer sparse = new PrimitiveClassesContainer();
+        sparse.setiNotNull(3);
+        sparse.setdNotNull(-0.0);
+        sparse.setSt("sparse");
+        sparse.setEnumValue(TestEnum.WORK);
+        byte[] output = serializer.serialize(sparse);
+        assertTrue(output.length + 20 < plainSerializer.serialize(sparse).length);
+        retB = (PrimitiveClassesContainer)serializer.deserialize(output);
+        assertEquals(retB.getiNotNull(), 3);
+        assertEquals(retB.getlNotNull(), 0);
+        assertEquals(Double.doubleToRawLongBits(retB.getdNotNull()), Double.doubleToRawLongBits(-0.0));
+        assertEquals(retB.getSt(), "sparse");
+        assertNull(retB.getStUTF8());
+        assertNull(retB.getInts());
+
+        // a field given another value by the constructor is reset to its default
+        WideRecordClass record = new WideRecordClass();
+        record.value40 = 40;
+        record.flag2 = true;
+        record.initialized = 0;
+        output = serializer.serialize(record);
+        assertTrue(output.length + 60 < plainSerializer.serialize(record).length);
+        WideRecordClass recordCheck = (WideRecordClass)serializer.deserialize(output);
+        assertEquals(recordCheck.value40, Integer.valueOf(40));
+        assertNull(recordCheck.value41);
+        assertTrue(recordCheck.flag2 && !recordCheck.flag3);
+        assertEquals(recordCheck.initialized, 0);
+        record.initialized = 7;
+        recordCheck = (WideRecordClass)serializer.deserialize(serializer.serialize(record));
+        assertEquals(recordCheck.initialized, 7);
+    }
+
+    @Test
+    public void testGenericTypeContainer() throws POxOSerializerException, IOException {
+        List<TestObjectClass> testData = new ArrayList<TestObjectClass>();
+        Set<TestObjectClass> setData = new HashSet<TestObjectClass>();
+        for (int i = 0; i < 10000; i++) {
+            TestObjectClass mapData = new TestObjectClass(this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName());
+            testData.add(mapData);
+            setData.add(mapData);
+        }
+
+        GenericTypeContainer container = new GenericTypeContainer();
+        container.setListObject(testData);
+        container.setSetObject(setData);
+
+        POxOSerializer serializer = new POxOSerializer();
+        byte[] output = serializer.serialize(container);
+        writeDataToFile("testListObject", output);
+        GenericTypeContainer testDataCheck = (GenericTypeContainer)serializer.deserialize(output);
+        assertEquals(testDataCheck.getListObject().size(), testData.size());
+        assertEquals(testDataCheck.getSetObject().size(), setData.size());
+
+        List<List<String>> testDataListList = new ArrayList<List<String>>();
+        for (int i = 0; i < 10000; i++) {
+            List<String> mapData = new ArrayList<String>();
+            for (int j = 0; j < 16; j++) {
+                mapData.add(this.getClass().getSimpleName() + j);
+            }
+            testDataListList.add(mapData);
+        }
+
+        container = new GenericTypeContainer();
+        container.setListList(testDataListList);
+
+        serializer = new POxOSerializer();
+        output = serializer.serialize(container);
+        writeDataToFile("testListList", output);
+        GenericTypeContainer testDataCheckListList = (GenericTypeContainer)serializer.deserialize(output);
+        assertEquals(testDataCheckListList.getListList().size(), testDataListList.size());
+
+        List<Map<String, String>> testDataListMap = new ArrayList<Map<String, String>>();
+        for (int i = 0; i < 10000; i++) {
+            Map<String, String> mapData = new HashMap<String, String>();
+            for (int j = 0; j < 16; j++) {
+                mapData.put("key" + j, this.getClass().getSimpleName() + j);
+            }
+            testDataListMap.add(mapData);
+        }
+
+        container = new GenericTypeContainer();
+        container.setListMap(testDataListMap);
+
+        serializer = new POxOSerializer();
+        output = serializer.serialize(container);
+        writeDataToFile("testListMap", output);
+        GenericTypeContainer testDataCheckListMap = (GenericTypeContainer)serializer.deserialize(output);
+        assertEquals(testDataCheckListMap.getListMap().size(), testDataListMap.size());
+
+        Map<String, List<Integer>> testDataMapList = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < 2100; i++) {
+            List<Integer> mapData = new ArrayList<Integer>();
+            for (int j = 0; j < 8; j++) {
+                mapData.add(j);
+            }
+            testDataMapList.put("row" + i, mapData);
+        }
+
+        container = new GenericTypeContainer();
+        container.setMapList(testDataMapList);
+
+        serializer = new POxOSerializer();
+        output = serializer.serialize(container);
+        writeDataToFile("testMapList", output);
+        GenericTypeContainer testDataCheckMapList = (GenericTypeContainer)serializer.deserialize(output);
+        assertEquals(testDataCheckMapList.getMapList().size(), testDataMapList.size());
+    }
+
+    @Test
+    public void testListListStringSerializer() throws POxOSerializerException, IOException {
+        List<List<String>> testData = new ArrayList<List<String>>();
+        for (int i = 0; i < 2500; i++) {
+            List<String> mapData = new ArrayList<String>();
+            for (int j = 0; j < 16; j++) {
+                mapData.add(this.getClass().getSimpleName() + j);
+            }
+            testData.add(mapData);
+        }
+
+        POxOSerializer serializer = new POxOSerializer();
+
+        long checkTime = System.currentTimeMillis();
+        byte[] output = serializer.serialize(testData);
+        checkTime = System.currentTimeMillis() - checkTime;
+        System.out.println("serialization time " + checkTime);
+        writeDataToFile("testListList", output);
+
+        checkTime = System.currentTimeMillis();
+        List<List<String>> testDataCheck = (List<List<String>>)serializer.deserialize(output);
+        checkTime = System.currentTimeMillis() - checkTime;
+        System.out.println("deserialization time " + checkTime);
+        assertEquals(testDataCheck.size(), testData.size());
+    }
+
+    @Test
+    public void testListMapStringStringSerializer() throws POxOSerializerException, IOException {
+        List<Map<String, String>> testData = new ArrayList<Map<String, String>>();
+        for (int i = 0; i < 2500; i++) {
+            Map<String, String> mapData = new HashMap<String, String>();
+            for (int j = 0; j < 16; j++) {
+                mapData.put("key" + j, this.getClass().getSimpleName() + j);
+            }
+            testData.add(mapData);
+        }
+
+        GenericTypeContainer gt = new GenericTypeContainer();
+        gt.setListMap(testData);
+        POxOSerializer serializer = new POxOSerializer();
+
+        long checkTime = System.currentTimeMillis();
+        byte[] output = serializer.serialize(gt);
+        checkTime = System.currentTimeMillis() - checkTime;
+        System.out.println("serialization time " + checkTime);
+        writeDataToFile("testListMap", output);
+
+        checkTime = System.currentTimeMillis();
+        GenericTypeContainer testDataCheck = (GenericTypeContainer)serializer.deserialize(output);
+        checkTime = System.currentTimeMillis() - checkTime;
+        System.out.println("deserialization time " + checkTime);
+        assertEquals(testDataCheck.getListMap().size(), testData.size());
+    }
+
+    @Test
+    public void testListObjectSerializer() throws POxOSerializerException, IOException {
+        List<TestObjectClass> testData = new ArrayList<TestObjectClass>();
+        for (int i = 0; i < 10000; i++) {
+            TestObjectClass mapData = new TestObjectClass(this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName(),
+                                                          this.getClass().getSimpleName());
+            testData.add(mapData);
+        }
+
+        POxOSerializer serializer = new POxOSerializer();
+
+        long checkTime = System.currentTimeMillis();
+        byte[] output = serializer.serialize(testData);
+        checkTime = System.currentTimeMillis() - checkTime;
+        System.out.println("serialization time " + checkTime);
+
+        checkTime = System.currentTimeMillis();
+        List<TestObjectClass> testDataCheck = (List<TestObjectClass>)serializer.deserialize(output);
+        checkTime = System.currentTimeMillis() - checkTime;
+        System.out.println("deserialization time " + checkTime);
+        assertEquals(testDataCheck.size(), testData.size());
+    }
+
+    @Test
+    public void testListSerializer() throws POxOSerializerException, IOException {
+
+        List<Object> list = new ArrayList<Object>();
+        list.add(classToTest);
+        list.add(classToTest);
+        POxOSerializer serializer = new POxOSerializer();
+
+        byte[] serialized = serializer.serialize(list);
+        List<Object> listB = (List<Object>)serializer.deserialize(serialized);
+        assertEquals(listB.size(), list.size());
+
+        PrimitiveClassesContainer retB = (PrimitiveClassesContainer)listB.get(0);
+        assertEquals(retB.getbNotNull(), classToTest.getbNotNull());
+        assertEquals(retB.getcNotNull(), classToTest.getcNotNull());
+        assertEquals(retB.getsNotNull(), classToTest.getsNotNull());
+        assertEquals(retB.getiNotNull(), classToTest.getiNotNull());
+        assertEquals(retB.getlNotNull(), classToTest.getlNotNull());
+        assertEquals(retB.getSt(), classToTest.getSt());
+        assertEquals(retB.getStUTF8(), classToTest.getStUTF8());
+        assertEquals(retB.isBoNotNull(), classToTest.isBoNotNull());
+        assertEquals(retB.getTimestamp(), classToTest.getTimestamp());
+        assertEquals(retB.getZonedDateTime(), classToTest.getZonedDateTime());
+        assertEquals(retB.getLocalDateTime(), classToTest.getLocalDateTime());
+        assertEquals(retB.getLocalTime(), classToTest.getLocalTime());
+        assertEquals(retB.getLocalDate(), classToTest.getLocalDate());
+        assertEquals(retB.getfNotNull(), classToTest.getfNotNull(), 0.0000000001);
+        assertEquals(retB.getdNotNull(), classToTest.getdNotNull(), 0.0000000001);
+        assertEquals(retB.getEnumValue(), classToTest.getEnumValue());
+
+        assertEquals(retB.getbCanNull(), classToTest.getbCanNull());
+        assertEquals(retB.getcCanNull(), classToTest.getcCanNull());
+        assertEquals(retB.getsCanNull(), classToTest.getsCanNull());
+        assertEquals(retB.getiCanNull(), classToTest.getiCanNull());
+        assertEquals(retB.getlCanNull(), classToTest.getlCanNull());
+        assertNull(retB.getBoCanNull());
+        assertNull(retB.getfCanNull());
+        assertNull(retB.getdCanNull());
+
+        assertEquals(retB.getInts().size(), classToTest.getInts().size());
+        assertEquals(retB.getMap().size(), classToTest.getMap().size());
+        assertEquals(retB.getNestedCollections().size(), classToTest.getNestedCollections().size());
+        assertEquals(retB.getNestedCollections().get(0).size(),
+                     classToTest.getNestedCollections().get(0).size());
+        assertEquals(retB.getNestedCollections().get(0).get("test").get(2),
+                     classToTest.getNestedCollections().get(0).get("test").get(2));
+        assertEquals(retB.getNestedClass().get(0).getIndex(), classToTest.getNestedClass().get(0).getIndex());
+        assertEquals(retB.getGenericValueMap().get("bool"), classToTest.getGenericValueMap().get("bool"));
+        assertEquals(retB.getGenericValueMap().get("int"), classToTest.getGenericValueMap().get("int"));
+        assertEquals(retB.getGenericValueMap().get("string"), classToTest.getGenericValueMap().get("string"));
+        assertEquals(true, retB.getGenericValueMap().get("object") instanceof NestedObjectClass);
+        assertEquals(((NestedObjectClass)retB.getGenericValueMap().get("object")).getIndex(),
+                     ((NestedObjectClass)classToTest.getGenericValueMap().get("object")).getIndex());
+    }
+
+    @Test
+    public void testMapSerializer() throws POxOSerializerException, IOException {
+
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        map.put("key", classToTest);
+        POxOSerializer serializer = new POxOSerializer();
+
+        byte[] serialized = serializer.serialize(map);
+        Map<Object, Object> mapB = (Map<Object, Object>)serializer.deserialize(serialized);
+        assertEquals(mapB.size(), map.size());
+
+        Entry<Object, Object> entry = map.entrySet().iterator().next();
+        assertEquals(entry.getKey(), "key");
+        PrimitiveClassesContainer retB = (PrimitiveClassesContainer)entry.getValue();
+        assertEquals(retB.getbNotNull(), classToTest.getbNotNull());
+        assertEquals(retB.getcNotNull(), classToTest.getcNotNull());
+        assertEquals(retB.getsNotNull(), classToTest.getsNotNull());
+        assertEquals(retB.getiNotNull(), classToTest.getiNotNull());
+        assertEquals(retB.getlNotNull(), classToTest.getlNotNull());
+        assertEquals(retB.getSt(), classToTest.getSt());
+        assertEquals(retB.getStUTF8(), classToTest.getStUTF8());
+        assertEquals(retB.isBoNotNull(), classToTest.isBoNotNull());
+        assertEquals(retB.getTimestamp(), classToTest.getTimestamp());
+        assertEquals(retB.getZonedDateTime(), classToTest.getZonedDateTime());
+        assertEquals(retB.getLocalDateTime(), classToTest.getLocalDateTime());
+        assertEquals(retB.getLocalTime(), classToTest.getLocalTime());
+        assertEquals(retB.getLocalDate(), classToTest.getLocalDate());
+        assertEquals(retB.getfNotNull(), classToTest.getfNotNull(), 0.0000000001);
+        assertEquals(retB.getdNotNull(), classToTest.getdNotNull(), 0.0000000001);
+        assertEquals(retB.getEnumValue(), classToTest.getEnumValue());
+
+        assertEquals(retB.getbCanNull(), classToTest.getbCanNull());
+        assertEquals(retB.getcCanNull(), classToTest.getcCanNull());
+        assertEquals(retB.getsCanNull(), classToTest.getsCanNull());
+        assertEquals(retB.getiCanNull(), classToTest.getiCanNull());
+        assertEquals(retB.getlCanNull(), classToTest.getlCanNull());
+        assertNull(retB.getBoCanNull());
+        assertNull(retB.getfCanNull());
+        assertNull(retB.getdCanNull());
+
+        assertEquals(retB.getInts().size(), classToTest.getInts().size());
+        assertEquals(retB.getMap().size(), classToTest.getMap().size());
+        assertEquals(retB.getNestedCollections().size(), classToTest.getNestedCollections().size());
+        assertEquals(retB.getNestedCollections().get(0).size(),
+                     classToTest.getNestedCollections().get(0).size());
+        assertEquals(retB.getNestedCollections().get(0).get("test").get(2),
+                     classToTest.getNestedCollections().get(0).get("test").get(2));
+        assertEquals(retB.getNestedClass().get(0).getIndex(), classToTest.getNestedClass().get(0).getIndex());
+        assertEquals(retB.getGenericValueMap().get("bool"), classToTest.getGenericValueMap().get("bool"));
+        assertEquals(retB.getGenericValueMap().get("int"), classToTest.getGenericValueMap().get("int"));
+        assertEquals(retB.getGenericValueMap().get("string"), classToTest.getGenericValueMap().get("string"));
+        assertEquals(true, retB.getGenericValueMap().get("object") instanceof NestedObjectClass);
+        assertEquals(((NestedObjectClass)retB.getGenericValueMap().get("object")).getIndex(),
+                     ((NestedObjectClass)classToTest.getGenericValueMap().get("object")).getIndex());
+    }
+
+    private void writeDataToFile(String fileName, byte[] data) throws IOException {
+        FileOutputStream stream = new FileOutputStream(new File(fileName));
+        stream.write(data, 0, data.length);
+        stream.flush();
+        stream.close();
+    }
+}
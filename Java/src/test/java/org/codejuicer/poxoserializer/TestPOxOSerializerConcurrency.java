@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPOxOSerializerConcurrency {
+
+    private static final int THREADS = 32;
+
+    private static final int ITERATIONS = 200;
+
+    private ExecutorService executor;
+
+    @Before
+    public void initialize() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void close() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testColdSharedSerializer() throws Exception {
+        // all the threads hit an empty registry at the same time
+        for (int round = 0; round < 5; round++) {
+            runConcurrently(new POxOSerializer(), 5);
+        }
+    }
+
+    @Test
+    public void testWarmSharedSerializer() throws Exception {
+        POxOSerializer serializer = new POxOSerializer();
+        serializer.deserialize(serializer.serialize(createContainer(0)));
+        runConcurrently(serializer, ITERATIONS);
+    }
+
+    private void runConcurrently(final POxOSerializer serializer, final int iterations) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int threadIndex = t;
+            results.add(executor.submit(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws Exception {
+                    start.await();
+                    int checked = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        int value = threadIndex * iterations + i;
+                        byte[] bytes = serializer.serialize(createContainer(value));
+                        GenericTypeContainer ret = (GenericTypeContainer)serializer.deserialize(bytes);
+                        assertEquals("key" + value, ret.getList().get(0));
+                        assertEquals(Integer.valueOf(value), ret.getMapList().get("key" + value).get(0));
+                        assertEquals("campo" + value, ret.getListObject().get(0).getCampo1());
+                        checked++;
+                    }
+                    return checked;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> result : results) {
+            assertEquals(Integer.valueOf(iterations), result.get(60, TimeUnit.SECONDS));
+        }
+    }
+
+    private GenericTypeContainer createContainer(int value) {
+        List<String> list = new ArrayList<String>();
+        list.add("key" + value);
+
+        List<Integer> ints = new ArrayList<Integer>();
+        ints.add(value);
+        Map<String, List<Integer>> mapList = new HashMap<String, List<Integer>>();
+        mapList.put("key" + value, ints);
+
+        String campo = "campo" + value;
+        List<TestObjectClass> listObject = new ArrayList<TestObjectClass>();
+        listObject.add(new TestObjectClass(campo, campo, campo, campo, campo, campo, campo, campo, campo, campo,
+                                           campo, campo, campo, campo, campo, campo));
+
+        GenericTypeContainer container = new GenericTypeContainer();
+        container.setList(list);
+        container.setMapList(mapList);
+        container.setListObject(listObject);
+        return container;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer;
+
+/**
+ * A wide record of mostly empty fields, more than fit in a long of flags. The fields are set directly by the
+ * tests.
+ */
+public class WideRecordClass {
+    Integer value0;
+
+    Integer value1;
+
+    Integer value2;
+
+    Integer value3;
+
+    Integer value4;
+
+    Integer value5;
+
+    Integer value6;
+
+    Integer value7;
+
+    Integer value8;
+
+    Integer value9;
+
+    Integer value10;
+
+    Integer value11;
+
+    Integer value12;
+
+    Integer value13;
+
+    Integer value14;
+
+    Integer value15;
+
+    Integer value16;
+
+    Integer value17;
+
+    Integer value18;
+
+    Integer value19;
+
+    Integer value20;
+
+    Integer value21;
+
+    Integer value22;
+
+    Integer value23;
+
+    Integer value24;
+
+    Integer value25;
+
+    Integer value26;
+
+    Integer value27;
+
+    Integer value28;
+
+    Integer value29;
+
+    Integer value30;
+
+    Integer value31;
+
+    Integer value32;
+
+    Integer value33;
+
+    Integer value34;
+
+    Integer value35;
+
+    Integer value36;
+
+    Integer value37;
+
+    Integer value38;
+
+    Integer value39;
+
+    Integer value40;
+
+    Integer value41;
+
+    Integer value42;
+
+    Integer value43;
+
+    Integer value44;
+
+    Integer value45;
+
+    Integer value46;
+
+    Integer value47;
+
+    Integer value48;
+
+    Integer value49;
+
+    Integer value50;
+
+    Integer value51;
+
+    Integer value52;
+
+    Integer value53;
+
+    Integer value54;
+
+    Integer value55;
+
+    Integer value56;
+
+    Integer value57;
+
+    Integer value58;
+
+    Integer value59;
+
+    Integer value60;
+
+    Integer value61;
+
+    Integer value62;
+
+    Integer value63;
+
+    String label0;
+
+    String label1;
+
+    String label2;
+
+    String label3;
+
+    boolean flag0;
+
+    boolean flag1;
+
+    boolean flag2;
+
+    boolean flag3;
+
+    // not at the default on a new instance
+    int initialized = 7;
+}
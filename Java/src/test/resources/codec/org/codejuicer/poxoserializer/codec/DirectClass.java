@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Giuseppe Gerla. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codejuicer.poxoserializer.codec;
+
+import java.util.List;
+
+import org.codejuicer.poxoserializer.annotation.POxOSerializable;
+
+/** Package private fields, accessed directly, a final field and a private field without methods. */
+@POxOSerializable
+public class DirectClass {
+    int number;
+
+    Double ratio;
+
+    String text;
+
+    List<String> items;
+
+    final int fixed;
+
+    private short hidden;
+
+    public DirectClass() {
+        fixed = 7;
+    }
+}